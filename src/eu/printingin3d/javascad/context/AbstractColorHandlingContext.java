@@ -2,9 +2,12 @@ package eu.printingin3d.javascad.context;
 
 import java.awt.Color;
 
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
+
 /**
  * Base class for all classes which implement IColorGenerationContext interface.
- * Implements the logic of the getColor() method. 
+ * Implements the logic of the getColor() method. The color is resolved once, when the context is
+ * created, so getColor() doesn't have to walk the chain of the parent contexts.
  * @author Ivan
  *
  */
@@ -12,15 +15,16 @@ public abstract class AbstractColorHandlingContext implements IColorGenerationCo
 	protected final TagColors tagColors;
 	protected final IColorGenerationContext parent;
 	protected final int tag;
+	private final Color color;
 	
 	public AbstractColorHandlingContext(TagColors tagColors, IColorGenerationContext parent, int tag) {
 		this.tagColors = tagColors;
 		this.parent = parent;
 		this.tag = tag;
+		this.color = resolveColor(tagColors, parent, tag);
 	}
 
-	@Override
-	public Color getColor() {
+	private static Color resolveColor(TagColors tagColors, IColorGenerationContext parent, int tag) {
 		if (tag!=0 && tagColors!=null) {
 			Color result = tagColors.getColor(tag);
 			if (result!=null) {
@@ -30,4 +34,29 @@ public abstract class AbstractColorHandlingContext implements IColorGenerationCo
 		return parent==null ? null : parent.getColor();
 	}
 
+	@Override
+	public Color getColor() {
+		return color;
+	}
+
+	/**
+	 * Appends the type, the tag and the tag colors of this context and the structure of its parents to
+	 * the given builder. The structure of a parent which is not derived from this class can't be
+	 * described, so it makes the builder unhashable. The subclasses which resolve everything from their
+	 * parents when they are created can describe themselves without the parents by overriding it.
+	 * @param builder the builder to be used
+	 */
+	public void appendStructure(StructuralHashBuilder builder) {
+		builder.append(getClass().getName()).append(tag).append(tagColors!=null);
+		if (tagColors!=null) {
+			tagColors.appendStructure(builder);
+		}
+		builder.append(parent!=null);
+		if (parent instanceof AbstractColorHandlingContext) {
+			((AbstractColorHandlingContext)parent).appendStructure(builder);
+		} else if (parent!=null) {
+			builder.unhashable();
+		}
+	}
+
 }
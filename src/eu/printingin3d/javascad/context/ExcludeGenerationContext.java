@@ -1,15 +1,19 @@
 package eu.printingin3d.javascad.context;
 
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 
 public class ExcludeGenerationContext extends AbstractColorHandlingContext implements IScadGenerationContext {
-	private final Set<Integer> excluded;
+	private final TagSet excluded;
 	
 	protected ExcludeGenerationContext(Collection<Integer> excluded, TagColors tagColors, IScadGenerationContext parent, int tag) {
+		this(excluded==null ? null : TagSet.of(excluded), tagColors, parent, tag);
+	}
+	
+	ExcludeGenerationContext(TagSet excluded, TagColors tagColors, IScadGenerationContext parent, int tag) {
 		super(tagColors, parent, tag);
-		this.excluded = excluded==null ? null : new HashSet<>(excluded);
+		this.excluded = excluded;
 	}
 
 	@Override
@@ -19,9 +23,18 @@ public class ExcludeGenerationContext extends AbstractColorHandlingContext imple
 	
 	@Override
 	public IScadGenerationContext applyTag(int tag) {
-		if (excluded!=null && excluded.contains(Integer.valueOf(tag))) {
+		if (excluded!=null && excluded.contains(tag)) {
 			return new ExcludedScadGenerationContext(tagColors, this, tag);
 		}
 		return this;
 	}
+
+	@Override
+	public void appendStructure(StructuralHashBuilder builder) {
+		super.appendStructure(builder);
+		builder.append(excluded!=null);
+		if (excluded!=null) {
+			excluded.appendStructure(builder);
+		}
+	}
 }
@@ -1,19 +1,25 @@
 package eu.printingin3d.javascad.context;
 
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 
 public class IncludeGenerationContext extends AbstractColorHandlingContext implements IScadGenerationContext {
-	private final Set<Integer> excluded;
-	private final Set<Integer> included;
+	private final TagSet excluded;
+	private final TagSet included;
 	
 	protected IncludeGenerationContext(Collection<Integer> excluded, Collection<Integer> included,
 			TagColors tagColors, IColorGenerationContext parent, int tag) {
+		this(excluded==null ? null : TagSet.of(excluded), included==null ? null : TagSet.of(included),
+				tagColors, parent, tag);
+	}
+	
+	IncludeGenerationContext(TagSet excluded, TagSet included,
+			TagColors tagColors, IColorGenerationContext parent, int tag) {
 		super(tagColors, parent, tag);
 		
-		this.excluded = excluded==null ? null : new HashSet<>(excluded);
-		this.included = included==null ? null : new HashSet<>(included);
+		this.excluded = excluded;
+		this.included = included;
 	}
 
 	@Override
@@ -27,10 +33,10 @@ public class IncludeGenerationContext extends AbstractColorHandlingContext imple
 			return this;
 		}
 		
-		if (excluded!=null && excluded.contains(Integer.valueOf(tag))) {
+		if (excluded!=null && excluded.contains(tag)) {
 			return new ExcludedScadGenerationContext(tagColors, this, tag);
 		}
-		if (included!=null && included.contains(Integer.valueOf(tag))) {
+		if (included!=null && included.contains(tag)) {
 			if (excluded==null) {
 				return new FullScadGenerationContext(tagColors, this, tag);
 			}
@@ -38,4 +44,17 @@ public class IncludeGenerationContext extends AbstractColorHandlingContext imple
 		}
 		return new IncludeGenerationContext(excluded, included, tagColors, this, tag);
 	}
+
+	@Override
+	public void appendStructure(StructuralHashBuilder builder) {
+		super.appendStructure(builder);
+		builder.append(excluded!=null);
+		if (excluded!=null) {
+			excluded.appendStructure(builder);
+		}
+		builder.append(included!=null);
+		if (included!=null) {
+			included.appendStructure(builder);
+		}
+	}
 }
@@ -40,9 +40,9 @@ public class ScadGenerationContextFactory {
 			if (excluded.isEmpty()) {
 				return new FullScadGenerationContext(tagColors, null, 0);
 			}
-			return new ExcludeGenerationContext(excluded, tagColors, null, 0);
+			return new ExcludeGenerationContext(TagSet.of(excluded), tagColors, null, 0);
 		}
-		return new IncludeGenerationContext(excluded.isEmpty() ? null : excluded, included,
+		return new IncludeGenerationContext(excluded.isEmpty() ? null : TagSet.of(excluded), TagSet.of(included),
 				tagColors, null, 0);
 	}
 }
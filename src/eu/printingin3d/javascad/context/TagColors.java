@@ -1,16 +1,58 @@
 package eu.printingin3d.javascad.context;
 
 import java.awt.Color;
+import java.util.Arrays;
 import java.util.Map;
 
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
+
+/**
+ * <p>Immutable assignment of colors to tags. The tags are kept in a sorted primitive array, so looking
+ * up a color doesn't need boxing and hashing.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
 public class TagColors {
-	private final Map<Integer, Color> tagColorMap;
+	private final int[] tags;
+	private final Color[] colors;
 	
+	/**
+	 * Creates the object from the given map. The map is copied, so later changes of it don't affect
+	 * this object.
+	 * @param tagColorMap the colors assigned to the tags
+	 */
 	public TagColors(Map<Integer, Color> tagColorMap) {
-		this.tagColorMap = tagColorMap;
+		this.tags = new int[tagColorMap.size()];
+		int i = 0;
+		for (Integer tag : tagColorMap.keySet()) {
+			tags[i++] = tag.intValue();
+		}
+		Arrays.sort(tags);
+
+		this.colors = new Color[tags.length];
+		for (int j=0;j<tags.length;j++) {
+			colors[j] = tagColorMap.get(Integer.valueOf(tags[j]));
+		}
 	}
 
+	/**
+	 * Returns with the color assigned to the given tag.
+	 * @param tag the tag
+	 * @return the color assigned to the tag or null if there is no color assigned to it
+	 */
 	public Color getColor(int tag) {
-		return tagColorMap.get(Integer.valueOf(tag));
+		int index = Arrays.binarySearch(tags, tag);
+		return index<0 ? null : colors[index];
+	}
+	
+	/**
+	 * Appends the tag-color pairs in the order of the tags to the given builder.
+	 * @param builder the builder to be used
+	 */
+	public void appendStructure(StructuralHashBuilder builder) {
+		builder.append(tags.length);
+		for (int i=0;i<tags.length;i++) {
+			builder.append(tags[i]).append(colors[i]);
+		}
 	}
 }
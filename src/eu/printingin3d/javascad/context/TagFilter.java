@@ -0,0 +1,120 @@
+package eu.printingin3d.javascad.context;
+
+import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
+
+/**
+ * <p>Immutable state of the include / exclude filtering of the tags during the CSG generation. It follows
+ * the same rules as the contexts created by {@link ScadGenerationContextFactory}: if there are included
+ * tags only the models under an included tag are part of the result and the models under an excluded
+ * tag are never part of the result.</p>
+ * <p>Applying a tag results the state valid for the models under that tag. The tag sets are shared
+ * between the states, they are never copied.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class TagFilter {
+	private enum State {
+		/** every model is included */
+		ALL,
+		/** the models are included unless they are under an excluded tag */
+		EXCLUDE,
+		/** the models are excluded unless they are under an included tag */
+		INCLUDE,
+		/** every model is excluded */
+		NONE
+	}
+
+	/**
+	 * The filter which includes every model.
+	 */
+	public static final TagFilter ALL = new TagFilter(State.ALL, TagSet.EMPTY, TagSet.EMPTY);
+
+	private static final TagFilter NONE = new TagFilter(State.NONE, TagSet.EMPTY, TagSet.EMPTY);
+
+	private final State state;
+	private final TagSet included;
+	private final TagSet excluded;
+
+	private TagFilter(State state, TagSet included, TagSet excluded) {
+		this.state = state;
+		this.included = included;
+		this.excluded = excluded;
+	}
+
+	/**
+	 * Creates the filter from the given tag sets.
+	 * @param included the included tags - if it is empty every model is included which is not excluded
+	 * @param excluded the excluded tags
+	 * @return the created filter
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if any of the parameters is null
+	 */
+	public static TagFilter create(TagSet included, TagSet excluded) {
+		AssertValue.isNotNull(included, "The included tags should not be null!");
+		AssertValue.isNotNull(excluded, "The excluded tags should not be null!");
+
+		if (included.isEmpty()) {
+			return excluded.isEmpty() ? ALL : new TagFilter(State.EXCLUDE, TagSet.EMPTY, excluded);
+		}
+		return new TagFilter(State.INCLUDE, included, excluded);
+	}
+
+	/**
+	 * Returns the state valid for the models under the given tag.
+	 * @param tag the tag to be applied
+	 * @return the state valid under the given tag
+	 */
+	public TagFilter applyTag(int tag) {
+		if (tag==0) {
+			return this;
+		}
+		switch (state) {
+		case EXCLUDE:
+			return excluded.contains(tag) ? NONE : this;
+		case INCLUDE:
+			if (excluded.contains(tag)) {
+				return NONE;
+			}
+			if (included.contains(tag)) {
+				return excluded.isEmpty() ? ALL : new TagFilter(State.EXCLUDE, TagSet.EMPTY, excluded);
+			}
+			return this;
+		default:
+			return this;
+		}
+	}
+
+	/**
+	 * Returns true if a primitive model would be part of the result in this state.
+	 * @return true if a primitive model would be included
+	 */
+	public boolean isTagIncluded() {
+		return state==State.ALL || state==State.EXCLUDE;
+	}
+
+	/**
+	 * Returns true if every model is part of the result in this state regardless of its tags.
+	 * @return true if every model is included
+	 */
+	public boolean isEverythingIncluded() {
+		return state==State.ALL;
+	}
+
+	/**
+	 * Returns true if no model is part of the result in this state regardless of its tags.
+	 * @return true if every model is excluded
+	 */
+	public boolean isEverythingExcluded() {
+		return state==State.NONE;
+	}
+
+	/**
+	 * Appends the state and the tags used by it to the given builder.
+	 * @param builder the builder to be used
+	 */
+	public void appendStructure(StructuralHashBuilder builder) {
+		builder.append(state.name());
+		included.appendStructure(builder);
+		excluded.appendStructure(builder);
+	}
+}
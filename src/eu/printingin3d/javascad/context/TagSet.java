@@ -0,0 +1,108 @@
+package eu.printingin3d.javascad.context;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
+
+/**
+ * <p>Immutable set of tags. The tags are kept in a sorted primitive array, so checking whether a tag
+ * is in the set doesn't need boxing and hashing. Because the object can't be changed it is shared
+ * by reference between the generation contexts instead of being copied.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class TagSet {
+	/**
+	 * The set which doesn't contain any tags.
+	 */
+	public static final TagSet EMPTY = new TagSet(new int[0]);
+
+	private final int[] tags;
+
+	private TagSet(int[] tags) {
+		this.tags = tags;
+	}
+
+	/**
+	 * Creates a set from the given tags. Duplicates are allowed, they are kept only once.
+	 * @param tags the tags to be stored
+	 * @return the created set
+	 */
+	public static TagSet of(Collection<Integer> tags) {
+		if (tags.isEmpty()) {
+			return EMPTY;
+		}
+		int[] values = new int[tags.size()];
+		int i = 0;
+		for (Integer tag : tags) {
+			values[i++] = tag.intValue();
+		}
+		Arrays.sort(values);
+
+		int size = 1;
+		for (int j=1;j<values.length;j++) {
+			if (values[j]!=values[size-1]) {
+				values[size++] = values[j];
+			}
+		}
+		return new TagSet(size==values.length ? values : Arrays.copyOf(values, size));
+	}
+
+	/**
+	 * Checks if the given tag is in this set.
+	 * @param tag the tag to be checked
+	 * @return true if and only if the tag is in this set
+	 */
+	public boolean contains(int tag) {
+		return Arrays.binarySearch(tags, tag)>=0;
+	}
+
+	/**
+	 * Returns true if this set doesn't contain any tags.
+	 * @return true if this set doesn't contain any tags
+	 */
+	public boolean isEmpty() {
+		return tags.length==0;
+	}
+
+	/**
+	 * Returns the number of tags in this set.
+	 * @return the number of tags in this set
+	 */
+	public int size() {
+		return tags.length;
+	}
+
+	/**
+	 * Appends the tags of this set in ascending order to the given builder.
+	 * @param builder the builder to be used
+	 */
+	public void appendStructure(StructuralHashBuilder builder) {
+		builder.append(tags.length);
+		for (int tag : tags) {
+			builder.append(tag);
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(tags);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		return Arrays.equals(tags, ((TagSet) obj).tags);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(tags);
+	}
+}
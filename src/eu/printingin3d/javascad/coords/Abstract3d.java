@@ -6,6 +6,7 @@ import java.nio.ByteOrder;
 
 import eu.printingin3d.javascad.enums.OutputFormat;
 import eu.printingin3d.javascad.utils.DoubleUtils;
+import eu.printingin3d.javascad.utils.FixedDecimalEncoder;
 
 /**
  * The base class of all 3D related coordinate classes such as dimensions, angles or coordinates.
@@ -72,11 +73,10 @@ public class Abstract3d {
 	}
 	
 	public String format(OutputFormat outputFormat) {
-		return new StringBuilder().append(outputFormat.getPreText()).
-				append(DoubleUtils.formatDouble(x)).append(outputFormat.getSeparator()).
-				append(DoubleUtils.formatDouble(y)).append(outputFormat.getSeparator()).
-				append(DoubleUtils.formatDouble(z)).append(outputFormat.getPostText()).
-				toString();
+		StringBuilder sb = new StringBuilder(3*FixedDecimalEncoder.MAX_LENGTH).append(outputFormat.getPreText());
+		FixedDecimalEncoder.append(sb, x).append(outputFormat.getSeparator());
+		FixedDecimalEncoder.append(sb, y).append(outputFormat.getSeparator());
+		return FixedDecimalEncoder.append(sb, z).append(outputFormat.getPostText()).toString();
 	}
     
     public byte[] toByteArray() throws IOException {
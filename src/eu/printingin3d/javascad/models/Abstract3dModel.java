@@ -1,14 +1,18 @@
 package eu.printingin3d.javascad.models;
 
 import java.awt.Color;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import eu.printingin3d.javascad.context.IScadGenerationContext;
 import eu.printingin3d.javascad.context.ScadGenerationContextFactory;
+import eu.printingin3d.javascad.context.TagFilter;
 import eu.printingin3d.javascad.coords.Angles3d;
 import eu.printingin3d.javascad.coords.Boundaries3d;
 import eu.printingin3d.javascad.coords.Coords3d;
@@ -22,10 +26,15 @@ import eu.printingin3d.javascad.tranzitions.Rotate;
 import eu.printingin3d.javascad.tranzitions.Translate;
 import eu.printingin3d.javascad.tranzitions.Union;
 import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.IMovePattern;
 import eu.printingin3d.javascad.utils.Moves;
 import eu.printingin3d.javascad.utils.RoundProperties;
+import eu.printingin3d.javascad.utils.StructuralHash;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.InstancedUnion;
+import eu.printingin3d.javascad.vrl.cache.ICSGCache;
 
 /**
  * <p>Implements IModel interface and adds convenient methods to make it easier to move or rotate
@@ -35,12 +44,88 @@ import eu.printingin3d.javascad.vrl.FacetGenerationContext;
  * @author ivivan <ivivan@printingin3d.eu>
  */
 public abstract class Abstract3dModel implements IModel {
+	/**
+	 * Counts the modifications of every model. The memoized hashes checked since the last modification
+	 * are valid without checking the children again.
+	 */
+	private static final AtomicLong MODIFICATIONS = new AtomicLong();
+	/**
+	 * The class declaring the {@link #appendInnerStructure(StructuralHashBuilder)} of the given class.
+	 */
+	private static final ClassValue<Class<?>> STRUCTURE_CLASS = new ClassValue<Class<?>>() {
+		@Override
+		protected Class<?> computeValue(Class<?> type) {
+			return getDeclaringClass(type, "appendInnerStructure", StructuralHashBuilder.class);
+		}
+	};
+	/**
+	 * The class declaring the {@link #toInnerCSG(FacetGenerationContext)} of the given class.
+	 */
+	private static final ClassValue<Class<?>> CSG_CLASS = new ClassValue<Class<?>>() {
+		@Override
+		protected Class<?> computeValue(Class<?> type) {
+			return getDeclaringClass(type, "toInnerCSG", FacetGenerationContext.class);
+		}
+	};
+	
 	private int tag = 0;
 	private Moves moves = new Moves();
 	private Angles3d rotate = Angles3d.ZERO;
 	private boolean debug = false;
 	private boolean background = false;
 	private final Map<Plane, RoundProperties> roundingPlane = new HashMap<>();
+	private volatile long version = 0;
+	private volatile HashMemo structuralHash = null;
+	private volatile HashMemo shapeHash = null;
+	
+	private void changed() {
+		version++;
+		structuralHash = null;
+		shapeHash = null;
+		MODIFICATIONS.incrementAndGet();
+	}
+	
+	private static Class<?> getDeclaringClass(Class<?> type, String name, Class<?>... parameterTypes) {
+		for (Class<?> c = type; c!=null; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod(name, parameterTypes);
+				return c;
+			} catch (NoSuchMethodException e) {
+				// declared by a superclass
+			}
+		}
+		return Abstract3dModel.class;
+	}
+	
+	/**
+	 * Returns the version of this model. Every method which modifies this model increases it, so
+	 * comparing it to an earlier value tells if the model has changed since then.
+	 * @return the version of this model
+	 */
+	public final long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Returns the models this model directly consists of. The default implementation returns an
+	 * empty list, descendants which contain other models should override it.
+	 * @return the direct children of this model
+	 */
+	protected List<Abstract3dModel> getChildModels() {
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * Tells if {@link #toInnerCSG(FacetGenerationContext)} evaluates every child returned by
+	 * {@link #getChildModels()} in the context it gets. The parallel evaluation starts the children in
+	 * advance only if this is true, otherwise they are evaluated when they are needed, in the context
+	 * they are needed in. The default implementation returns false, descendants which override it have
+	 * to override it again whenever they evaluate their children differently.
+	 * @return true if the children are evaluated in the context of this model
+	 */
+	protected boolean isChildContextKnown() {
+		return false;
+	}
 	
 	/**
 	 * Moves this object by the given coordinates.
@@ -49,6 +134,7 @@ public abstract class Abstract3dModel implements IModel {
 	 */
 	public Abstract3dModel move(Coords3d delta) {
 		moves = moves.move(delta);
+		changed();
 		return this;
 	}
 
@@ -63,10 +149,25 @@ public abstract class Abstract3dModel implements IModel {
 	public Abstract3dModel moves(Collection<Coords3d> delta) {
 		if (!delta.isEmpty()) {
 			moves = moves.moves(delta);
+			changed();
 		}
 		return this;
 	}
 	
+	/**
+	 * Add moves described by the given pattern to this model, which makes this a multi-model if the pattern
+	 * has more than one coordinates. Unlike {@link #moves(Collection)} the coordinates are not calculated
+	 * until they are really needed, so big arrays of the same model can be described cheaply.
+	 * Please be aware that not every method works on multi-models, see {@link #isMulti()}  
+	 * @param pattern the pattern used by the move operation
+	 * @return this object to make it possible to chain more method call
+	 */
+	public Abstract3dModel moves(IMovePattern pattern) {
+		moves = moves.moves(pattern);
+		changed();
+		return this;
+	}
+	
 	/**
 	 * Rotates the current model.
 	 * @param delta the angle it will be rotated
@@ -75,6 +176,7 @@ public abstract class Abstract3dModel implements IModel {
 	public Abstract3dModel rotate(Angles3d delta) {
 		this.rotate = this.rotate.rotate(delta);
 		this.moves = this.moves.rotate(delta);
+		changed();
 		return this;
 	}
 	
@@ -86,6 +188,7 @@ public abstract class Abstract3dModel implements IModel {
 	 */
 	public Abstract3dModel debug() {
 		this.debug = true;
+		changed();
 		return this;
 	}
 	
@@ -97,6 +200,7 @@ public abstract class Abstract3dModel implements IModel {
 	 */
 	public Abstract3dModel background() {
 		this.background = true;
+		changed();
 		return this;
 	}
 	
@@ -141,7 +245,11 @@ public abstract class Abstract3dModel implements IModel {
 	 */
 	protected abstract boolean isPrimitive();
 	
-	private SCAD getOne(IScadGenerationContext context) {
+	/**
+	 * Generates the OpenSCAD representation of the model with its rotation, but without its moves.
+	 * @return the representation of the model
+	 */
+	final SCAD getShapeScad(IScadGenerationContext context) {
 		SCAD item = innerToScad(context);
 		
 		if (context.isTagIncluded()) {
@@ -160,7 +268,7 @@ public abstract class Abstract3dModel implements IModel {
 	}
 	
 	private SCAD addMovesScad(IScadGenerationContext context) {
-		SCAD oneItem = getOne(context);
+		SCAD oneItem = ScadModules.getShapeScad(this, context);
 		if (oneItem.isIncluded()) {
 			SCAD result = SCAD.EMPTY;
 			for (Coords3d coord : moves) {
@@ -202,6 +310,17 @@ public abstract class Abstract3dModel implements IModel {
 		return SCAD.EMPTY;
 	}
 	
+	/**
+	 * Renders this model and writes the generated OpenSCAD code to the given output, without
+	 * building the whole code as one string.
+	 * @param out the output the code is written to
+	 * @param context the context of the generation
+	 * @throws IOException if the output throws it
+	 */
+	public final void toScad(Appendable out, IScadGenerationContext context) throws IOException {
+		toScad(context).writeTo(out);
+	}
+	
 	private ScadSurroundings getScadColor(IScadGenerationContext currentContext) {
 		ScadSurroundings surroundings = ScadSurroundings.EMPTY;
 		
@@ -235,12 +354,16 @@ public abstract class Abstract3dModel implements IModel {
 	 * @return the calculated boundaries
 	 */
 	public final Boundaries3d getBoundaries() {
-		Boundaries3d b = getModelBoundaries().rotate(rotate);
-		List<Boundaries3d> bounds = new ArrayList<>();
-		for (Coords3d d : moves) {
-			bounds.add(b.move(d));
-		}
-		Boundaries3d boundaries = Boundaries3d.combine(bounds);
+		return getShapeBoundaries().add(moves.getBoundaries());
+	}
+	
+	/**
+	 * Calculate the including cuboid for the current model without its moves - the boundaries of the
+	 * CSG calculated by {@link #toShapeCSG(FacetGenerationContext)}.
+	 * @return the calculated boundaries
+	 */
+	final Boundaries3d getShapeBoundaries() {
+		Boundaries3d boundaries = getModelBoundaries().rotate(rotate);
 		for (RoundProperties rp : roundingPlane.values()) {
 			boundaries = boundaries.add(rp.getRoundingSize());
 		}
@@ -301,13 +424,304 @@ public abstract class Abstract3dModel implements IModel {
 		AssertValue.isNotNegative(radius, "Radius of the rounding should not be negative!");
 		
 		roundingPlane.put(plane, new RoundProperties(plane, radius));
+		changed();
 		return this;
 	}
 	
 	protected abstract CSG toInnerCSG(FacetGenerationContext context);
 	
+	/**
+	 * <p>Appends the parameters and the children of this model to the given builder. Together with the
+	 * type, the moves, the rotation and the tag of this model these should describe the generated CSG
+	 * completely.</p>
+	 * <p>The default implementation marks the model as unhashable, which means it will never be cached.
+	 * Descendants which can describe themselves should override this method.</p>
+	 * @param builder the builder to be used
+	 */
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		builder.unhashable();
+	}
+	
+	/**
+	 * <p>Returns the class whose parameters are described by
+	 * {@link #appendInnerStructure(StructuralHashBuilder)}. The default implementation returns the class
+	 * which declares the {@link #appendInnerStructure(StructuralHashBuilder)} of this model.</p>
+	 * <p>A subclass which overrides {@link #toInnerCSG(FacetGenerationContext)} can generate a different
+	 * CSG from the same parameters, so the model can be hashed only if its
+	 * {@link #toInnerCSG(FacetGenerationContext)} is declared by the returned class or one of its
+	 * superclasses.</p>
+	 * @return the class described by the inner structure of this model
+	 */
+	protected Class<?> getStructureClass() {
+		return STRUCTURE_CLASS.get(getClass());
+	}
+	
+	private void appendCheckedInnerStructure(StructuralHashBuilder builder) {
+		if (CSG_CLASS.get(getClass()).isAssignableFrom(getStructureClass())) {
+			appendInnerStructure(builder);
+		} else {
+			builder.unhashable();
+		}
+	}
+	
+	/**
+	 * Calculates the structural hash of this model, which is the same for every model which would result
+	 * the same CSG in the same context. The hash is memoized until this model or any of its children is
+	 * modified.
+	 * @return the calculated hash or null if this model or any of its children can't be hashed
+	 */
+	public final StructuralHash getStructuralHash() {
+		HashMemo memo = structuralHash;
+		if (memo==null || !memo.isValid(this)) {
+			memo = new HashMemo(this);
+			StructuralHashBuilder builder = new StructuralHashBuilder();
+			builder.append(getClass().getName()).append(tag).append(rotate);
+			moves.appendStructure(builder);
+			appendCheckedInnerStructure(builder);
+			memo.hash = builder.build();
+			structuralHash = memo;
+		}
+		return memo.hash;
+	}
+	
+	/**
+	 * Calculates the structural hash of this model without its moves, which is the same for every model
+	 * which would result the same CSG in the same context apart from its position. The hash is memoized
+	 * the same way as {@link #getStructuralHash()}.
+	 * @return the calculated hash or null if this model or any of its children can't be hashed
+	 */
+	public final StructuralHash getShapeHash() {
+		HashMemo memo = shapeHash;
+		if (memo==null || !memo.isValid(this)) {
+			memo = new HashMemo(this);
+			StructuralHashBuilder builder = new StructuralHashBuilder();
+			builder.append(getClass().getName()).append(tag).append(rotate);
+			appendCheckedInnerStructure(builder);
+			memo.hash = builder.build();
+			shapeHash = memo;
+		}
+		return memo.hash;
+	}
+	
+	/**
+	 * <p>A hash calculated by this model. It is valid until this model or any of its children is
+	 * modified: the version of this model is checked, and the children are checked by their own memoized
+	 * structural hashes, which are the same objects until they are modified.</p>
+	 * <p>The hashes of the children have to be checked only if any model has been modified since the
+	 * last check, so while the models are not modified - during an evaluation for example - a check
+	 * compares only the direct children instead of walking the subtree. The version, the children and the number of modifications are recorded before the hash
+	 * is calculated, so a modification during the calculation makes the memo invalid rather than the
+	 * hash stale.</p>
+	 */
+	private static final class HashMemo {
+		private final long version;
+		private final List<Abstract3dModel> children;
+		private final List<StructuralHash> childHashes;
+		private volatile long checkedAt;
+		private StructuralHash hash;
+		
+		private HashMemo(Abstract3dModel model) {
+			this.checkedAt = MODIFICATIONS.get();
+			this.version = model.version;
+			this.children = new ArrayList<>(model.getChildModels());
+			this.childHashes = new ArrayList<>(children.size());
+			for (Abstract3dModel child : children) {
+				childHashes.add(child.getStructuralHash());
+			}
+		}
+		
+		private boolean isValid(Abstract3dModel model) {
+			if (version!=model.version) {
+				return false;
+			}
+			List<Abstract3dModel> current = model.getChildModels();
+			if (current.size()!=children.size()) {
+				return false;
+			}
+			for (int i=0;i<children.size();i++) {
+				if (current.get(i)!=children.get(i)) {
+					return false;
+				}
+			}
+			long modifications = MODIFICATIONS.get();
+			if (checkedAt==modifications) {
+				return true;
+			}
+			for (int i=0;i<children.size();i++) {
+				if (children.get(i).getStructuralHash()!=childHashes.get(i)) {
+					return false;
+				}
+			}
+			checkedAt = modifications;
+			return true;
+		}
+	}
+	
+	/**
+	 * Calculates the hash of the OpenSCAD code of this model. It extends the structural hash with the
+	 * properties which change only the generated code, not the CSG: the debug and background flags and
+	 * the roundings of this model and its children.
+	 * @return the calculated hash or null if this model or any of its children can't be hashed
+	 */
+	public final StructuralHash getScadHash() {
+		StructuralHash hash = getStructuralHash();
+		if (hash==null) {
+			return null;
+		}
+		StructuralHashBuilder builder = new StructuralHashBuilder().append(hash);
+		appendScadStructure(builder);
+		return builder.build();
+	}
+	
+	/**
+	 * Calculates the hash of the OpenSCAD code of this model without its moves: it extends the shape
+	 * hash the same way as {@link #getScadHash()} extends the structural hash.
+	 * @return the calculated hash or null if this model or any of its children can't be hashed
+	 */
+	final StructuralHash getShapeScadHash() {
+		StructuralHash hash = getShapeHash();
+		if (hash==null) {
+			return null;
+		}
+		StructuralHashBuilder builder = new StructuralHashBuilder().append(hash);
+		appendScadStructure(builder);
+		return builder.build();
+	}
+	
+	private void appendScadStructure(StructuralHashBuilder builder) {
+		builder.append(debug).append(background).append(roundingPlane.size());
+		// the planes are visited in a fixed order, so the hash doesn't depend on the order of the map
+		for (Plane plane : Plane.values()) {
+			RoundProperties rp = roundingPlane.get(plane);
+			if (rp!=null) {
+				builder.append(rp.getRounding());
+			}
+		}
+		List<Abstract3dModel> children = getChildModels();
+		builder.append(children.size());
+		for (Abstract3dModel child : children) {
+			child.appendScadStructure(builder);
+		}
+	}
+	
+	/**
+	 * <p>Checks if any part of this model would be part of the result when the models are filtered by
+	 * their tags with the given filter - in the state valid for the context this model is used in.</p>
+	 * <p>The check uses only the tags of this model and its children, it doesn't evaluate anything.</p>
+	 * @param aFilter the tag filter valid in the context of this model
+	 * @return true if and only if this model is at least partially included
+	 */
+	public final boolean isIncluded(TagFilter aFilter) {
+		TagFilter filter = aFilter.applyTag(tag);
+		if (filter.isEverythingIncluded()) {
+			return true;
+		}
+		if (filter.isEverythingExcluded()) {
+			return false;
+		}
+		return isInnerIncluded(filter);
+	}
+	
+	/**
+	 * Checks if any part of this model would be part of the result with the given filter, which has
+	 * already been applied to the tag of this model. The default implementation checks the children of
+	 * this model or the filter itself if this model doesn't have any children. Descendants which
+	 * handle their children differently should override it.
+	 * @param filter the tag filter valid under this model
+	 * @return true if and only if this model is at least partially included
+	 */
+	protected boolean isInnerIncluded(TagFilter filter) {
+		List<Abstract3dModel> children = getChildModels();
+		if (children.isEmpty()) {
+			return filter.isTagIncluded();
+		}
+		for (Abstract3dModel child : children) {
+			if (child.isIncluded(filter)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Generates the CSG of this model in the given context. The models filtered out by the tag filter
+	 * of the context result an empty CSG without being evaluated.
+	 * @param aContext the context of the evaluation
+	 * @return the generated CSG
+	 */
 	@Override
 	public final CSG toCSG(FacetGenerationContext aContext) {
+		if (!isIncluded(aContext.getTagFilter())) {
+			return CSG.fromPolygons();
+		}
+		ParallelEvaluation evaluation = aContext.getEvaluation();
+		if (evaluation!=null) {
+			return evaluation.evaluate(this, aContext);
+		}
+		return computeCSG(aContext);
+	}
+	
+	/**
+	 * Calculates the CSG of this model without the parallel evaluation's bookkeeping. It is called by
+	 * {@link ParallelEvaluation} in the task belonging to this model.
+	 * @param aContext the context of the evaluation
+	 * @return the calculated CSG
+	 */
+	final CSG computeCSG(FacetGenerationContext aContext) {
+		EvaluationSession session = aContext.getSession();
+		if (session!=null) {
+			CSG previous = session.lookup(this, aContext);
+			if (previous!=null) {
+				return previous;
+			}
+		}
+		
+		CSG csg = evaluateCachedCSG(aContext);
+		
+		if (session!=null && csg!=null) {
+			session.store(this, aContext, csg);
+		}
+		return csg;
+	}
+	
+	private CSG evaluateCachedCSG(FacetGenerationContext aContext) {
+		ICSGCache cache = aContext.getCache();
+		StructuralHash key = null;
+		if (cache!=null) {
+			key = calculateCacheKey(aContext);
+			if (key!=null) {
+				CSG cached = cache.get(key);
+				if (cached!=null) {
+					return cached;
+				}
+			}
+		}
+		
+		CSG csg = evaluateCSG(aContext);
+		
+		if (key!=null && csg!=null) {
+			cache.put(key, csg);
+		}
+		return csg;
+	}
+	
+	private StructuralHash calculateCacheKey(FacetGenerationContext context) {
+		StructuralHash hash = getStructuralHash();
+		if (hash==null) {
+			return null;
+		}
+		StructuralHashBuilder builder = new StructuralHashBuilder().append(hash);
+		context.appendStructure(builder);
+		return builder.build();
+	}
+	
+	/**
+	 * Calculates the CSG of this model without applying its moves: the tag and the rotation of
+	 * this model are applied, but the result is not moved and not multiplied.
+	 * @param aContext the context of the evaluation
+	 * @return the calculated CSG
+	 */
+	final CSG toShapeCSG(FacetGenerationContext aContext) {
 		FacetGenerationContext context = aContext.applyTag(tag);
 		
 		CSG csg = toInnerCSG(context);
@@ -315,24 +729,18 @@ public abstract class Abstract3dModel implements IModel {
 		if (!rotate.isZero()) {
 			csg = csg.transformed(TransformationFactory.getRotationMatrix(rotate));
 		}
+		return csg;
+	}
+	
+	private CSG evaluateCSG(FacetGenerationContext aContext) {
+		CSG csg = toShapeCSG(aContext);
 		
 		if (isMulti()) {
-			CSG union = null;
-			for (Coords3d move : moves) {
-				CSG transformed = null;
-				if (!move.isZero()) {
-					transformed = csg.transformed(TransformationFactory.getTranlationMatrix(move));
-				}
-				else {
-					transformed = csg;
-				}
-				union = (union==null) ? transformed : union.union(transformed);
-			}
-			csg = union;
+			csg = InstancedUnion.union(csg, moves);
 		} else {
 			for (Coords3d move : moves) {
 				if (!move.isZero()) {
-					csg = csg.transformed(TransformationFactory.getTranlationMatrix(move));
+					csg = csg.translated(move);
 				}
 			}
 		}
@@ -352,6 +760,7 @@ public abstract class Abstract3dModel implements IModel {
 	 */
 	public Abstract3dModel withTag(int tag) {
 		this.tag = tag;
+		changed();
 		return this;
 	}
 
@@ -409,6 +818,14 @@ public abstract class Abstract3dModel implements IModel {
 		return model;
 	}
 
+	/**
+	 * Returns the moves of this model.
+	 * @return the moves of this model
+	 */
+	final Moves getMoves() {
+		return moves;
+	}
+
 	/**
 	 * For testing purposes only.
 	 * @return the tag of the model
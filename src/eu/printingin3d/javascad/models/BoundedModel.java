@@ -1,8 +1,12 @@
 package eu.printingin3d.javascad.models;
 
+import java.util.Collections;
+import java.util.List;
+
 import eu.printingin3d.javascad.context.IScadGenerationContext;
 import eu.printingin3d.javascad.coords.Boundaries3d;
 import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
 
@@ -51,6 +55,21 @@ public class BoundedModel extends Complex3dModel {
 		return baseModel.toCSG(context);
 	}
 
+	@Override
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		builder.append(baseModel.getStructuralHash()).append(boundaries3d);
+	}
+
+	@Override
+	protected List<Abstract3dModel> getChildModels() {
+		return Collections.singletonList(baseModel);
+	}
+
+	@Override
+	protected boolean isChildContextKnown() {
+		return true;
+	}
+
 	@Override
 	protected Abstract3dModel innerSubModel(IScadGenerationContext context) {
 		Abstract3dModel subModel = baseModel.subModel(context);
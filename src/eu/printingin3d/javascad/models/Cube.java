@@ -1,5 +1,6 @@
 package eu.printingin3d.javascad.models;
 
+import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,6 +11,7 @@ import eu.printingin3d.javascad.coords.Coords3d;
 import eu.printingin3d.javascad.coords.Dims3d;
 import eu.printingin3d.javascad.enums.AlignType;
 import eu.printingin3d.javascad.enums.Side;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
 import eu.printingin3d.javascad.vrl.Polygon;
@@ -87,6 +89,7 @@ public class Cube extends Atomic3dModel {
             {0, 2, 3, 1},
             {4, 5, 7, 6}
         };
+        Color color = context.getColor();
         List<Polygon> polygons = new ArrayList<>();
         for (int[] info : a) {
             List<Coords3d> vertices = new ArrayList<>();
@@ -98,9 +101,14 @@ public class Cube extends Atomic3dModel {
                 );
                 vertices.add(pos);
             }
-            polygons.add(Polygon.fromPolygons(vertices, context.getColor()));
+            polygons.add(Polygon.fromPolygons(vertices, color));
         }
         
 		return new CSG(polygons);
 	}
+
+	@Override
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		builder.append(size);
+	}
 }
@@ -2,6 +2,7 @@ package eu.printingin3d.javascad.models;
 
 import static eu.printingin3d.javascad.utils.AssertValue.isNotNegative;
 
+import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -12,6 +13,7 @@ import eu.printingin3d.javascad.coords.Boundary;
 import eu.printingin3d.javascad.coords.Coords3d;
 import eu.printingin3d.javascad.exceptions.IllegalValueException;
 import eu.printingin3d.javascad.utils.DoubleUtils;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
 import eu.printingin3d.javascad.vrl.Polygon;
@@ -95,6 +97,7 @@ public class Cylinder extends Atomic3dModel {
 		Coords3d startV = Coords3d.zOnly(+z);
 		Coords3d endV = Coords3d.zOnly(-z);
         List<Polygon> polygons = new ArrayList<>();
+        Color color = context.getColor();
 
         int numSlices = context.calculateNumberOfSlices(Math.min(topRadius, bottomRadius));
         for (int i = 0; i < numSlices; i++) {
@@ -104,7 +107,7 @@ public class Cylinder extends Atomic3dModel {
                     startV,
                     cylPoint(+z, topRadius, t0),
                     cylPoint(+z, topRadius, t1)
-                ), context.getColor()
+                ), color
             ));
             polygons.add(Polygon.fromPolygons(Arrays.asList(
                     cylPoint(+z, topRadius, t1),
@@ -112,12 +115,12 @@ public class Cylinder extends Atomic3dModel {
                     cylPoint(-z, bottomRadius, t0),
                     cylPoint(-z, bottomRadius, t1)
                 
-            ), context.getColor()));
+            ), color));
             polygons.add(Polygon.fromPolygons(Arrays.asList(
                             endV,
                             cylPoint(-z, bottomRadius, t1),
                             cylPoint(-z, bottomRadius, t0)
-            ), context.getColor())
+            ), color)
             
             );
         }
@@ -125,6 +128,11 @@ public class Cylinder extends Atomic3dModel {
         return new CSG(polygons);
 	}
 
+	@Override
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		builder.append(length).append(bottomRadius).append(topRadius);
+	}
+
     private Coords3d cylPoint(double z, double r, double slice) {
         double angle = slice * Math.PI * 2;
         Coords3d out = new Coords3d(Math.cos(angle), Math.sin(angle), 0.0);
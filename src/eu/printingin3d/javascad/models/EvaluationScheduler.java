@@ -0,0 +1,97 @@
+package eu.printingin3d.javascad.models;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.ParallelTasks;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+
+/**
+ * <p>Evaluates model trees in parallel: the children of the unions, differences, intersections and
+ * every other transition are evaluated at the same time on the given executor, see
+ * {@link ParallelEvaluation} for the details.</p>
+ * <p>The default executor uses virtual threads if the JVM supports them, otherwise a fixed pool with
+ * as many daemon threads as many processors the machine has.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class EvaluationScheduler {
+	private final Executor executor;
+
+	/**
+	 * Creates the scheduler with the given executor.
+	 * @param executor the executor used to run the tasks
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the executor is null
+	 */
+	public EvaluationScheduler(Executor executor) {
+		AssertValue.isNotNull(executor, "The executor should not be null!");
+
+		this.executor = executor;
+	}
+
+	/**
+	 * Creates the scheduler with the default executor, see {@link #createDefaultExecutor()}.
+	 */
+	public EvaluationScheduler() {
+		this(createDefaultExecutor());
+	}
+
+	/**
+	 * Creates an executor using virtual threads if the JVM supports them, otherwise a fixed pool with
+	 * as many daemon threads as many processors the machine has.
+	 * @return the created executor
+	 */
+	public static ExecutorService createDefaultExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+					ParallelTasks.daemonThreadFactory("javascad-evaluation"));
+		}
+	}
+
+	/**
+	 * Evaluates the given model in parallel.
+	 * @param model the model to be evaluated
+	 * @param context the context used for the evaluation
+	 * @return the CSG of the model
+	 */
+	public CSG toCSG(Abstract3dModel model, FacetGenerationContext context) {
+		return model.toCSG(startEvaluation(context));
+	}
+
+	/**
+	 * Creates a copy of the given context which starts a new parallel evaluation. Every model evaluated
+	 * with the returned context, or with any context derived from it, takes part in the same evaluation:
+	 * a model used by more of them is evaluated only once in the same context. The models must not be
+	 * modified while the returned context is in use.
+	 * @param context the context used for the evaluation
+	 * @return the context taking part in the new evaluation
+	 */
+	public FacetGenerationContext startEvaluation(FacetGenerationContext context) {
+		return context.withEvaluation(new ParallelEvaluation(executor));
+	}
+
+	/**
+	 * Evaluates the given model in parallel with the default context.
+	 * @param model the model to be evaluated
+	 * @return the CSG of the model
+	 */
+	public CSG toCSG(Abstract3dModel model) {
+		return toCSG(model, FacetGenerationContext.DEFAULT);
+	}
+
+	/**
+	 * Shuts down the executor if it is an {@link ExecutorService}. The scheduler can't be used after this.
+	 */
+	public void shutdown() {
+		if (executor instanceof ExecutorService) {
+			((ExecutorService) executor).shutdown();
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package eu.printingin3d.javascad.models;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import eu.printingin3d.javascad.utils.StructuralHash;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+
+/**
+ * <p>Keeps the CSG of every model evaluated in this session, so evaluating the same model tree again
+ * recalculates only the models which have changed since the last evaluation and the models containing
+ * them - the path from the changed models to the root.</p>
+ * <p>A model is considered unchanged if its version (see {@link Abstract3dModel#getVersion()}) is the same,
+ * it has the same children and all of its children are unchanged as well, and it is evaluated in an
+ * equivalent context. The models are identified by their identity, not by their structure.</p>
+ * <p>The session keeps only the models used by the latest evaluation.</p>
+ * <p>The object is thread safe.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class EvaluationSession {
+	private static final class Entry {
+		private final long version;
+		private final List<Abstract3dModel> children;
+		private final StructuralHash signature;
+		private final CSG csg;
+		private long checkedGeneration;
+		private boolean upToDate;
+		private long usedGeneration;
+
+		private Entry(long version, List<Abstract3dModel> children, StructuralHash signature, CSG csg) {
+			this.version = version;
+			this.children = children;
+			this.signature = signature;
+			this.csg = csg;
+		}
+	}
+
+	private final Map<Abstract3dModel, Entry> entries = new IdentityHashMap<>();
+	private long generation = 0;
+	private long reused = 0;
+	private long evaluated = 0;
+
+	/**
+	 * Evaluates the given model in this session. The models which haven't changed since the previous
+	 * evaluation are not evaluated again.
+	 * @param model the model to be evaluated
+	 * @param context the context used for the evaluation
+	 * @return the CSG of the model
+	 */
+	public CSG toCSG(Abstract3dModel model, FacetGenerationContext context) {
+		synchronized (this) {
+			generation++;
+		}
+		CSG result = model.toCSG(context.withSession(this));
+		sweep();
+		return result;
+	}
+
+	/**
+	 * Evaluates the given model in this session with the default context.
+	 * @param model the model to be evaluated
+	 * @return the CSG of the model
+	 */
+	public CSG toCSG(Abstract3dModel model) {
+		return toCSG(model, FacetGenerationContext.DEFAULT);
+	}
+
+	synchronized CSG lookup(Abstract3dModel model, FacetGenerationContext context) {
+		Entry entry = entries.get(model);
+		if (entry==null || !isUpToDate(model) || !entry.signature.equals(signatureOf(context))) {
+			return null;
+		}
+		reused++;
+		return entry.csg;
+	}
+
+	synchronized void store(Abstract3dModel model, FacetGenerationContext context, CSG csg) {
+		Entry entry = new Entry(model.getVersion(), new ArrayList<>(model.getChildModels()),
+				signatureOf(context), csg);
+		entry.checkedGeneration = generation;
+		entry.upToDate = true;
+		entry.usedGeneration = generation;
+		entries.put(model, entry);
+		evaluated++;
+	}
+
+	private boolean isUpToDate(Abstract3dModel model) {
+		Entry entry = entries.get(model);
+		if (entry==null) {
+			return false;
+		}
+		if (entry.checkedGeneration==generation) {
+			return entry.upToDate;
+		}
+		entry.usedGeneration = generation;
+
+		boolean result = entry.version==model.getVersion() && isSame(entry.children, model.getChildModels());
+		if (result) {
+			for (Abstract3dModel child : entry.children) {
+				if (!isUpToDate(child)) {
+					result = false;
+					break;
+				}
+			}
+		}
+		entry.checkedGeneration = generation;
+		entry.upToDate = result;
+		return result;
+	}
+
+	private static boolean isSame(List<Abstract3dModel> previous, List<Abstract3dModel> current) {
+		if (previous.size()!=current.size()) {
+			return false;
+		}
+		for (int i=0;i<previous.size();i++) {
+			if (previous.get(i)!=current.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static StructuralHash signatureOf(FacetGenerationContext context) {
+		StructuralHashBuilder builder = new StructuralHashBuilder();
+		context.appendStructure(builder);
+		return builder.build();
+	}
+
+	private synchronized void sweep() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().usedGeneration<generation) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of models kept by this session.
+	 * @return the number of models kept by this session
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of model evaluations spared by this session since it was created.
+	 * @return the number of model evaluations spared
+	 */
+	public synchronized long getReusedCount() {
+		return reused;
+	}
+
+	/**
+	 * Returns the number of models evaluated in this session since it was created.
+	 * @return the number of models evaluated
+	 */
+	public synchronized long getEvaluatedCount() {
+		return evaluated;
+	}
+
+	/**
+	 * Forgets every model, so the next evaluation calculates everything again.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+}
@@ -1,7 +1,11 @@
 package eu.printingin3d.javascad.models;
 
+import java.util.Collections;
+import java.util.List;
+
 import eu.printingin3d.javascad.context.IScadGenerationContext;
 import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
 
@@ -29,4 +33,19 @@ public abstract class Extendable3dModel extends Complex3dModel {
 	protected CSG toInnerCSG(FacetGenerationContext context) {
 		return baseModel.toCSG(context);
 	}
+
+	@Override
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		builder.append(baseModel.getStructuralHash());
+	}
+
+	@Override
+	protected List<Abstract3dModel> getChildModels() {
+		return Collections.singletonList(baseModel);
+	}
+
+	@Override
+	protected boolean isChildContextKnown() {
+		return true;
+	}
 }
@@ -0,0 +1,124 @@
+package eu.printingin3d.javascad.models;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import eu.printingin3d.javascad.utils.ParallelTasks;
+import eu.printingin3d.javascad.utils.StructuralHash;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+
+/**
+ * <p>Represents one parallel evaluation of a model tree started by {@link EvaluationScheduler}. Every
+ * model evaluated in a given context becomes a task. When a task starts it submits the tasks of the
+ * children of its model to the executor, so independent subtrees are evaluated at the same time - if the
+ * model tells the context its children are evaluated in, see {@link Abstract3dModel#isChildContextKnown()}.
+ * </p>
+ * <p>The tasks are identified by the model instance and the context, so a model referenced more than
+ * once is evaluated only once. A thread which needs the result of a task not started yet runs the task
+ * itself, so the evaluation can't deadlock even on a pool with a single thread.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class ParallelEvaluation {
+	private final Executor executor;
+	private final Map<Abstract3dModel, Map<StructuralHash, FutureTask<CSG>>> tasks = new IdentityHashMap<>();
+	private int taskCount = 0;
+
+	ParallelEvaluation(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns with the CSG of the given model evaluated in the given context. It is called by
+	 * {@link Abstract3dModel#toCSG(FacetGenerationContext)}.
+	 * @param model the model to be evaluated
+	 * @param context the context of the evaluation
+	 * @return the CSG of the model
+	 */
+	CSG evaluate(Abstract3dModel model, FacetGenerationContext context) {
+		StructuralHash signature = signatureOf(context);
+		FutureTask<CSG> task;
+		synchronized (this) {
+			task = findTask(model, signature);
+			if (task==null) {
+				task = createTask(model, context, signature);
+			}
+		}
+		// it does nothing if the task has already been started by another thread
+		task.run();
+		return ParallelTasks.join(task);
+	}
+
+	private void forkChildren(Abstract3dModel model, FacetGenerationContext context) {
+		if (!model.isChildContextKnown()) {
+			// a task started in a guessed context could be wasted work
+			return;
+		}
+		FacetGenerationContext childContext = context.applyTag(model.getTag());
+		StructuralHash signature = signatureOf(childContext);
+		for (Abstract3dModel child : model.getChildModels()) {
+			if (!child.isIncluded(childContext.getTagFilter())) {
+				continue;
+			}
+			FutureTask<CSG> task = null;
+			synchronized (this) {
+				if (findTask(child, signature)==null) {
+					task = createTask(child, childContext, signature);
+				}
+			}
+			if (task!=null) {
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException e) {
+					// the task will be run by the thread which needs its result
+				}
+			}
+		}
+	}
+
+	private static StructuralHash signatureOf(FacetGenerationContext context) {
+		StructuralHashBuilder builder = new StructuralHashBuilder();
+		context.appendStructure(builder);
+		return builder.build();
+	}
+
+	private FutureTask<CSG> findTask(Abstract3dModel model, StructuralHash signature) {
+		Map<StructuralHash, FutureTask<CSG>> modelTasks = tasks.get(model);
+		return modelTasks==null ? null : modelTasks.get(signature);
+	}
+
+	private FutureTask<CSG> createTask(final Abstract3dModel model, final FacetGenerationContext context,
+			StructuralHash signature) {
+		Map<StructuralHash, FutureTask<CSG>> modelTasks = tasks.get(model);
+		if (modelTasks==null) {
+			modelTasks = new HashMap<>();
+			tasks.put(model, modelTasks);
+		}
+		FutureTask<CSG> task = new FutureTask<>(new Callable<CSG>() {
+			@Override
+			public CSG call() {
+				forkChildren(model, context);
+				return model.computeCSG(context);
+			}
+		});
+		modelTasks.put(signature, task);
+		taskCount++;
+		return task;
+	}
+
+	/**
+	 * Returns the number of the tasks created during this evaluation - which is the number of
+	 * distinct model and context pairs.
+	 * @return the number of the tasks created
+	 */
+	public synchronized int getTaskCount() {
+		return taskCount;
+	}
+}
@@ -1,19 +1,23 @@
 package eu.printingin3d.javascad.models;
 
+import java.awt.Color;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 
 import eu.printingin3d.javascad.context.IScadGenerationContext;
 import eu.printingin3d.javascad.coords.Boundaries3d;
 import eu.printingin3d.javascad.coords.Coords3d;
 import eu.printingin3d.javascad.coords.Triangle3d;
 import eu.printingin3d.javascad.exceptions.IllegalValueException;
-import eu.printingin3d.javascad.exceptions.NotImplementedException;
 import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.FixedDecimalEncoder;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
+import eu.printingin3d.javascad.vrl.IndexedMeshBuilder;
+import eu.printingin3d.javascad.vrl.Polygon;
 
 /**
  * <p>
@@ -21,12 +25,45 @@ import eu.printingin3d.javascad.vrl.FacetGenerationContext;
  * as difference or intersection - are not always works perfectly with this
  * object.
  * </p>
+ * <p>
+ * The two sources of the triangles use different windings: the triangles given as
+ * {@link Triangle3d} follow the convention of OpenSCAD's {@code polyhedron()} and list their points
+ * clockwise when seen from outside, while the triangles of an {@link IndexedMesh} - just like the
+ * facets of a CSG or an STL file - are counter-clockwise, their outward normal is
+ * {@code (b-a)x(c-a)}. The mesh of this object is always stored counter-clockwise: the triangles
+ * given as {@link Triangle3d} are reversed when the mesh is built, and the winding is reversed again
+ * only when the OpenSCAD code is generated.
+ * </p>
  * 
  * @author Rob van der Veer
  */
 public class Polyhedron extends Atomic3dModel {
 
-	private final List<Triangle3d> triangles;
+	/**
+	 * The mesh and the values calculated from it. The mesh is immutable, so this object is shared by
+	 * the clones of the polyhedron and the values are calculated only once.
+	 */
+	private static final class MeshData {
+		private final IndexedMesh mesh;
+		private final Boundaries3d boundaries;
+		private volatile String scad;
+
+		private MeshData(IndexedMesh mesh) {
+			this.mesh = mesh;
+			this.boundaries = calculateBoundaries(mesh);
+		}
+
+		private String getScad() {
+			String result = scad;
+			if (result==null) {
+				result = buildScad(mesh);
+				scad = result;
+			}
+			return result;
+		}
+	}
+
+	private final MeshData data;
 
 	/**
 	 * Constructs the object with the given triangles.
@@ -37,89 +74,136 @@ public class Polyhedron extends Atomic3dModel {
 	 *             thrown if the given list is empty
 	 */
 	public Polyhedron(List<Triangle3d> triangles) throws IllegalValueException {
+		this(new MeshData(toMesh(triangles)));
+	}
+
+	private Polyhedron(MeshData data) {
+		this.data = data;
+	}
+
+	private static IndexedMesh toMesh(List<Triangle3d> triangles) throws IllegalValueException {
 		AssertValue.isNotEmpty(triangles,
 				"The triangle list should not be empty!");
 
-		this.triangles = triangles;
+		IndexedMeshBuilder builder = new IndexedMeshBuilder(triangles.size(), false, false);
+		for (Triangle3d triangle : triangles) {
+			List<Coords3d> points = triangle.getPoints();
+			// clockwise in OpenSCAD, so it is reversed to the counter-clockwise winding of the mesh
+			builder.addTriangle(null, points.get(0), points.get(2), points.get(1), null);
+		}
+		return builder.buildIndexedMesh();
 	}
 
-	@Override
-	protected Boundaries3d getModelBoundaries() {
+	/**
+	 * Constructs the object with the given mesh, for example one which was read by
+	 * {@link eu.printingin3d.javascad.vrl.importer.StlImporter}.
+	 * 
+	 * @param mesh
+	 *            the mesh used to create this object
+	 * @return the created object
+	 * @throws IllegalValueException
+	 *             thrown if the given mesh is null or has no triangles
+	 */
+	public static Polyhedron fromMesh(IndexedMesh mesh) throws IllegalValueException {
+		AssertValue.isNotNull(mesh, "The mesh should not be null!");
+		AssertValue.isTrue(mesh.getTriangleCount()>0, "The mesh should not be empty!");
+
+		return new Polyhedron(new MeshData(mesh));
+	}
+
+	private static Boundaries3d calculateBoundaries(IndexedMesh mesh) {
 		double minX = Double.MAX_VALUE;
 		double minY = Double.MAX_VALUE;
 		double minZ = Double.MAX_VALUE;
-		double maxX = Double.MIN_VALUE;
-		double maxY = Double.MIN_VALUE;
-		double maxZ = Double.MIN_VALUE;
-
-		for (final Coords3d p : getPoints()) {
-			minX = Math.min(p.getX(), minX);
-			minY = Math.min(p.getY(), minY);
-			minZ = Math.min(p.getZ(), minZ);
-			maxX = Math.max(p.getX(), maxX);
-			maxY = Math.max(p.getY(), maxY);
-			maxZ = Math.max(p.getZ(), maxZ);
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		double maxZ = -Double.MAX_VALUE;
+
+		for (int i=0;i<mesh.getVertexCount();i++) {
+			minX = Math.min(mesh.getX(i), minX);
+			minY = Math.min(mesh.getY(i), minY);
+			minZ = Math.min(mesh.getZ(i), minZ);
+			maxX = Math.max(mesh.getX(i), maxX);
+			maxY = Math.max(mesh.getY(i), maxY);
+			maxZ = Math.max(mesh.getZ(i), maxZ);
 		}
 		Coords3d minCorner = new Coords3d(minX, minY, minZ);
 		Coords3d maxCorner = new Coords3d(maxX, maxY, maxZ);
 		return new Boundaries3d(minCorner, maxCorner);
 	}
 
-	private List<Coords3d> getPoints() {
-		Set<Coords3d> result = new HashSet<>();
-		for (Triangle3d triangle : triangles) {
-			result.addAll(triangle.getPoints());
-		}
-		return new ArrayList<>(result);
+	@Override
+	protected Boundaries3d getModelBoundaries() {
+		return data.boundaries;
 	}
 
 	@Override
 	protected Abstract3dModel innerCloneModel() {
-		return new Polyhedron(new ArrayList<>(triangles));
+		return new Polyhedron(data);
 	}
 
 	@Override
 	protected SCAD innerToScad(IScadGenerationContext context) {
-		List<Coords3d> points = getPoints();
-
-		SCAD b = new SCAD("polyhedron(");
-		b = addPoints(b, points)
-				.append(",");
-		b = addTriangles(b, points)
-				.append("\n);");
-		return b;
+		return new SCAD(data.getScad());
 	}
 
-	private SCAD addPoints(SCAD b, List<Coords3d> points) {
-		b = b.append("\n  points=[");
-		boolean first = true;
-		for (Coords3d c : points) {
-			if (first) {
-				first = false;
-			} else {
-				b = b.append(", ");
+	/**
+	 * Builds the SCAD code in one string builder: the points are written with the same format as
+	 * {@link Coords3d#toString()} and the triangles refer them by their index in the mesh. The
+	 * triangles of the mesh are reversed, because OpenSCAD expects them clockwise.
+	 */
+	private static String buildScad(IndexedMesh mesh) {
+		int vertexCount = mesh.getVertexCount();
+		int triangleCount = mesh.getTriangleCount();
+		StringBuilder sb = new StringBuilder(32 + vertexCount*24 + triangleCount*20);
+
+		sb.append("polyhedron(\n  points=[");
+		for (int i=0;i<vertexCount;i++) {
+			if (i>0) {
+				sb.append(", ");
+			}
+			sb.append('[');
+			FixedDecimalEncoder.append(sb, mesh.getX(i)).append(',');
+			FixedDecimalEncoder.append(sb, mesh.getY(i)).append(',');
+			FixedDecimalEncoder.append(sb, mesh.getZ(i)).append(']');
+		}
+		sb.append("],\n  triangles=[");
+		for (int t=0;t<triangleCount;t++) {
+			if (t>0) {
+				sb.append(", ");
 			}
-			b = b.append(c.toString());
+			sb.append('[').append(mesh.getVertexIndex(t, 0))
+				.append(',').append(mesh.getVertexIndex(t, 2))
+				.append(',').append(mesh.getVertexIndex(t, 1)).append(']');
 		}
-		return b.append("]");
+		return sb.append("]\n);").toString();
 	}
 
-	private SCAD addTriangles(SCAD b, List<Coords3d> points) {
-		b = b.append("\n  triangles=[");
-		boolean first = true;
-		for (Triangle3d c : triangles) {
-			if (first) {
-				first = false;
-			} else {
-				b = b.append(", ");
+	@Override
+	protected CSG toInnerCSG(FacetGenerationContext context) {
+		IndexedMesh mesh = data.mesh;
+		Color color = context.getColor();
+		List<Polygon> polygons = new ArrayList<>(mesh.getTriangleCount());
+		for (int t=0;t<mesh.getTriangleCount();t++) {
+			Coords3d a = mesh.getVertex(mesh.getVertexIndex(t, 0));
+			Coords3d b = mesh.getVertex(mesh.getVertexIndex(t, 1));
+			Coords3d c = mesh.getVertex(mesh.getVertexIndex(t, 2));
+			// the degenerated triangles have no normal, but they don't add anything to the solid either
+			if (b.move(a.inverse()).cross(c.move(a.inverse())).magnitude()>0.0) {
+				polygons.add(Polygon.fromPolygons(Arrays.asList(a, b, c), color));
 			}
-			b = b.append(c.toTriangleString(points));
 		}
-		return b.append("]");
+		return new CSG(polygons);
 	}
 
 	@Override
-	protected CSG toInnerCSG(FacetGenerationContext context) {
-		throw new NotImplementedException();
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		IndexedMesh mesh = data.mesh;
+		builder.append(mesh.getTriangleCount());
+		for (int t=0;t<mesh.getTriangleCount();t++) {
+			for (int corner=0;corner<3;corner++) {
+				builder.append(mesh.getVertex(mesh.getVertexIndex(t, corner)));
+			}
+		}
 	}
-}
\ No newline at end of file
+}
@@ -4,6 +4,7 @@ import eu.printingin3d.javascad.context.IScadGenerationContext;
 import eu.printingin3d.javascad.exceptions.IllegalValueException;
 import eu.printingin3d.javascad.utils.AssertValue;
 import eu.printingin3d.javascad.utils.DoubleUtils;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 
 /**
  * Represents a prism or a pyramid.
@@ -63,4 +64,9 @@ public class Prism extends Cylinder {
 	protected Abstract3dModel innerCloneModel() {
 		return new Prism(length, bottomRadius, topRadius, numberOfSides);
 	}
+
+	@Override
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		builder.append(length).append(bottomRadius).append(topRadius).append(numberOfSides);
+	}
 }
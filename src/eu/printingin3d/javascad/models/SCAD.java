@@ -1,54 +1,133 @@
 package eu.printingin3d.javascad.models;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * <p>Immutable representation of a generated OpenSCAD code fragment.</p>
+ * <p>The fragments are not copied when they are appended or prepended to each other, the result only
+ * references its parts, so building the code of a deep model tree is linear in the size of the code.
+ * The code can be streamed by {@link #writeTo(Appendable)} without building the whole string, and
+ * {@link #getScad()} builds the string only once.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
 public class SCAD {
 	public static final SCAD EMPTY = new SCAD("", false);
-	
-	private final String scad;
+
+	private final String text;
+	private final SCAD left;
+	private final SCAD right;
+	private final long length;
 	private final boolean included;
-	private SCAD(String scad, boolean included) {
-		this.scad = scad;
+	private volatile String scad;
+
+	private SCAD(String text, SCAD left, SCAD right, long length, boolean included) {
+		this.text = text;
+		this.left = left;
+		this.right = right;
+		this.length = length;
 		this.included = included;
+		this.scad = text;
 	}
-	
+
+	private SCAD(String scad, boolean included) {
+		this(scad, null, null, scad==null ? 0 : scad.length(), included);
+	}
+
 	public SCAD(String scad) {
 		this(scad, false);
 	}
-	
+
 
 	public String getScad() {
-		return scad;
+		String result = scad;
+		if (result==null && left!=null) {
+			StringBuilder sb = new StringBuilder((int)length);
+			try {
+				writeTo(sb);
+			} catch (IOException e) {
+				// a StringBuilder never throws it
+				throw new IllegalStateException(e);
+			}
+			result = sb.toString();
+			scad = result;
+		}
+		return result;
 	}
-	
+
+	/**
+	 * Writes the code to the given output part by part, without building the whole string.
+	 * @param out the output the code is written to
+	 * @throws IOException if the output throws it
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		if (left==null || scad!=null) {
+			out.append(getScad());
+			return;
+		}
+		// the parts are visited with an explicit stack, because a long chain of appends is too deep
+		// for recursion
+		Deque<SCAD> stack = new ArrayDeque<>();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			SCAD part = stack.pop();
+			String flat = part.scad;
+			if (flat!=null || part.left==null) {
+				out.append(flat);
+			} else {
+				stack.push(part.right);
+				stack.push(part.left);
+			}
+		}
+	}
+
 	public boolean isIncluded() {
-		return included && !scad.isEmpty();
+		return included && length>0;
 	}
-	
+
 	public boolean isEmpty() {
-		return scad.isEmpty();
+		return length==0;
 	}
-	
+
 	public SCAD prepend(String text) {
-		return new SCAD(text+this.scad, included);
+		return concat(new SCAD(text, false), this, included);
 	}
-	
+
 	public SCAD append(String text) {
-		return new SCAD(this.scad+text, included);
+		return concat(this, new SCAD(text, false), included);
 	}
-	
+
 	public SCAD append(SCAD scad) {
-		return new SCAD(this.scad+scad.scad, included || scad.included);
+		return concat(this, scad, included || scad.included);
 	}
 
 	public SCAD include() {
-		return new SCAD(this.scad, true);
+		return withIncluded(true);
+	}
+
+	private SCAD withIncluded(boolean included) {
+		return this.included==included ? this : new SCAD(text, left, right, length, included);
 	}
-	
+
+	private static SCAD concat(SCAD left, SCAD right, boolean included) {
+		if (right.length==0) {
+			return left.withIncluded(included);
+		}
+		if (left.length==0) {
+			return right.withIncluded(included);
+		}
+		return new SCAD(null, left, right, left.length+right.length, included);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + (included ? 1231 : 1237);
-		result = prime * result + ((scad == null) ? 0 : scad.hashCode());
+		String text = getScad();
+		result = prime * result + ((text == null) ? 0 : text.hashCode());
 		return result;
 	}
 
@@ -67,13 +146,10 @@ public class SCAD {
 		if (included != other.included) {
 			return false;
 		}
-		if (scad == null) {
-			if (other.scad != null) {
-				return false;
-			}
-		} else if (!scad.equals(other.scad)) {
-			return false;
+		String text = getScad();
+		if (text == null) {
+			return other.getScad() == null;
 		}
-		return true;
+		return length == other.length && text.equals(other.getScad());
 	}
 }
@@ -0,0 +1,220 @@
+package eu.printingin3d.javascad.models;
+
+import java.awt.Color;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import eu.printingin3d.javascad.context.AbstractColorHandlingContext;
+import eu.printingin3d.javascad.context.IScadGenerationContext;
+import eu.printingin3d.javascad.utils.StructuralHash;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
+
+/**
+ * <p>Extracts the repeated subtrees of the models to OpenSCAD modules, so a part used hundreds of times
+ * is written only once and every use site is a short module call with its own transformations.</p>
+ * <p>The candidates are the models whose shape (see {@link Abstract3dModel#getShapeHash()}) appears more
+ * times in the model trees - counting the moves of the models too. The generated code of the candidates
+ * is compared as well, because the same shape can result different code in different contexts, so
+ * only the subtrees with the same code share a module.</p>
+ * <p>The modules are collected while the models are generated with the context returned by
+ * {@link #wrap(IScadGenerationContext)}, after that {@link #getDefinitions()} returns the code which
+ * defines them. OpenSCAD resolves the modules defined later in the file too, so the definitions can be
+ * written after the models.</p>
+ * <p>If the context can be described by a structural hash - it is derived from
+ * {@link AbstractColorHandlingContext} - the code of a repeated subtree is generated only at its first
+ * use, the other uses with the same shape in the same context get the same code without generating
+ * it again.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class ScadModules {
+	/**
+	 * The shorter subtrees are not worth to be extracted, the module call would be almost as long.
+	 */
+	private static final int MIN_LENGTH = 64;
+
+	private final Map<StructuralHash, Integer> counts = new HashMap<>();
+	private final Map<Abstract3dModel, StructuralHash> shapeHashes = new IdentityHashMap<>();
+	private final Map<Abstract3dModel, StructuralHash> shapeScadHashes = new IdentityHashMap<>();
+	private final Map<StructuralHash, SCAD> generated = new HashMap<>();
+	private final Map<String, String> names = new LinkedHashMap<>();
+	private SCAD definitions = SCAD.EMPTY;
+
+	/**
+	 * Creates the object and finds the repeated subtrees of the given models.
+	 * @param models the models to be generated
+	 */
+	public ScadModules(Collection<? extends IModel> models) {
+		for (IModel model : models) {
+			if (model instanceof Abstract3dModel) {
+				count((Abstract3dModel)model);
+			}
+		}
+	}
+
+	private void count(Abstract3dModel model) {
+		StructuralHash hash = getShapeHash(model);
+		if (hash==null) {
+			for (Abstract3dModel child : model.getChildModels()) {
+				count(child);
+			}
+			return;
+		}
+		Integer count = counts.get(hash);
+		counts.put(hash, Integer.valueOf((count==null ? 0 : count.intValue())+model.getMoves().size()));
+		// the children of a repeated subtree are generated inside its module, so they are counted only once
+		if (count==null) {
+			for (Abstract3dModel child : model.getChildModels()) {
+				count(child);
+			}
+		}
+	}
+
+	/**
+	 * Returns the context which extracts the repeated subtrees to modules during the generation.
+	 * @param context the context of the generation
+	 * @return the context to be passed to {@link IModel#toScad(IScadGenerationContext)}
+	 */
+	public IScadGenerationContext wrap(IScadGenerationContext context) {
+		return new ModuleContext(context, this);
+	}
+
+	/**
+	 * Returns the definitions of the modules extracted so far.
+	 * @return the OpenSCAD code of the modules
+	 */
+	public SCAD getDefinitions() {
+		return definitions;
+	}
+
+	/**
+	 * Returns the number of the modules extracted so far.
+	 * @return the number of the modules
+	 */
+	public int getModuleCount() {
+		return names.size();
+	}
+
+	/**
+	 * Generates the shape of the given model - its code without its moves - or the call of its module
+	 * if the model is repeated and the context is created by {@link #wrap(IScadGenerationContext)}.
+	 */
+	static SCAD getShapeScad(Abstract3dModel model, IScadGenerationContext context) {
+		if (context instanceof ModuleContext) {
+			ModuleContext moduleContext = (ModuleContext)context;
+			return moduleContext.modules.toModule(model, moduleContext);
+		}
+		return model.getShapeScad(context);
+	}
+
+	private SCAD toModule(Abstract3dModel model, ModuleContext context) {
+		if (!isRepeated(model)) {
+			return model.getShapeScad(context);
+		}
+		StructuralHash key = getKey(model, context.context);
+		SCAD result = key==null ? null : generated.get(key);
+		if (result==null) {
+			result = createModule(model, context);
+			if (key!=null) {
+				generated.put(key, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates the key of the code generated for the model in the given context or null if the model
+	 * or the context can't be hashed.
+	 */
+	private StructuralHash getKey(Abstract3dModel model, IScadGenerationContext context) {
+		if (!(context instanceof AbstractColorHandlingContext)) {
+			return null;
+		}
+		StructuralHash hash;
+		if (shapeScadHashes.containsKey(model)) {
+			hash = shapeScadHashes.get(model);
+		} else {
+			hash = model.getShapeScadHash();
+			shapeScadHashes.put(model, hash);
+		}
+		if (hash==null) {
+			return null;
+		}
+		StructuralHashBuilder builder = new StructuralHashBuilder().append(hash);
+		((AbstractColorHandlingContext)context).appendStructure(builder);
+		return builder.build();
+	}
+
+	private SCAD createModule(Abstract3dModel model, IScadGenerationContext context) {
+		SCAD item = model.getShapeScad(context);
+		if (!item.isIncluded()) {
+			return item;
+		}
+		String body = item.getScad();
+		if (body.length()<MIN_LENGTH) {
+			return item;
+		}
+		String name = names.get(body);
+		if (name==null) {
+			name = "shape_"+names.size();
+			names.put(body, name);
+			definitions = definitions.append(new SCAD(body).prepend("module "+name+"() {\n").append("}\n"));
+		}
+		return new SCAD(name+"();\n").include();
+	}
+
+	private boolean isRepeated(Abstract3dModel model) {
+		StructuralHash hash = getShapeHash(model);
+		if (hash==null) {
+			return false;
+		}
+		Integer count = counts.get(hash);
+		return count!=null && count.intValue()>1;
+	}
+
+	/**
+	 * Returns the shape hash of the model, it is calculated only once for every model object - the
+	 * models are not changed during the generation.
+	 */
+	private StructuralHash getShapeHash(Abstract3dModel model) {
+		if (shapeHashes.containsKey(model)) {
+			return shapeHashes.get(model);
+		}
+		StructuralHash hash = model.getShapeHash();
+		shapeHashes.put(model, hash);
+		return hash;
+	}
+
+	/**
+	 * Delegates everything to the original context, it is only a marker for the models that the
+	 * repeated subtrees should be extracted.
+	 */
+	private static final class ModuleContext implements IScadGenerationContext {
+		private final IScadGenerationContext context;
+		private final ScadModules modules;
+
+		private ModuleContext(IScadGenerationContext context, ScadModules modules) {
+			this.context = context;
+			this.modules = modules;
+		}
+
+		@Override
+		public Color getColor() {
+			return context.getColor();
+		}
+
+		@Override
+		public boolean isTagIncluded() {
+			return context.isTagIncluded();
+		}
+
+		@Override
+		public IScadGenerationContext applyTag(int tag) {
+			IScadGenerationContext applied = context.applyTag(tag);
+			return applied==context ? this : new ModuleContext(applied, modules);
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package eu.printingin3d.javascad.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.utils.StructuralHash;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+
+/**
+ * <p>A shape which appears more times in a model tree at different positions. It is used by the
+ * exporters which can reference the same mesh more times instead of repeating its triangles.</p>
+ * <p>The model tree is split along the unions which are not rotated: every other model is a shape.
+ * The copies of a model with more moves are the instances of the same shape, and the models which have
+ * the same structure apart from their position (see {@link Abstract3dModel#getShapeHash()}) and are
+ * evaluated in an equivalent context are the instances of the same shape too.</p>
+ * <p>The instances are not unioned with each other, so this representation is only equivalent to the
+ * CSG of the model if the instances don't overlap. The instances whose boundaries overlap can be found by
+ * {@link #joinOverlapping(List)}, the instances of such a cluster have to be unioned by the exporter.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class ShapeInstances {
+	/**
+	 * The minimal distance between the boundaries of two instances to consider them disjoint.
+	 */
+	private static final double GAP = 0.001;
+
+	private final Abstract3dModel model;
+	private final FacetGenerationContext context;
+	private final List<Coords3d> offsets = new ArrayList<>();
+
+	private ShapeInstances(Abstract3dModel model, FacetGenerationContext context) {
+		this.model = model;
+		this.context = context;
+	}
+
+	/**
+	 * Splits the given model to shapes and their positions.
+	 * @param model the model to be split
+	 * @param context the context used for the evaluation
+	 * @return the distinct shapes in the order they were found in the model tree
+	 */
+	public static List<ShapeInstances> collect(Abstract3dModel model, FacetGenerationContext context) {
+		Map<Object, ShapeInstances> shapes = new LinkedHashMap<>();
+		collect(model, context, Collections.singletonList(Coords3d.ZERO), shapes);
+		return new ArrayList<>(shapes.values());
+	}
+
+	private static void collect(Abstract3dModel model, FacetGenerationContext context, List<Coords3d> parentOffsets,
+			Map<Object, ShapeInstances> shapes) {
+		if (!model.isIncluded(context.getTagFilter())) {
+			return;
+		}
+
+		List<Coords3d> offsets = new ArrayList<>();
+		for (Coords3d parent : parentOffsets) {
+			for (Coords3d move : model.getMoves()) {
+				offsets.add(parent.move(move));
+			}
+		}
+
+		if (model instanceof Union && !model.isRotated()) {
+			FacetGenerationContext childContext = context.applyTag(model.getTag());
+			for (Abstract3dModel child : model.getChildModels()) {
+				collect(child, childContext, offsets, shapes);
+			}
+			return;
+		}
+
+		Object key = keyOf(model, context);
+		ShapeInstances shape = shapes.get(key);
+		if (shape==null) {
+			shape = new ShapeInstances(model, context);
+			shapes.put(key, shape);
+		}
+		shape.offsets.addAll(offsets);
+	}
+
+	private static Object keyOf(Abstract3dModel model, FacetGenerationContext context) {
+		StructuralHash shapeHash = model.getShapeHash();
+		if (shapeHash==null) {
+			// can't be compared by structure, only the copies of the same model are the same shape
+			return new Object();
+		}
+		StructuralHashBuilder builder = new StructuralHashBuilder().append(shapeHash);
+		context.appendStructure(builder);
+		StructuralHash key = builder.build();
+		return key==null ? new Object() : key;
+	}
+
+	/**
+	 * An instance of a shape: the shape at one of its positions.
+	 */
+	public static final class Instance {
+		private final ShapeInstances shape;
+		private final Coords3d offset;
+		private final Boundaries3d box;
+		private Instance parent = this;
+
+		private Instance(ShapeInstances shape, Coords3d offset) {
+			this.shape = shape;
+			this.offset = offset;
+			this.box = shape.getBoundaries().move(offset);
+		}
+
+		/**
+		 * Returns the shape of this instance.
+		 * @return the shape
+		 */
+		public ShapeInstances getShape() {
+			return shape;
+		}
+
+		/**
+		 * Returns the position of this instance.
+		 * @return the position
+		 */
+		public Coords3d getOffset() {
+			return offset;
+		}
+
+		private Instance root() {
+			Instance i = this;
+			while (i.parent!=i) {
+				i.parent = i.parent.parent;
+				i = i.parent;
+			}
+			return i;
+		}
+	}
+
+	/**
+	 * Joins the instances of the given shapes whose boundaries overlap - directly or through other
+	 * instances - into clusters. An instance which doesn't overlap anything is a cluster on its own.
+	 * @param shapes the shapes returned by {@link #collect(Abstract3dModel, FacetGenerationContext)}
+	 * @return the clusters in the order their first instance was found
+	 */
+	public static List<List<Instance>> joinOverlapping(List<ShapeInstances> shapes) {
+		List<Instance> instances = new ArrayList<>();
+		for (ShapeInstances shape : shapes) {
+			for (Coords3d offset : shape.offsets) {
+				instances.add(new Instance(shape, offset));
+			}
+		}
+
+		List<Instance> sorted = new ArrayList<>(instances);
+		Collections.sort(sorted, new Comparator<Instance>() {
+			@Override
+			public int compare(Instance i1, Instance i2) {
+				return Double.compare(i1.box.getX().getMin(), i2.box.getX().getMin());
+			}
+		});
+
+		// sweeps along the X axis: only the boxes still open at the start of a box can overlap it
+		List<Instance> open = new ArrayList<>();
+		for (Instance instance : sorted) {
+			Boundaries3d box = instance.box;
+			for (int i=open.size()-1;i>=0;i--) {
+				if (open.get(i).box.getX().getMax()+GAP<=box.getX().getMin()) {
+					open.remove(i);
+				}
+			}
+			for (Instance other : open) {
+				Boundaries3d otherBox = other.box;
+				if (!isSeparated(otherBox.getY().getMin(), otherBox.getY().getMax(), box.getY().getMin(), box.getY().getMax()) &&
+					!isSeparated(otherBox.getZ().getMin(), otherBox.getZ().getMax(), box.getZ().getMin(), box.getZ().getMax())) {
+					other.root().parent = instance.root();
+				}
+			}
+			open.add(instance);
+		}
+
+		Map<Instance, List<Instance>> clusters = new LinkedHashMap<>();
+		for (Instance instance : instances) {
+			Instance root = instance.root();
+			List<Instance> cluster = clusters.get(root);
+			if (cluster==null) {
+				cluster = new ArrayList<>();
+				clusters.put(root, cluster);
+			}
+			cluster.add(instance);
+		}
+		return new ArrayList<>(clusters.values());
+	}
+
+	private static boolean isSeparated(double min1, double max1, double min2, double max2) {
+		return max1+GAP<=min2 || max2+GAP<=min1;
+	}
+
+	/**
+	 * Returns the positions of the instances of this shape.
+	 * @return the positions of the instances
+	 */
+	public List<Coords3d> getOffsets() {
+		return Collections.unmodifiableList(offsets);
+	}
+
+	/**
+	 * Returns the including cuboid of the shape at the origin - the instances are these boundaries moved
+	 * by the offsets.
+	 * @return the boundaries of the shape
+	 */
+	public Boundaries3d getBoundaries() {
+		return model.getShapeBoundaries();
+	}
+
+	/**
+	 * Evaluates this shape at the origin - the instances are this CSG moved by the offsets.
+	 * @return the CSG of the shape
+	 */
+	public CSG toCSG() {
+		return model.toShapeCSG(context);
+	}
+}
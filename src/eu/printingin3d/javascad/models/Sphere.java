@@ -1,5 +1,6 @@
 package eu.printingin3d.javascad.models;
 
+import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,6 +11,7 @@ import eu.printingin3d.javascad.coords.Coords3d;
 import eu.printingin3d.javascad.exceptions.IllegalValueException;
 import eu.printingin3d.javascad.utils.AssertValue;
 import eu.printingin3d.javascad.utils.DoubleUtils;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
 import eu.printingin3d.javascad.vrl.Polygon;
@@ -54,6 +56,7 @@ public class Sphere extends Atomic3dModel {
 	@Override
 	protected CSG toInnerCSG(FacetGenerationContext context) {
         List<Polygon> polygons = new ArrayList<>();
+        Color color = context.getColor();
 
         int numSlices = context.calculateNumberOfSlices(r);
         int numStacks = numSlices/2;
@@ -81,12 +84,17 @@ public class Sphere extends Atomic3dModel {
                         sphereVertex(r, i / (double) numSlices,
                                 (j + 1) / (double) numStacks)
                 );
-                polygons.add(Polygon.fromPolygons(vertices, context.getColor()));
+                polygons.add(Polygon.fromPolygons(vertices, color));
             }
         }
         return new CSG(polygons);
 	}
 
+	@Override
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		builder.append(r);
+	}
+
     private Coords3d sphereVertex(double r, double theta, double phi) {
         theta *= Math.PI * 2;
         phi *= Math.PI;
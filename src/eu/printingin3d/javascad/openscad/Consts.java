@@ -39,10 +39,22 @@ public class Consts implements IModel {
 		return new SCAD("$fs="+fs+";$fa="+fa+";\n");
 	}
 
+	/**
+	 * Creates a new context with the resolution represented by this object. The given context is
+	 * not modified.
+	 * @param context the context to be derived from
+	 * @return the new context
+	 */
+	public FacetGenerationContext applyTo(FacetGenerationContext context) {
+		return context.withFsAndFa(fs, fa);
+	}
+
+	/**
+	 * This object doesn't have any geometry, so it returns with an empty CSG. Use
+	 * {@link #applyTo(FacetGenerationContext)} to use its resolution during the CSG generation.
+	 */
 	@Override
 	public CSG toCSG(FacetGenerationContext context) {
-		context.setFsAndFa(fs, fa);
-		
 		return CSG.fromPolygons();
 	}
 }
@@ -1,6 +1,8 @@
 package eu.printingin3d.javascad.tranzitions;
 
 import java.awt.Color;
+import java.util.Collections;
+import java.util.List;
 
 import eu.printingin3d.javascad.context.IScadGenerationContext;
 import eu.printingin3d.javascad.coords.Boundaries3d;
@@ -9,6 +11,7 @@ import eu.printingin3d.javascad.models.Complex3dModel;
 import eu.printingin3d.javascad.models.SCAD;
 import eu.printingin3d.javascad.utils.AssertValue;
 import eu.printingin3d.javascad.utils.DoubleUtils;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
 
@@ -57,6 +60,21 @@ public class Colorize extends Complex3dModel {
 		return baseModel.toCSG(context);
 	}
 
+	@Override
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		builder.append(color).append(baseModel.getStructuralHash());
+	}
+
+	@Override
+	protected List<Abstract3dModel> getChildModels() {
+		return Collections.singletonList(baseModel);
+	}
+
+	@Override
+	protected boolean isChildContextKnown() {
+		return true;
+	}
+
 	public static String getStringRepresentation(Color color) {
 		StringBuilder sb = new StringBuilder();
 		sb.append('[').
@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.List;
 
 import eu.printingin3d.javascad.context.IScadGenerationContext;
+import eu.printingin3d.javascad.context.TagFilter;
 import eu.printingin3d.javascad.coords.Boundaries3d;
 import eu.printingin3d.javascad.coords.Boundary;
 import eu.printingin3d.javascad.exceptions.IllegalValueException;
@@ -15,6 +16,7 @@ import eu.printingin3d.javascad.models.Cube;
 import eu.printingin3d.javascad.models.SCAD;
 import eu.printingin3d.javascad.utils.AssertValue;
 import eu.printingin3d.javascad.utils.ListUtils;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
 
@@ -127,6 +129,36 @@ public class Difference extends Complex3dModel {
 		
 		return csg;
 	}
+
+	/**
+	 * A difference is part of the result only if its base model is, the subtracted models alone
+	 * don't make it included.
+	 */
+	@Override
+	protected boolean isInnerIncluded(TagFilter filter) {
+		return model1.isIncluded(filter);
+	}
+
+	@Override
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		builder.append(model1.getStructuralHash()).append(model2.size());
+		for (Abstract3dModel model : model2) {
+			builder.append(model.getStructuralHash());
+		}
+	}
+
+	@Override
+	protected List<Abstract3dModel> getChildModels() {
+		List<Abstract3dModel> result = new ArrayList<>(model2.size()+1);
+		result.add(model1);
+		result.addAll(model2);
+		return result;
+	}
+
+	@Override
+	protected boolean isChildContextKnown() {
+		return true;
+	}
 	
 	@Override
 	public Abstract3dModel subtractModel(Abstract3dModel model) {
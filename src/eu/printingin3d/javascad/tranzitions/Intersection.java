@@ -10,6 +10,7 @@ import eu.printingin3d.javascad.models.Abstract3dModel;
 import eu.printingin3d.javascad.models.Complex3dModel;
 import eu.printingin3d.javascad.models.SCAD;
 import eu.printingin3d.javascad.utils.ListUtils;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
 
@@ -79,6 +80,9 @@ public class Intersection extends Complex3dModel {
 	protected CSG toInnerCSG(FacetGenerationContext context) {
 		CSG csg = null;
 		for (Abstract3dModel model : models) {
+			if (!model.isIncluded(context.getTagFilter())) {
+				continue;
+			}
 			if (csg==null) {
 				csg = model.toCSG(context);
 			}
@@ -89,6 +93,24 @@ public class Intersection extends Complex3dModel {
 		return csg;
 	}
 
+	@Override
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		builder.append(models.size());
+		for (Abstract3dModel model : models) {
+			builder.append(model.getStructuralHash());
+		}
+	}
+
+	@Override
+	protected List<Abstract3dModel> getChildModels() {
+		return models;
+	}
+
+	@Override
+	protected boolean isChildContextKnown() {
+		return true;
+	}
+
 	@Override
 	protected Abstract3dModel innerSubModel(IScadGenerationContext context) {
 		List<Abstract3dModel> subModels = new ArrayList<>();
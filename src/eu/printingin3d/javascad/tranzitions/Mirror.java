@@ -1,5 +1,8 @@
 package eu.printingin3d.javascad.tranzitions;
 
+import java.util.Collections;
+import java.util.List;
+
 import eu.printingin3d.javascad.context.IScadGenerationContext;
 import eu.printingin3d.javascad.coords.Boundaries3d;
 import eu.printingin3d.javascad.exceptions.IllegalValueException;
@@ -9,6 +12,7 @@ import eu.printingin3d.javascad.models.SCAD;
 import eu.printingin3d.javascad.tranform.ITransformation;
 import eu.printingin3d.javascad.tranform.TransformationFactory;
 import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
 
@@ -84,6 +88,21 @@ public final class Mirror extends Complex3dModel {
 		return model.toCSG(context).transformed(tr);
 	}
 
+	@Override
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		builder.append(direction.name()).append(model.getStructuralHash());
+	}
+
+	@Override
+	protected List<Abstract3dModel> getChildModels() {
+		return Collections.singletonList(model);
+	}
+
+	@Override
+	protected boolean isChildContextKnown() {
+		return true;
+	}
+
 	@Override
 	protected Abstract3dModel innerSubModel(IScadGenerationContext context) {
 		Abstract3dModel subModel = model.subModel(context);
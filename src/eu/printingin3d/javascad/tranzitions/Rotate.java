@@ -1,5 +1,8 @@
 package eu.printingin3d.javascad.tranzitions;
 
+import java.util.Collections;
+import java.util.List;
+
 import eu.printingin3d.javascad.context.IScadGenerationContext;
 import eu.printingin3d.javascad.coords.Angles3d;
 import eu.printingin3d.javascad.coords.Boundaries3d;
@@ -9,6 +12,7 @@ import eu.printingin3d.javascad.models.Complex3dModel;
 import eu.printingin3d.javascad.models.SCAD;
 import eu.printingin3d.javascad.tranform.TransformationFactory;
 import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
 
@@ -65,6 +69,21 @@ public class Rotate extends Complex3dModel {
 		return model.toCSG(context).transformed(TransformationFactory.getRotationMatrix(angles));
 	}
 
+	@Override
+	protected void appendInnerStructure(StructuralHashBuilder builder) {
+		builder.append(angles).append(model.getStructuralHash());
+	}
+
+	@Override
+	protected List<Abstract3dModel> getChildModels() {
+		return Collections.singletonList(model);
+	}
+
+	@Override
+	protected boolean isChildContextKnown() {
+		return true;
+	}
+
 	@Override
 	protected Abstract3dModel innerSubModel(IScadGenerationContext context) {
 		Abstract3dModel subModel = model.subModel(context);
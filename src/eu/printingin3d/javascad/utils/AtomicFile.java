@@ -0,0 +1,77 @@
+package eu.printingin3d.javascad.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * <p>Replaces a file atomically: the new content is written to a temporary file next to the target,
+ * which is renamed to the target by {@link #commit()} only if everything has been written, so the
+ * target never contains a half written content. {@link #close()} deletes the temporary file if it has
+ * not been committed, so the usual pattern is:</p>
+ * <pre>
+ * AtomicFile atomicFile = new AtomicFile(target);
+ * try {
+ *     // write atomicFile.getTempFile()
+ *     atomicFile.commit();
+ * }
+ * finally {
+ *     atomicFile.close();
+ * }
+ * </pre>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class AtomicFile implements Closeable {
+	private final File target;
+	private final File temp;
+	private boolean committed = false;
+
+	/**
+	 * Creates the temporary file in the directory of the target.
+	 * @param target the file to be replaced
+	 * @throws IOException if the temporary file can't be created
+	 */
+	public AtomicFile(File target) throws IOException {
+		this.target = target.getAbsoluteFile();
+		this.temp = File.createTempFile("."+this.target.getName()+"-", ".tmp", this.target.getParentFile());
+	}
+
+	/**
+	 * Returns the temporary file the new content should be written to.
+	 * @return the temporary file
+	 */
+	public File getTempFile() {
+		return temp;
+	}
+
+	/**
+	 * Replaces the target with the temporary file. The move is atomic if the file system supports it.
+	 * @throws IOException if the file can't be moved
+	 */
+	public void commit() throws IOException {
+		Path source = temp.toPath();
+		Path destination = target.toPath();
+		try {
+			Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING);
+		}
+		committed = true;
+	}
+
+	/**
+	 * Deletes the temporary file if it has not been committed, the target is left untouched then.
+	 * @throws IOException if the temporary file can't be deleted
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!committed) {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+}
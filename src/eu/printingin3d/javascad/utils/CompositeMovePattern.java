@@ -0,0 +1,132 @@
+package eu.printingin3d.javascad.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>A move pattern which is the cartesian sum of other patterns: every coordinate of the first pattern
+ * is added to every coordinate of the second pattern and so on. The first pattern varies the fastest,
+ * so a grid of 3x2 is enumerated row by row.</p>
+ * <p>The coordinates are never stored, they are calculated from the parts on demand.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class CompositeMovePattern implements IMovePattern {
+	private final List<IMovePattern> patterns;
+	private final int size;
+
+	/**
+	 * Creates the pattern from the given parts.
+	 * @param patterns the parts of the pattern - the first one varies the fastest
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the list is empty or the
+	 * 		number of coordinates represented would not fit into an int
+	 */
+	public CompositeMovePattern(List<IMovePattern> patterns) {
+		AssertValue.isNotEmpty(patterns, "The parts of the pattern should not be empty!");
+
+		long s = 1;
+		for (IMovePattern p : patterns) {
+			s *= p.size();
+			AssertValue.isTrue(s<=Integer.MAX_VALUE, "The pattern represents too many coordinates!");
+		}
+		this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+		this.size = (int)s;
+	}
+
+	/**
+	 * Creates the pattern from the given parts.
+	 * @param patterns the parts of the pattern - the first one varies the fastest
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if no parts given or the
+	 * 		number of coordinates represented would not fit into an int
+	 */
+	public CompositeMovePattern(IMovePattern... patterns) {
+		this(Arrays.asList(patterns));
+	}
+
+	/**
+	 * Creates a three dimensional grid starting from the origin. The X coordinate varies the fastest,
+	 * then the Y and the Z coordinate the slowest.
+	 * @param step the distance between the neighbouring points along the X, Y and Z axis
+	 * @param nx the number of points along the X axis
+	 * @param ny the number of points along the Y axis
+	 * @param nz the number of points along the Z axis
+	 * @return the created pattern
+	 */
+	public static CompositeMovePattern grid(Coords3d step, int nx, int ny, int nz) {
+		return new CompositeMovePattern(
+				new LinearMovePattern(Coords3d.xOnly(step.getX()), nx),
+				new LinearMovePattern(Coords3d.yOnly(step.getY()), ny),
+				new LinearMovePattern(Coords3d.zOnly(step.getZ()), nz));
+	}
+
+	/**
+	 * Creates a two dimensional grid on the XY plane starting from the origin. The X coordinate varies
+	 * the fastest.
+	 * @param stepX the distance between the neighbouring points along the X axis
+	 * @param nx the number of points along the X axis
+	 * @param stepY the distance between the neighbouring points along the Y axis
+	 * @param ny the number of points along the Y axis
+	 * @return the created pattern
+	 */
+	public static CompositeMovePattern grid(double stepX, int nx, double stepY, int ny) {
+		return new CompositeMovePattern(
+				new LinearMovePattern(Coords3d.xOnly(stepX), nx),
+				new LinearMovePattern(Coords3d.yOnly(stepY), ny));
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Coords3d get(int index) {
+		if (index<0 || index>=size) {
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+		}
+		int rest = index;
+		double x = 0.0;
+		double y = 0.0;
+		double z = 0.0;
+		for (IMovePattern p : patterns) {
+			Coords3d c = p.get(rest % p.size());
+			rest /= p.size();
+			x += c.getX();
+			y += c.getY();
+			z += c.getZ();
+		}
+		return new Coords3d(x, y, z);
+	}
+
+	@Override
+	public IMovePattern rotate(Angles3d delta) {
+		List<IMovePattern> result = new ArrayList<>(patterns.size());
+		for (IMovePattern p : patterns) {
+			result.add(p.rotate(delta));
+		}
+		return new CompositeMovePattern(result);
+	}
+
+	@Override
+	public Boundaries3d getBoundaries() {
+		Boundaries3d result = null;
+		for (IMovePattern p : patterns) {
+			result = result==null ? p.getBoundaries() : result.add(p.getBoundaries());
+		}
+		return result;
+	}
+
+	@Override
+	public void appendStructure(StructuralHashBuilder builder) {
+		builder.append("composite").append(patterns.size());
+		for (IMovePattern p : patterns) {
+			p.appendStructure(builder);
+		}
+	}
+}
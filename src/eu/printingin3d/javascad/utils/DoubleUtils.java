@@ -25,7 +25,18 @@ public final class DoubleUtils {
 	}
 	
 	public static int hashCodeEps(double value) {
-		return Long.valueOf(Math.round(value/EPSILON)).hashCode();
+		return Long.valueOf(quantize(value)).hashCode();
+	}
+	
+	/**
+	 * Rounds the given value to the grid used by {@link #equalsEps(double, double)} and returns the
+	 * index of the grid point. Values closer to each other than the epsilon mostly get the same index,
+	 * so it can be used as an exact key for hashing approximate coordinates.
+	 * @param value the value to be quantized
+	 * @return the index of the nearest grid point
+	 */
+	public static long quantize(double value) {
+		return Math.round(value/EPSILON);
 	}
 	
 	public static boolean isZero(double a) {
@@ -39,10 +50,8 @@ public final class DoubleUtils {
 	 * @return the formatted string
 	 */
 	public static String formatDouble(double value) {
-		if (equalsEps(Math.round(value), value)) {
-			return Long.toString(Math.round(value));
-		}
-		return Double.toString(Math.round(value*10000.0)/10000.0);
+		char[] buffer = new char[FixedDecimalEncoder.MAX_LENGTH];
+		return new String(buffer, 0, FixedDecimalEncoder.encode(value, buffer, 0));
 	}
 
 	/**
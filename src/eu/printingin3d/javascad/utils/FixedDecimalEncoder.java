@@ -0,0 +1,112 @@
+package eu.printingin3d.javascad.utils;
+
+/**
+ * <p>Encodes doubles to decimal text with four digits precision directly into a character buffer,
+ * without creating any intermediate strings. Values which are round within the epsilon of
+ * {@link DoubleUtils#equalsEps(double, double)} are written without a decimal point, the trailing zeros
+ * of the fraction are omitted, and the result never uses the scientific notation.</p>
+ * <p>This is the encoder behind {@link DoubleUtils#formatDouble(double)} and the text exporters.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class FixedDecimalEncoder {
+	/**
+	 * The maximum number of characters written by {@link #encode(double, char[], int)}.
+	 */
+	public static final int MAX_LENGTH = 26;
+
+	private static final int SCALE = 10000;
+	private static final int FRACTION_DIGITS = 4;
+	/**
+	 * Above this limit the scaled value wouldn't fit into a long.
+	 */
+	private static final double LIMIT = 1e14;
+
+	private FixedDecimalEncoder() {
+		// prevents creating this class
+	}
+
+	/**
+	 * Writes the given value into the buffer starting at the given position. The buffer must have
+	 * at least {@link #MAX_LENGTH} free characters after the position.
+	 * @param value the value to be written
+	 * @param buffer the buffer to write into
+	 * @param offset the position of the first character
+	 * @return the position after the last written character
+	 */
+	public static int encode(double value, char[] buffer, int offset) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return copy(Double.toString(value), buffer, offset);
+		}
+		long rounded = Math.round(value);
+		if (DoubleUtils.equalsEps(rounded, value)) {
+			return encodeLong(rounded, buffer, offset);
+		}
+		if (Math.abs(value)>=LIMIT) {
+			return copy(Double.toString(Math.round(value*SCALE)/(double)SCALE), buffer, offset);
+		}
+
+		int pos = offset;
+		long scaled = Math.round(value*SCALE);
+		if (scaled<0) {
+			buffer[pos++] = '-';
+			scaled = -scaled;
+		}
+		pos = encodeLong(scaled/SCALE, buffer, pos);
+		buffer[pos++] = '.';
+
+		int fraction = (int)(scaled%SCALE);
+		int digits = FRACTION_DIGITS;
+		// the round values are handled above, but the loop must stop even if the fraction is zero
+		while (fraction!=0 && fraction%10==0) {
+			fraction /= 10;
+			digits--;
+		}
+		if (fraction==0) {
+			// drops the decimal point
+			return pos-1;
+		}
+		for (int i=digits-1;i>=0;i--) {
+			buffer[pos+i] = (char)('0'+fraction%10);
+			fraction /= 10;
+		}
+		return pos+digits;
+	}
+
+	/**
+	 * Appends the given value to the string builder.
+	 * @param sb the string builder to be appended
+	 * @param value the value to be written
+	 * @return the given string builder
+	 */
+	public static StringBuilder append(StringBuilder sb, double value) {
+		char[] buffer = new char[MAX_LENGTH];
+		return sb.append(buffer, 0, encode(value, buffer, 0));
+	}
+
+	private static int encodeLong(long value, char[] buffer, int offset) {
+		if (value==Long.MIN_VALUE) {
+			return copy(Long.toString(value), buffer, offset);
+		}
+		int pos = offset;
+		long abs = value;
+		if (value<0) {
+			buffer[pos++] = '-';
+			abs = -value;
+		}
+		int length = 1;
+		for (long v = abs/10; v>0; v /= 10) {
+			length++;
+		}
+		for (int i=length-1;i>=0;i--) {
+			buffer[pos+i] = (char)('0'+abs%10);
+			abs /= 10;
+		}
+		return pos+length;
+	}
+
+	private static int copy(String s, char[] buffer, int offset) {
+		s.getChars(0, s.length(), buffer, offset);
+		return offset+s.length();
+	}
+}
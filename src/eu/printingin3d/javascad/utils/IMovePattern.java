@@ -0,0 +1,46 @@
+package eu.printingin3d.javascad.utils;
+
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>Represents an ordered set of move coordinates without necessarily storing them. The coordinates are
+ * calculated on demand, so a pattern of thousands of moves takes only as much memory as its basis.</p>
+ * <p>The implementations are immutable.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public interface IMovePattern {
+	/**
+	 * Returns the number of coordinates represented by this pattern.
+	 * @return the number of coordinates represented by this pattern
+	 */
+	int size();
+
+	/**
+	 * Calculates the coordinate with the given index.
+	 * @param index the index of the coordinate - it should be between 0 and size()-1
+	 * @return the calculated coordinate
+	 */
+	Coords3d get(int index);
+
+	/**
+	 * Rotates the whole pattern. Only the basis of the pattern is rotated, not every coordinate.
+	 * @param delta the angle it will be rotated
+	 * @return a new pattern which represents the rotated coordinates
+	 */
+	IMovePattern rotate(Angles3d delta);
+
+	/**
+	 * Calculates the boundaries of the coordinates represented by this pattern.
+	 * @return the boundaries of the coordinates
+	 */
+	Boundaries3d getBoundaries();
+
+	/**
+	 * Appends the description of this pattern to the given structural hash builder.
+	 * @param builder the builder to be used
+	 */
+	void appendStructure(StructuralHashBuilder builder);
+}
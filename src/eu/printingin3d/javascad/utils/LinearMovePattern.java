@@ -0,0 +1,74 @@
+package eu.printingin3d.javascad.utils;
+
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * A move pattern which represents equally spaced coordinates along a line: start, start+step,
+ * start+2*step and so on. Only the start, the step and the count is stored.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class LinearMovePattern implements IMovePattern {
+	private final Coords3d start;
+	private final Coords3d step;
+	private final int count;
+
+	/**
+	 * Creates the pattern starting from the given coordinate.
+	 * @param start the first coordinate of the pattern
+	 * @param step the difference between two neighbouring coordinates
+	 * @param count the number of coordinates - should be positive
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if any of the coordinates is null
+	 * 		or the count is not positive
+	 */
+	public LinearMovePattern(Coords3d start, Coords3d step, int count) {
+		AssertValue.isNotNull(start, "The start of the pattern should not be null!");
+		AssertValue.isNotNull(step, "The step of the pattern should not be null!");
+		AssertValue.isTrue(count>0, "The count of the pattern should be positive, but was "+count);
+
+		this.start = start;
+		this.step = step;
+		this.count = count;
+	}
+
+	/**
+	 * Creates the pattern starting from the origin.
+	 * @param step the difference between two neighbouring coordinates
+	 * @param count the number of coordinates - should be positive
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the step is null
+	 * 		or the count is not positive
+	 */
+	public LinearMovePattern(Coords3d step, int count) {
+		this(Coords3d.ZERO, step, count);
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public Coords3d get(int index) {
+		if (index<0 || index>=count) {
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+count);
+		}
+		return start.move(step.mul(index));
+	}
+
+	@Override
+	public IMovePattern rotate(Angles3d delta) {
+		return new LinearMovePattern(start.rotate(delta), step.rotate(delta), count);
+	}
+
+	@Override
+	public Boundaries3d getBoundaries() {
+		return new Boundaries3d(start, get(count-1));
+	}
+
+	@Override
+	public void appendStructure(StructuralHashBuilder builder) {
+		builder.append("linear").append(start).append(step).append(count);
+	}
+}
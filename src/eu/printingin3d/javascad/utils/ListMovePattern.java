@@ -0,0 +1,74 @@
+package eu.printingin3d.javascad.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Boundary;
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * A move pattern which is defined by an explicit list of coordinates.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class ListMovePattern implements IMovePattern {
+	private final List<Coords3d> coords;
+
+	/**
+	 * Creates the pattern with the given coordinates. The collection is copied, so later changes
+	 * on it won't affect this object.
+	 * @param coords the coordinates of the pattern
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the collection is null or empty
+	 */
+	public ListMovePattern(Collection<Coords3d> coords) {
+		AssertValue.isNotEmpty(coords, "The coordinates of the pattern should not be empty!");
+
+		this.coords = Collections.unmodifiableList(new ArrayList<>(coords));
+	}
+
+	@Override
+	public int size() {
+		return coords.size();
+	}
+
+	@Override
+	public Coords3d get(int index) {
+		return coords.get(index);
+	}
+
+	@Override
+	public IMovePattern rotate(Angles3d delta) {
+		List<Coords3d> result = new ArrayList<>(coords.size());
+		for (Coords3d c : coords) {
+			result.add(c.rotate(delta));
+		}
+		return new ListMovePattern(result);
+	}
+
+	@Override
+	public Boundaries3d getBoundaries() {
+		double[] xs = new double[coords.size()];
+		double[] ys = new double[coords.size()];
+		double[] zs = new double[coords.size()];
+		int i = 0;
+		for (Coords3d c : coords) {
+			xs[i] = c.getX();
+			ys[i] = c.getY();
+			zs[i] = c.getZ();
+			i++;
+		}
+		return new Boundaries3d(new Boundary(xs), new Boundary(ys), new Boundary(zs));
+	}
+
+	@Override
+	public void appendStructure(StructuralHashBuilder builder) {
+		builder.append("list").append(coords.size());
+		for (Coords3d c : coords) {
+			builder.append(c);
+		}
+	}
+}
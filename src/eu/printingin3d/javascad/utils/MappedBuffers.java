@@ -0,0 +1,67 @@
+package eu.printingin3d.javascad.utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * <p>Releases memory mapped buffers explicitly. A mapping is normally released only when its buffer is
+ * garbage collected, which keeps the file mapped - and on Windows locked - for an unknown time.</p>
+ * <p>There is no public API for it, so the cleaner of the buffer is called through reflection: by
+ * {@code sun.misc.Unsafe.invokeCleaner()} on Java 9 and later and by the {@code cleaner()} method of the
+ * buffer on Java 7 and 8. If neither is available the buffer is left to the garbage collector.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class MappedBuffers {
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// before Java 9 the cleaner of the buffer is used
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	private MappedBuffers() {
+		// prevents creating this class
+	}
+
+	/**
+	 * Releases the mapping of the given buffer. The buffer and its duplicates must not be used
+	 * afterwards. It does nothing if the buffer is null or not a mapped buffer, and if the mapping can't
+	 * be released explicitly on the current platform.
+	 * @param buffer the buffer returned by {@link java.nio.channels.FileChannel#map}
+	 */
+	public static void unmap(ByteBuffer buffer) {
+		if (!(buffer instanceof MappedByteBuffer)) {
+			return;
+		}
+		try {
+			if (INVOKE_CLEANER!=null) {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			} else {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner!=null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// the mapping is released by the garbage collector
+		}
+	}
+}
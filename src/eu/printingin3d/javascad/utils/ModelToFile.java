@@ -1,17 +1,25 @@
 package eu.printingin3d.javascad.utils;
 
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import eu.printingin3d.javascad.context.AbstractColorHandlingContext;
 import eu.printingin3d.javascad.context.IScadGenerationContext;
 import eu.printingin3d.javascad.exceptions.IllegalValueException;
+import eu.printingin3d.javascad.models.Abstract3dModel;
 import eu.printingin3d.javascad.models.IModel;
+import eu.printingin3d.javascad.models.ScadModules;
 
 /**
  * This class can be used to write models to file. It can be used directly, but it is
@@ -20,8 +28,16 @@ import eu.printingin3d.javascad.models.IModel;
  * @author ivivan <ivivan@printingin3d.eu>
  */
 public class ModelToFile {
+	/**
+	 * The version of the code generation. It is part of the structural hash of the files, so it has to be
+	 * increased whenever the same models generate different code than before, otherwise the incremental
+	 * save of {@link SaveScadFiles} would keep the files generated by the previous version.
+	 */
+	public static final int GENERATOR_VERSION = 1;
+	
 	private final File file;
 	private final List<IModel> models = new ArrayList<>();
+	private boolean extractModules = false;
 
 	/**
 	 * Creates the object.
@@ -54,18 +70,119 @@ public class ModelToFile {
 	}
 	
 	/**
-	 * Saves the models to the file.
+	 * Switches on the extraction of the repeated subtrees: they are written as OpenSCAD modules once at
+	 * the end of the file and called at every place they are used - see {@link ScadModules}.
+	 * @return this object to make it possible to chain more method call
+	 */
+	public ModelToFile extractModules() {
+		this.extractModules = true;
+		return this;
+	}
+	
+	/**
+	 * Saves the models to the file. The generated code is streamed to a buffered writer model by model.
+	 * The code is written to a temporary file next to the target first, which is renamed to the target
+	 * only if everything has been written, so the target never contains a half written model.
 	 * @throws IOException if any IO error happens during opening, writing or closing the file
 	 */
 	public void saveToFile(IScadGenerationContext context) throws IOException {
-		Writer writer = new FileWriter(file);
+		saveToFile(context, null);
+	}
+	
+	/**
+	 * Saves the models to the file the same way as {@link #saveToFile(IScadGenerationContext)}, but the
+	 * target is left untouched if the generated code has the given hash and the target has the same size
+	 * as the generated code - it is the code which was saved last time.
+	 * @param context the context used for the generation
+	 * @param previousHash the hash returned by the last save of the file or null if it isn't known
+	 * @return the SHA-256 hash of the generated code in hexadecimal form
+	 * @throws IOException if any IO error happens during opening, writing or closing the file
+	 */
+	public String saveToFile(IScadGenerationContext context, String previousHash) throws IOException {
+		AtomicFile atomicFile = new AtomicFile(file);
 		try {
-			for (IModel model : models) {
-				writer.append(model.toScad(context).getScad());
+			File temp = atomicFile.getTempFile();
+			MessageDigest digest = createDigest();
+			Writer writer = new BufferedWriter(new OutputStreamWriter(
+					new DigestOutputStream(new FileOutputStream(temp), digest)));
+			try {
+				writeModels(writer, context);
 			}
+			finally {
+				writer.close();
+			}
+			String hash = toHex(digest.digest());
+			if (!hash.equals(previousHash) || !file.isFile() || file.length()!=temp.length()) {
+				atomicFile.commit();
+			}
+			return hash;
 		}
 		finally {
-			writer.close();
+			atomicFile.close();
+		}
+	}
+	
+	/**
+	 * Calculates a hash which is the same only if the models of this object generate the same code in
+	 * the given context. The 3D models are described by their {@link Abstract3dModel#getScadHash()}, the
+	 * other models - which are cheap to generate - by their generated code. The {@link #GENERATOR_VERSION}
+	 * is part of the hash too. Only the contexts derived from {@link AbstractColorHandlingContext} can be
+	 * described by the hash.
+	 * @param context the context used for the generation
+	 * @return the calculated hash or null if any of the models or the context can't be hashed
+	 */
+	public StructuralHash getStructuralHash(IScadGenerationContext context) {
+		if (!(context instanceof AbstractColorHandlingContext)) {
+			return null;
+		}
+		StructuralHashBuilder builder = new StructuralHashBuilder().append(GENERATOR_VERSION)
+				.append(extractModules).append(models.size());
+		((AbstractColorHandlingContext)context).appendStructure(builder);
+		for (IModel model : models) {
+			builder.append(model.getClass().getName());
+			if (model instanceof Abstract3dModel) {
+				StructuralHash hash = ((Abstract3dModel)model).getScadHash();
+				if (hash==null) {
+					return null;
+				}
+				builder.append(hash);
+			} else {
+				builder.append(model.toScad(context).getScad());
+			}
+		}
+		return builder.build();
+	}
+	
+	private void writeModels(Writer writer, IScadGenerationContext context) throws IOException {
+		if (extractModules) {
+			ScadModules modules = new ScadModules(models);
+			IScadGenerationContext moduleContext = modules.wrap(context);
+			for (IModel model : models) {
+				model.toScad(moduleContext).writeTo(writer);
+			}
+			// OpenSCAD resolves the modules defined after their calls too
+			modules.getDefinitions().writeTo(writer);
+		} else {
+			for (IModel model : models) {
+				model.toScad(context).writeTo(writer);
+			}
+		}
+	}
+	
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length*2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
 		}
+		return sb.toString();
 	}
 }
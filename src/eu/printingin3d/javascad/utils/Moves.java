@@ -5,45 +5,46 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Boundaries3d;
 import eu.printingin3d.javascad.coords.Coords3d;
 
 /**
- * Represents moves which can be used to move models.
+ * <p>Represents moves which can be used to move models.</p>
+ * <p>The moves are stored as a common offset and a list of patterns, the represented coordinates
+ * are only calculated during the iteration. Moving and rotating changes only the offset and the basis
+ * of the patterns, so their cost does not depend on the number of coordinates represented.</p>
  *
  * @author ivivan <ivivan@printingin3d.eu>
  */
 public class Moves implements Iterable<Coords3d> {
-	private final List<Coords3d> moves;
-	
-	private Moves(List<Coords3d> moves) {
-		this.moves = Collections.unmodifiableList(moves);
+	private final Coords3d offset;
+	private final List<IMovePattern> patterns;
+	private final CompositeMovePattern composite;
+
+	private Moves(Coords3d offset, List<IMovePattern> patterns) {
+		this.offset = offset;
+		this.patterns = Collections.unmodifiableList(patterns);
+		this.composite = patterns.isEmpty() ? null : new CompositeMovePattern(patterns);
 	}
-	
+
 	/**
 	 * Created the object with only a zero move - this is the starting position.
 	 */
 	public Moves() {
-		this(Collections.singletonList(Coords3d.ZERO));
+		this(Coords3d.ZERO, Collections.<IMovePattern>emptyList());
 	}
-	
-	private List<Coords3d> innerMove(Coords3d delta) {
-		List<Coords3d> result = new ArrayList<>();
-		for (Coords3d c : moves) {
-			result.add(c.move(delta));
-		}
-		return result;
-	}
-	
+
 	/**
 	 * Adds the delta value to all of the moves.
 	 * @param delta the coordinates used by the move
 	 */
 	public Moves move(Coords3d delta) {
-		return new Moves(innerMove(delta));
+		return new Moves(offset.move(delta), patterns);
 	}
-	
+
 	/**
 	 * Add more moves, which makes this a multi-move, representing more than one move coordinates.
 	 * This operation multiplies the number of moves represented by this object by the number of
@@ -52,41 +53,60 @@ public class Moves implements Iterable<Coords3d> {
 	 */
 	public Moves moves(Collection<Coords3d> delta) {
 		if (!delta.isEmpty()) {
-			List<Coords3d> temp = new ArrayList<>();
-			for (Coords3d d : delta) {
-				temp.addAll(innerMove(d));
-			}
-			return new Moves(temp);
+			return moves(new ListMovePattern(delta));
 		}
 		return this;
 	}
-	
+
+	/**
+	 * Add more moves described by a pattern, which makes this a multi-move if the pattern contains more
+	 * than one coordinates. This operation multiplies the number of moves represented by this object by
+	 * the size of the pattern, but the coordinates are not calculated until the iteration.
+	 * @param pattern the pattern used by the move operation
+	 */
+	public Moves moves(IMovePattern pattern) {
+		AssertValue.isNotNull(pattern, "The pattern should not be null!");
+
+		List<IMovePattern> temp = new ArrayList<>(patterns.size()+1);
+		temp.addAll(patterns);
+		temp.add(pattern);
+		return new Moves(offset, temp);
+	}
+
 	/**
 	 * Rotates all of the moves represented by this object.
 	 * @param delta the angle it will be rotated
 	 */
 	public Moves rotate(Angles3d delta) {
-		List<Coords3d> temp = new ArrayList<>(moves.size());
-		for (Coords3d c : moves) {
-			temp.add(c.rotate(delta));
+		List<IMovePattern> temp = new ArrayList<>(patterns.size());
+		for (IMovePattern p : patterns) {
+			temp.add(p.rotate(delta));
 		}
-		return new Moves(temp);
+		return new Moves(offset.rotate(delta), temp);
+	}
+
+	/**
+	 * Returns the number of moves represented by this object.
+	 * @return the number of moves represented by this object
+	 */
+	public int size() {
+		return composite==null ? 1 : composite.size();
 	}
-	
+
 	/**
 	 * Tells if this object represents more than one move.
 	 * @return true if and only if the result of this model will be more than one model in OpenSCAD
 	 */
 	public boolean isMulti() {
-		return moves.size()>1;
+		return size()>1;
 	}
-	
+
 	/**
 	 * Returns true if and only if this object represents a move.
 	 * @return true if and only if this object represents a move.
 	 */
 	public boolean isMoved() {
-		for (Coords3d c : moves) {
+		for (Coords3d c : this) {
 			if (!c.isZero()) {
 				return true;
 			}
@@ -94,8 +114,49 @@ public class Moves implements Iterable<Coords3d> {
 		return false;
 	}
 
+	/**
+	 * Calculates the boundaries of the represented move coordinates without iterating over them.
+	 * @return the boundaries of the represented move coordinates
+	 */
+	public Boundaries3d getBoundaries() {
+		Boundaries3d result = new Boundaries3d(offset, offset);
+		return composite==null ? result : result.add(composite.getBoundaries());
+	}
+
+	/**
+	 * Appends the description of these moves to the given structural hash builder.
+	 * @param builder the builder to be used
+	 */
+	public void appendStructure(StructuralHashBuilder builder) {
+		builder.append(offset).append(patterns.size());
+		for (IMovePattern p : patterns) {
+			p.appendStructure(builder);
+		}
+	}
+
 	@Override
 	public Iterator<Coords3d> iterator() {
-		return moves.iterator();
+		return new Iterator<Coords3d>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index<size();
+			}
+
+			@Override
+			public Coords3d next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				int i = index++;
+				return composite==null ? offset : offset.move(composite.get(i));
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 }
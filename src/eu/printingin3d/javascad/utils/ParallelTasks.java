@@ -0,0 +1,153 @@
+package eu.printingin3d.javascad.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Runs independent tasks in parallel on a shared pool of daemon threads.</p>
+ * <p>The calling thread takes part in the work: it runs every task which has not been picked up
+ * by the pool yet, and waits only for the ones already running. Because of this the tasks can safely
+ * start other parallel tasks, even if every thread of the pool is busy.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class ParallelTasks {
+	private static final class PoolHolder {
+		private static final ExecutorService POOL = Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors(), daemonThreadFactory("javascad-worker"));
+	}
+
+	private ParallelTasks() {
+		// prevents creating this class
+	}
+
+	/**
+	 * Creates a thread factory which creates daemon threads, so the pools using it don't prevent the
+	 * JVM from exiting.
+	 * @param prefix the prefix of the name of the threads
+	 * @return the created thread factory
+	 */
+	public static ThreadFactory daemonThreadFactory(final String prefix) {
+		return new ThreadFactory() {
+			private final AtomicInteger counter = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, prefix+"-"+counter.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	/**
+	 * Waits for the given task to finish and returns with its result. Runtime exceptions and errors
+	 * thrown by the task are rethrown as they are, checked exceptions are wrapped into an
+	 * IllegalStateException. Interrupting the waiting thread doesn't stop the waiting, but the
+	 * interrupted flag is restored at the end.
+	 * @param <T> the type of the result
+	 * @param future the task to wait for
+	 * @return the result of the task
+	 */
+	public static <T> T join(Future<T> future) {
+		try {
+			return getUninterruptibly(future);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Executes the given tasks and returns with their results in the same order as the tasks were given.
+	 * If any of the tasks throws an exception it is rethrown after every task has finished.
+	 * @param <T> the type of the results
+	 * @param tasks the tasks to be executed
+	 * @return the results of the tasks
+	 */
+	public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+		return invokeAll(tasks, PoolHolder.POOL);
+	}
+
+	/**
+	 * Executes the given tasks on the given executor and returns with their results in the same order as
+	 * the tasks were given. The calling thread takes part in the work the same way as with the shared
+	 * pool, and it runs the tasks the executor rejects too. If any of the tasks throws an exception it is
+	 * rethrown after every task has finished.
+	 * @param <T> the type of the results
+	 * @param tasks the tasks to be executed
+	 * @param executor the executor the tasks are passed to
+	 * @return the results of the tasks
+	 */
+	public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, Executor executor) {
+		List<FutureTask<T>> futures = new ArrayList<>(tasks.size());
+		for (Callable<T> task : tasks) {
+			futures.add(new FutureTask<>(task));
+		}
+
+		if (futures.size()>1) {
+			try {
+				for (FutureTask<T> f : futures.subList(1, futures.size())) {
+					executor.execute(f);
+				}
+			} catch (RejectedExecutionException e) {
+				// the remaining tasks are run by the calling thread
+			}
+		}
+		// running a task which is already started or done is a no-op
+		for (FutureTask<T> f : futures) {
+			f.run();
+		}
+
+		List<T> result = new ArrayList<>(futures.size());
+		RuntimeException runtimeException = null;
+		for (FutureTask<T> f : futures) {
+			try {
+				result.add(getUninterruptibly(f));
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				if (runtimeException==null) {
+					runtimeException = cause instanceof RuntimeException ?
+							(RuntimeException) cause : new IllegalStateException(cause);
+				}
+			}
+		}
+		if (runtimeException!=null) {
+			throw runtimeException;
+		}
+		return result;
+	}
+
+	private static <T> T getUninterruptibly(Future<T> future) throws ExecutionException {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package eu.printingin3d.javascad.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import eu.printingin3d.javascad.context.TagFilter;
+import eu.printingin3d.javascad.context.TagSet;
+import eu.printingin3d.javascad.exceptions.IllegalValueException;
+import eu.printingin3d.javascad.models.EvaluationScheduler;
+import eu.printingin3d.javascad.models.IModel;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.export.AbstractFileExporter;
+import eu.printingin3d.javascad.vrl.export.FileExporterFactory;
+import eu.printingin3d.javascad.vrl.export.IFileExporter;
+
+/**
+ * <p>A helper class which exports more models - typically the parts of an assembly - to mesh files in
+ * one pass. The format of each file is determined by its extension, see {@link FileExporterFactory}.</p>
+ * <p>Every file is generated at the same time and the models are evaluated in one shared parallel
+ * evaluation, so a model which is part of more files, for example a part of the assembly which is also
+ * exported on its own, is evaluated only once. The models must not be modified during the export.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class SaveMeshFiles {
+	private static final class SchedulerHolder {
+		private static final EvaluationScheduler SCHEDULER = new EvaluationScheduler();
+	}
+
+	private static final class MeshFile {
+		private final String fileName;
+		private final IModel model;
+		private final TagFilter filter;
+
+		private MeshFile(String fileName, IModel model, TagFilter filter) {
+			this.fileName = fileName;
+			this.model = model;
+			this.filter = filter;
+		}
+	}
+
+	private final List<MeshFile> meshFiles = new ArrayList<>();
+	private final File root;
+	private final FacetGenerationContext context;
+	private final EvaluationScheduler scheduler;
+
+	/**
+	 * Creates the object with the given root directory, context and scheduler.
+	 * @param root the root directory where the files will be saved
+	 * @param context the context used for the evaluation of the models
+	 * @param scheduler the scheduler used for the evaluation of the models
+	 * @throws IllegalValueException if any of the parameters is null or the root exists as a file
+	 */
+	public SaveMeshFiles(File root, FacetGenerationContext context, EvaluationScheduler scheduler)
+			throws IllegalValueException {
+		AssertValue.isNotNull(root, "The root directory must not be null!");
+		AssertValue.isFalse(root.isFile(), "The root must not be an existing file - " +
+				"if it is exists, it should be a directory!");
+		AssertValue.isNotNull(context, "The context must not be null!");
+		AssertValue.isNotNull(scheduler, "The scheduler must not be null!");
+		this.root = root;
+		this.context = context;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Creates the object with the given root directory and context using a shared default scheduler.
+	 * @param root the root directory where the files will be saved
+	 * @param context the context used for the evaluation of the models
+	 * @throws IllegalValueException if any of the parameters is null or the root exists as a file
+	 */
+	public SaveMeshFiles(File root, FacetGenerationContext context) throws IllegalValueException {
+		this(root, context, SchedulerHolder.SCHEDULER);
+	}
+
+	/**
+	 * Creates the object with the given root directory using the default context and a shared default
+	 * scheduler.
+	 * @param root the root directory where the files will be saved
+	 * @throws IllegalValueException if the root is null or exists as a file
+	 */
+	public SaveMeshFiles(File root) throws IllegalValueException {
+		this(root, FacetGenerationContext.DEFAULT);
+	}
+
+	/**
+	 * Adds a mesh file with the given file name and the given model.
+	 * @param fileName the name of the file where the model will be saved
+	 * @param model the model to be saved
+	 * @return return this object to make it possible to chain more method call
+	 */
+	public SaveMeshFiles addModel(String fileName, IModel model) {
+		meshFiles.add(new MeshFile(fileName, model, context.getTagFilter()));
+		return this;
+	}
+
+	/**
+	 * Adds a mesh file with the given file name, which contains only the parts of the given model
+	 * tagged with any of the given tags.
+	 * @param fileName the name of the file where the parts will be saved
+	 * @param model the model containing the parts
+	 * @param tags the tags of the parts to be saved
+	 * @return return this object to make it possible to chain more method call
+	 */
+	public SaveMeshFiles addTaggedParts(String fileName, IModel model, int... tags) {
+		List<Integer> included = new ArrayList<>(tags.length);
+		for (int tag : tags) {
+			included.add(Integer.valueOf(tag));
+		}
+		meshFiles.add(new MeshFile(fileName, model, TagFilter.create(TagSet.of(included), TagSet.EMPTY)));
+		return this;
+	}
+
+	/**
+	 * Adds the parts of the given model provider. The extension of the paths given by the provider is
+	 * replaced by the given one, so the same provider can be used for the SCAD and the mesh files.
+	 * @param provider the provider to be added
+	 * @param extension the extension of the mesh files without the dot, for example {@code stl}
+	 * @return return this object to make it possible to chain more method call
+	 */
+	public SaveMeshFiles addModelProvider(IModelProvider provider, String extension) {
+		for (ModelWithPath mp : provider.getModelsAndPaths()) {
+			addModel(changeExtension(mp.getRelPath(), extension), mp.getModel());
+		}
+		return this;
+	}
+
+	private static String changeExtension(String path, String extension) {
+		int dot = path.lastIndexOf('.');
+		if (dot<=Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'))) {
+			return path+"."+extension;
+		}
+		return path.substring(0, dot+1)+extension;
+	}
+
+	/**
+	 * Saves the added models into the corresponding files. The files are generated in parallel and
+	 * every file is attempted even if some of them fail.
+	 * @throws IOException if any IO error happens during the file writes - the errors of the other
+	 * 		files are added to it as suppressed exceptions
+	 */
+	public void saveMeshFiles() throws IOException {
+		final FacetGenerationContext shared = scheduler.startEvaluation(context);
+		List<Callable<IOException>> tasks = new ArrayList<>(meshFiles.size());
+		for (final MeshFile meshFile : meshFiles) {
+			tasks.add(new Callable<IOException>() {
+				@Override
+				public IOException call() {
+					try {
+						save(meshFile, shared.withTagFilter(meshFile.filter));
+						return null;
+					} catch (IOException e) {
+						return e;
+					}
+				}
+			});
+		}
+
+		IOException exception = null;
+		for (IOException e : ParallelTasks.invokeAll(tasks)) {
+			if (e!=null) {
+				if (exception==null) {
+					exception = e;
+				} else {
+					exception.addSuppressed(e);
+				}
+			}
+		}
+		if (exception!=null) {
+			throw exception;
+		}
+	}
+
+	private void save(MeshFile meshFile, FacetGenerationContext partContext) throws IOException {
+		File file = new File(root, meshFile.fileName);
+		File directory = file.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create the directory "+directory.getPath()+" for "+meshFile.fileName);
+		}
+		IFileExporter exporter = FileExporterFactory.createExporter(file);
+		if (exporter instanceof AbstractFileExporter) {
+			((AbstractFileExporter)exporter).writeModel(meshFile.model, partContext);
+		} else {
+			exporter.writeToFile(meshFile.model.toCSG(partContext).toFacets());
+		}
+	}
+}
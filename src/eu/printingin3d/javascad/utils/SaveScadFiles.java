@@ -6,6 +6,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import eu.printingin3d.javascad.context.IScadGenerationContext;
 import eu.printingin3d.javascad.context.ScadGenerationContextFactory;
@@ -19,8 +21,17 @@ import eu.printingin3d.javascad.openscad.Consts;
  * @author ivivan <ivivan@printingin3d.eu> 
  */
 public class SaveScadFiles {
+	/**
+	 * The name of the manifest file used by {@link #incremental()}.
+	 */
+	public static final String MANIFEST_NAME = ".javascad-manifest";
+	
 	private final List<IScadFile> scadFiles = new ArrayList<>();
 	private final File root;
+	private boolean extractModules = false;
+	private boolean parallel = false;
+	private Executor executor = null;
+	private File manifestFile = null;
 	
 	/**
 	 * Creates the object with the given root directory.
@@ -141,14 +152,178 @@ public class SaveScadFiles {
 	}
 	
 	/**
-	 * Save the added SCAD files into the corresponding files. 
-	 * @throws IOException if any IO error happens during the file write
+	 * Switches on the extraction of the repeated subtrees to OpenSCAD modules in every saved file - see
+	 * {@link ModelToFile#extractModules()}.
+	 * @return return this object to make it possible to chain more method call
+	 */
+	public SaveScadFiles extractModules() {
+		this.extractModules = true;
+		return this;
+	}
+	
+	/**
+	 * Switches on the parallel mode: the files are generated and written at the same time on the shared
+	 * pool of {@link ParallelTasks}.
+	 * @return return this object to make it possible to chain more method call
+	 */
+	public SaveScadFiles parallel() {
+		this.parallel = true;
+		this.executor = null;
+		return this;
+	}
+	
+	/**
+	 * Switches on the parallel mode: the files are generated and written at the same time on the given
+	 * executor. The calling thread takes part in the work too.
+	 * @param executor the executor used to save the files
+	 * @return return this object to make it possible to chain more method call
+	 * @throws IllegalValueException if the executor is null
+	 */
+	public SaveScadFiles parallel(Executor executor) throws IllegalValueException {
+		AssertValue.isNotNull(executor, "The executor must not be null!");
+		this.parallel = true;
+		this.executor = executor;
+		return this;
+	}
+	
+	/**
+	 * Switches on the incremental mode with the manifest stored in the root directory - see
+	 * {@link #incremental(File)}.
+	 * @return return this object to make it possible to chain more method call
+	 */
+	public SaveScadFiles incremental() {
+		return incremental(new File(root, MANIFEST_NAME));
+	}
+	
+	/**
+	 * <p>Switches on the incremental mode: the manifest file remembers the structural hash of the models
+	 * and the context and the hash of the generated code of every saved file. If the structural hash of
+	 * a file hasn't changed since the last save, the file isn't even generated again; if the generated
+	 * code is the same as last time, the file isn't written. So the unchanged files are never touched.</p>
+	 * <p>The models which can't be hashed are always generated, but they are still written only if their
+	 * code has changed. The entries of the files which have been deleted are removed from the manifest.</p>
+	 * @param manifest the file where the hashes are stored between the runs
+	 * @return return this object to make it possible to chain more method call
+	 * @throws IllegalValueException if the manifest is null
+	 */
+	public SaveScadFiles incremental(File manifest) throws IllegalValueException {
+		AssertValue.isNotNull(manifest, "The manifest file must not be null!");
+		this.manifestFile = manifest;
+		return this;
+	}
+	
+	/**
+	 * Save the added SCAD files into the corresponding files. Every file is written to a temporary file
+	 * and renamed at the end, so a failed save doesn't leave a half written file behind. A failure of a
+	 * file doesn't stop saving the other files: the failures are collected and reported together after
+	 * every file has been processed.
+	 * @throws IOException if any of the files can't be saved - the failures of the files are attached to
+	 * 		it as suppressed exceptions
 	 */
 	public void saveScadFiles() throws IOException {
+		ScadManifest manifest = manifestFile==null ? null : new ScadManifest(manifestFile);
+		List<FileSaver> tasks = new ArrayList<>(scadFiles.size());
 		for (IScadFile scadFile : scadFiles) {
+			tasks.add(new FileSaver(scadFile, manifest));
+		}
+		
+		List<IOException> results;
+		if (!parallel) {
+			results = new ArrayList<>(tasks.size());
+			for (FileSaver task : tasks) {
+				results.add(task.call());
+			}
+		} else if (executor==null) {
+			results = ParallelTasks.invokeAll(tasks);
+		} else {
+			results = ParallelTasks.invokeAll(tasks, executor);
+		}
+		
+		List<IOException> failures = new ArrayList<>();
+		for (IOException e : results) {
+			if (e!=null) {
+				failures.add(e);
+			}
+		}
+		if (manifest!=null) {
+			manifest.prune(root);
+			try {
+				manifest.store();
+			} catch (IOException e) {
+				failures.add(new IOException("Could not save the manifest "+manifestFile.getPath(), e));
+			}
+		}
+		if (!failures.isEmpty()) {
+			IOException result = new IOException("Could not save "+failures.size()+" of "+tasks.size()+
+					" SCAD files", failures.get(0));
+			for (IOException e : failures) {
+				result.addSuppressed(e);
+			}
+			throw result;
+		}
+	}
+	
+	/**
+	 * Generates and writes one file. The failure is returned instead of thrown, so the other files
+	 * can be saved too.
+	 */
+	private final class FileSaver implements Callable<IOException> {
+		private final IScadFile scadFile;
+		private final ScadManifest manifest;
+		
+		private FileSaver(IScadFile scadFile, ScadManifest manifest) {
+			this.scadFile = scadFile;
+			this.manifest = manifest;
+		}
+		
+		@Override
+		public IOException call() {
 			File file = scadFile.getFile(root);
-			file.getParentFile().mkdirs();
-			new ModelToFile(file).addModels(scadFile.getModels()).saveToFile(scadFile.getContext());
+			String path = getManifestPath(file);
+			try {
+				File directory = file.getParentFile();
+				if (!directory.isDirectory() && !directory.mkdirs()) {
+					throw new IOException("Could not create the directory "+directory.getPath());
+				}
+				ModelToFile modelToFile = new ModelToFile(file).addModels(scadFile.getModels());
+				if (extractModules) {
+					modelToFile.extractModules();
+				}
+				if (manifest==null) {
+					modelToFile.saveToFile(scadFile.getContext());
+				} else {
+					saveIncrementally(modelToFile, file, path);
+				}
+				return null;
+			} catch (IOException | RuntimeException e) {
+				if (manifest!=null) {
+					// the next run can't trust the file, so it will be generated again
+					manifest.remove(path);
+				}
+				return new IOException("Could not save "+file.getPath(), e);
+			}
+		}
+		
+		private void saveIncrementally(ModelToFile modelToFile, File file, String path) throws IOException {
+			StructuralHash hash = modelToFile.getStructuralHash(scadFile.getContext());
+			String modelHash = hash==null ? null : hash.toHex();
+			ScadManifest.Entry previous = manifest.get(path);
+			if (previous!=null && modelHash!=null && modelHash.equals(previous.getModelHash()) && file.isFile()) {
+				return;
+			}
+			String contentHash = modelToFile.saveToFile(scadFile.getContext(),
+					previous==null ? null : previous.getContentHash());
+			manifest.put(path, new ScadManifest.Entry(modelHash, contentHash));
+		}
+	}
+	
+	private String getManifestPath(File file) {
+		try {
+			return root.getAbsoluteFile().toPath().relativize(file.getAbsoluteFile().toPath())
+					.toString().replace(File.separatorChar, '/');
+		} catch (IllegalArgumentException e) {
+			// the file is on a different drive than the root
+			return file.getAbsolutePath();
 		}
 	}
 }
@@ -0,0 +1,167 @@
+package eu.printingin3d.javascad.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Remembers what has been saved to the SCAD files by {@link SaveScadFiles} in incremental mode: the
+ * structural hash of the models and the context, and the hash of the generated code for every file.</p>
+ * <p>It is stored as a properties file, the keys are the paths of the SCAD files. Every entry records the
+ * {@link ModelToFile#GENERATOR_VERSION} it was written by, the entries of other versions are dropped
+ * when the manifest is read. The entries can be read and updated from more threads at the same time.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class ScadManifest {
+	private static final String NO_HASH = "-";
+	private static final String VERSION = Integer.toString(ModelToFile.GENERATOR_VERSION);
+
+	private final File file;
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private volatile boolean changed = false;
+
+	/**
+	 * Creates the manifest and reads the entries from the given file if it exists.
+	 * @param file the file of the manifest
+	 * @throws IOException if the file exists, but can't be read
+	 */
+	ScadManifest(File file) throws IOException {
+		this.file = file;
+		if (file.isFile()) {
+			Properties properties = new Properties();
+			InputStream in = new FileInputStream(file);
+			try {
+				properties.load(in);
+			}
+			finally {
+				in.close();
+			}
+			for (String path : properties.stringPropertyNames()) {
+				String[] values = properties.getProperty(path).split(" ");
+				if (values.length==3 && VERSION.equals(values[0])) {
+					entries.put(path, new Entry(NO_HASH.equals(values[1]) ? null : values[1], values[2]));
+				} else {
+					changed = true;
+				}
+			}
+		}
+	}
+
+	Entry get(String path) {
+		return entries.get(path);
+	}
+
+	void put(String path, Entry entry) {
+		Entry previous = entries.put(path, entry);
+		if (!entry.equals(previous)) {
+			changed = true;
+		}
+	}
+
+	void remove(String path) {
+		if (entries.remove(path)!=null) {
+			changed = true;
+		}
+	}
+
+	/**
+	 * Removes the entries of the files which don't exist anymore.
+	 * @param root the directory the relative paths are resolved against
+	 */
+	void prune(File root) {
+		for (String path : entries.keySet()) {
+			File f = new File(path);
+			if (!f.isAbsolute()) {
+				f = new File(root, path);
+			}
+			if (!f.isFile()) {
+				remove(path);
+			}
+		}
+	}
+
+	/**
+	 * Writes the manifest to its file if any of its entries has been changed. The file is replaced
+	 * atomically, the same way as the SCAD files are.
+	 * @throws IOException if the file can't be written
+	 */
+	void store() throws IOException {
+		if (!changed) {
+			return;
+		}
+		Properties properties = new Properties();
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			Entry entry = e.getValue();
+			properties.setProperty(e.getKey(),
+					VERSION+" "+(entry.modelHash==null ? NO_HASH : entry.modelHash)+" "+entry.contentHash);
+		}
+
+		AtomicFile atomicFile = new AtomicFile(file);
+		try {
+			OutputStream out = new FileOutputStream(atomicFile.getTempFile());
+			try {
+				properties.store(out, "javascad manifest - path=generator-version model-hash content-hash");
+			}
+			finally {
+				out.close();
+			}
+			atomicFile.commit();
+			changed = false;
+		}
+		finally {
+			atomicFile.close();
+		}
+	}
+
+	/**
+	 * The hashes saved for one SCAD file.
+	 */
+	static final class Entry {
+		private final String modelHash;
+		private final String contentHash;
+
+		/**
+		 * Creates the entry.
+		 * @param modelHash the structural hash of the models and the context or null if they can't be hashed
+		 * @param contentHash the hash of the generated code
+		 */
+		Entry(String modelHash, String contentHash) {
+			this.modelHash = modelHash;
+			this.contentHash = contentHash;
+		}
+
+		String getModelHash() {
+			return modelHash;
+		}
+
+		String getContentHash() {
+			return contentHash;
+		}
+
+		@Override
+		public int hashCode() {
+			return (modelHash==null ? 0 : modelHash.hashCode())*31+contentHash.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Entry other = (Entry) obj;
+			return (modelHash==null ? other.modelHash==null : modelHash.equals(other.modelHash)) &&
+					contentHash.equals(other.contentHash);
+		}
+	}
+}
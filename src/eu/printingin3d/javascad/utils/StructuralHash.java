@@ -0,0 +1,68 @@
+package eu.printingin3d.javascad.utils;
+
+import java.util.Arrays;
+
+/**
+ * <p>Immutable digest of the structure of a model: its type, parameters, transformations and children.
+ * Two models with the same structural hash produce the same geometry in the same context.</p>
+ * <p>Instances are created by {@link StructuralHashBuilder}.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class StructuralHash {
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final byte[] digest;
+	private final int hashCode;
+
+	StructuralHash(byte[] digest) {
+		this.digest = digest;
+		this.hashCode = Arrays.hashCode(digest);
+	}
+
+	/**
+	 * Returns with a copy of the digest bytes.
+	 * @return a copy of the digest bytes
+	 */
+	public byte[] toByteArray() {
+		return digest.clone();
+	}
+
+	byte[] getDigest() {
+		return digest;
+	}
+
+	/**
+	 * Returns with the hexadecimal representation of the digest.
+	 * @return the hexadecimal representation of the digest
+	 */
+	public String toHex() {
+		char[] result = new char[digest.length*2];
+		for (int i=0;i<digest.length;i++) {
+			result[i*2] = HEX[(digest[i] >> 4) & 0x0F];
+			result[i*2+1] = HEX[digest[i] & 0x0F];
+		}
+		return new String(result);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		return Arrays.equals(digest, ((StructuralHash) obj).digest);
+	}
+
+	@Override
+	public String toString() {
+		return toHex();
+	}
+}
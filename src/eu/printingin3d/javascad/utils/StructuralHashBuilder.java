@@ -0,0 +1,158 @@
+package eu.printingin3d.javascad.utils;
+
+import java.awt.Color;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import eu.printingin3d.javascad.coords.Abstract3d;
+import eu.printingin3d.javascad.coords.Boundaries3d;
+
+/**
+ * <p>Collects the structural elements of a model and creates a {@link StructuralHash} from them.
+ * The values are fed into a SHA-256 digest, doubles are added with their exact bit pattern.</p>
+ * <p>If any part of the structure can't be described - for example a child model which doesn't
+ * support structural hashing - the builder becomes unhashable and {@link #build()} returns null.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class StructuralHashBuilder {
+	private final MessageDigest digest;
+	private boolean hashable = true;
+
+	/**
+	 * Creates an empty builder.
+	 */
+	public StructuralHashBuilder() {
+		try {
+			this.digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Marks the structure as not hashable, so {@link #build()} will return null.
+	 * @return this object to make it possible to chain more method call
+	 */
+	public StructuralHashBuilder unhashable() {
+		hashable = false;
+		return this;
+	}
+
+	/**
+	 * Tells if the structure collected so far can be hashed.
+	 * @return true if and only if {@link #build()} would return a non-null value
+	 */
+	public boolean isHashable() {
+		return hashable;
+	}
+
+	/**
+	 * Appends a string value.
+	 * @param value the value to be added
+	 * @return this object to make it possible to chain more method call
+	 */
+	public StructuralHashBuilder append(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		append(bytes.length);
+		digest.update(bytes);
+		return this;
+	}
+
+	/**
+	 * Appends an int value.
+	 * @param value the value to be added
+	 * @return this object to make it possible to chain more method call
+	 */
+	public StructuralHashBuilder append(int value) {
+		digest.update((byte) (value >>> 24));
+		digest.update((byte) (value >>> 16));
+		digest.update((byte) (value >>> 8));
+		digest.update((byte) value);
+		return this;
+	}
+
+	/**
+	 * Appends a long value.
+	 * @param value the value to be added
+	 * @return this object to make it possible to chain more method call
+	 */
+	public StructuralHashBuilder append(long value) {
+		append((int) (value >>> 32));
+		append((int) value);
+		return this;
+	}
+
+	/**
+	 * Appends a double value with its exact bit pattern.
+	 * @param value the value to be added
+	 * @return this object to make it possible to chain more method call
+	 */
+	public StructuralHashBuilder append(double value) {
+		return append(Double.doubleToLongBits(value));
+	}
+
+	/**
+	 * Appends a boolean value.
+	 * @param value the value to be added
+	 * @return this object to make it possible to chain more method call
+	 */
+	public StructuralHashBuilder append(boolean value) {
+		digest.update(value ? (byte) 1 : (byte) 0);
+		return this;
+	}
+
+	/**
+	 * Appends the three coordinates of the given value.
+	 * @param value the value to be added
+	 * @return this object to make it possible to chain more method call
+	 */
+	public StructuralHashBuilder append(Abstract3d value) {
+		return append(value.getX()).append(value.getY()).append(value.getZ());
+	}
+
+	/**
+	 * Appends the two corners of the given boundaries.
+	 * @param value the value to be added
+	 * @return this object to make it possible to chain more method call
+	 */
+	public StructuralHashBuilder append(Boundaries3d value) {
+		return append(value.getMinCorner()).append(value.getMaxCorner());
+	}
+
+	/**
+	 * Appends a color value, null is allowed.
+	 * @param value the value to be added
+	 * @return this object to make it possible to chain more method call
+	 */
+	public StructuralHashBuilder append(Color value) {
+		if (value==null) {
+			return append(false);
+		}
+		return append(true).append(value.getRGB());
+	}
+
+	/**
+	 * Appends the hash of a part of the structure, typically a child model. If the given hash is null
+	 * the structure becomes unhashable.
+	 * @param value the value to be added
+	 * @return this object to make it possible to chain more method call
+	 */
+	public StructuralHashBuilder append(StructuralHash value) {
+		if (value==null) {
+			return unhashable();
+		}
+		digest.update(value.getDigest());
+		return this;
+	}
+
+	/**
+	 * Creates the hash from the values appended so far.
+	 * @return the created hash or null if the structure is not hashable
+	 */
+	public StructuralHash build() {
+		return hashable ? new StructuralHash(digest.digest()) : null;
+	}
+}
@@ -33,11 +33,14 @@
  */
 package eu.printingin3d.javascad.vrl;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
 import eu.printingin3d.javascad.tranform.ITransformation;
 
 /**
@@ -103,6 +106,25 @@ public class CSG {
         return new CSG(Arrays.asList(polygons));
     }
 
+    /**
+     * Constructs a CSG which contains all polygons of the given CSGs. It is only a
+     * valid union of them if the solids don't touch or overlap each other.
+     *
+     * @param csgs the CSGs to be concatenated
+     * @return a CSG instance
+     */
+    public static CSG concat(List<CSG> csgs) {
+        int size = 0;
+        for (CSG csg : csgs) {
+            size += csg.polygons.size();
+        }
+        List<Polygon> result = new ArrayList<>(size);
+        for (CSG csg : csgs) {
+            result.addAll(csg.polygons);
+        }
+        return new CSG(result);
+    }
+
     /**
      *
      * @return the polygons of this CSG
@@ -136,6 +158,12 @@ public class CSG {
      * @return union of this csg and the specified csg
      */
     public CSG union(CSG csg) {
+        if (csg.polygons.isEmpty()) {
+            return this;
+        }
+        if (this.polygons.isEmpty()) {
+            return csg;
+        }
         Node a = Node.fromPoligons(this.polygons);
         Node b = Node.fromPoligons(csg.polygons);
         a = a.clipTo(b);
@@ -170,6 +198,9 @@ public class CSG {
      * @return difference of this csg and the specified csg
      */
     public CSG difference(CSG csg) {
+        if (this.polygons.isEmpty() || csg.polygons.isEmpty()) {
+            return this;
+        }
         Node a = Node.fromPoligons(this.polygons);
         Node b = Node.fromPoligons(csg.polygons);
         a = a.invert();
@@ -207,6 +238,12 @@ public class CSG {
      * @return intersection of this csg and the specified csg
      */
     public CSG intersect(CSG csg) {
+        if (this.polygons.isEmpty()) {
+            return this;
+        }
+        if (csg.polygons.isEmpty()) {
+            return csg;
+        }
         Node a = Node.fromPoligons(this.polygons);
         Node b = Node.fromPoligons(csg.polygons);
         a = a.invert();
@@ -219,6 +256,43 @@ public class CSG {
         return new CSG(a.allPolygons());
     }
 
+    /**
+     * Passes every triangle of this CSG to the given consumer one by one. Unlike {@link #toFacets()}
+     * it doesn't build a list of the facets, the triangles are generated on demand.
+     *
+     * @param consumer the consumer of the triangles
+     * @throws IOException if the consumer throws it
+     */
+    public void forEachFacet(IFacetConsumer consumer) throws IOException {
+        for (Polygon p : polygons) {
+            p.forEachFacet(consumer);
+        }
+    }
+
+    /**
+     * Returns the number of triangles this CSG consists of - the number of times
+     * {@link #forEachFacet(IFacetConsumer)} calls its consumer.
+     *
+     * @return the number of triangles
+     */
+    public int getFacetCount() {
+        int count = 0;
+        for (Polygon p : polygons) {
+            count += p.getFacetCount();
+        }
+        return count;
+    }
+
+    /**
+     * Converts this CSG to an indexed triangle mesh with welded vertexes. The mesh contains the same
+     * triangles in the same order as {@link #forEachFacet(IFacetConsumer)} generates them.
+     *
+     * @return the created mesh
+     */
+    public IndexedMesh toIndexedMesh() {
+        return new IndexedMeshBuilder(getFacetCount()).addPolygons(polygons).buildIndexedMesh();
+    }
+
     public List<Facet> toFacets() {
     	List<Facet> facets = new ArrayList<>();
     	for (Polygon p : polygons) {
@@ -242,4 +316,49 @@ public class CSG {
 
         return new CSG(newpolygons);
     }
+
+    /**
+     * Returns a translated copy of this CSG.
+     *
+     * @param delta the translation to apply
+     *
+     * @return a translated copy of this CSG
+     */
+    public CSG translated(Coords3d delta) {
+        List<Polygon> newpolygons = new ArrayList<>(polygons.size());
+        for (Polygon p : this.polygons) {
+            newpolygons.add(p.translated(delta));
+        }
+
+        return new CSG(newpolygons);
+    }
+
+    /**
+     * Calculates the including cuboid of the polygons of this CSG. Returns with
+     * {@link Boundaries3d#EMPTY} if this CSG is empty.
+     *
+     * @return the calculated boundaries
+     */
+    public Boundaries3d getBoundaries() {
+        if (polygons.isEmpty()) {
+            return Boundaries3d.EMPTY;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+        for (Polygon p : polygons) {
+            for (Coords3d v : p.getVertices()) {
+                minX = Math.min(minX, v.getX());
+                minY = Math.min(minY, v.getY());
+                minZ = Math.min(minZ, v.getZ());
+                maxX = Math.max(maxX, v.getX());
+                maxY = Math.max(maxY, v.getY());
+                maxZ = Math.max(maxZ, v.getZ());
+            }
+        }
+        return new Boundaries3d(new Coords3d(minX, minY, minZ), new Coords3d(maxX, maxY, maxZ));
+    }
 }
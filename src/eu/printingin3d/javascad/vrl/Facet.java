@@ -1,6 +1,7 @@
 package eu.printingin3d.javascad.vrl;
 
 import java.awt.Color;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,6 +39,25 @@ public class Facet {
 		return vertexes;
 	}
 
+	/**
+	 * Passes this facet to the given consumer.
+	 * @param consumer the consumer of the triangle
+	 * @throws IOException if the consumer throws it
+	 */
+	public void passTo(IFacetConsumer consumer) throws IOException {
+		List<Coords3d> points = triangle.getPoints();
+		consumer.accept(normal, points.get(0), points.get(1), points.get(2), color);
+	}
+
+	/**
+	 * Adds this facet to the given mesh builder.
+	 * @param builder the builder of the mesh
+	 */
+	void addTo(IndexedMeshBuilder builder) {
+		List<Coords3d> points = triangle.getPoints();
+		builder.addTriangle(normal, points.get(0), points.get(1), points.get(2), color);
+	}
+
 	public Coords3d getNormal() {
 		return normal;
 	}
@@ -5,20 +5,68 @@ import java.awt.Color;
 import eu.printingin3d.javascad.context.AbstractColorHandlingContext;
 import eu.printingin3d.javascad.context.IColorGenerationContext;
 import eu.printingin3d.javascad.context.TagColors;
+import eu.printingin3d.javascad.context.TagFilter;
+import eu.printingin3d.javascad.models.EvaluationScheduler;
+import eu.printingin3d.javascad.models.EvaluationSession;
+import eu.printingin3d.javascad.models.ParallelEvaluation;
+import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
+import eu.printingin3d.javascad.vrl.cache.ICSGCache;
 
+/**
+ * <p>Holds every setting used during the CSG generation: the resolution ($fs and $fa), the colors,
+ * the included and excluded tags, the cache and the evaluation strategy.</p>
+ * <p>The object is immutable, every setting is fixed when the object is created - use
+ * {@link FacetGenerationContextBuilder} to create one or the with* methods to derive a new context
+ * from an existing one. Because of this the same context can be used from more threads at the same time.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
 public class FacetGenerationContext extends AbstractColorHandlingContext {
+	public static final double DEFAULT_FS = 0.25;
+	public static final int DEFAULT_FA = 6;
+	
 	public final static FacetGenerationContext DEFAULT = new FacetGenerationContext(null, null, 0);
 	
+	private final double fs;
+	private final int fa;
+	private final ICSGCache cache;
+	private final EvaluationSession session;
+	private final ParallelEvaluation evaluation;
+	private final TagFilter filter;
+	
 	public FacetGenerationContext(TagColors tagColors, IColorGenerationContext parent, int tag) {
-		super(tagColors, parent, tag);
+		this(tagColors, parent, tag, DEFAULT_FS, DEFAULT_FA, null, null, null, TagFilter.ALL);
 	}
-
-	private double fs = 0.25;
-	private int fa = 6;
 	
-	public void setFsAndFa(double fs, int fa) {
+	FacetGenerationContext(TagColors tagColors, IColorGenerationContext parent, int tag, 
+			double fs, int fa, ICSGCache cache, EvaluationSession session, ParallelEvaluation evaluation,
+			TagFilter filter) {
+		super(tagColors, parent, tag);
 		this.fs = fs;
 		this.fa = fa;
+		this.cache = cache;
+		this.session = session;
+		this.evaluation = evaluation;
+		this.filter = filter;
+	}
+	
+	public double getFs() {
+		return fs;
+	}
+	
+	public int getFa() {
+		return fa;
+	}
+	
+	/**
+	 * Creates a copy of this context with the given resolution.
+	 * @param fs the minimum size of a fragment in mm
+	 * @param fa the minimum angle of a fragment in degrees
+	 * @return the new context
+	 */
+	public FacetGenerationContext withFsAndFa(double fs, int fa) {
+		return new FacetGenerationContext(tagColors, parent, tag, fs, fa, cache, session, evaluation, filter);
 	}
 	
 	public int calculateNumberOfSlices(double r) {
@@ -30,7 +78,114 @@ public class FacetGenerationContext extends AbstractColorHandlingContext {
 			return this;
 		}
 		
-		return new FacetGenerationContext(tagColors, this, tag);
+		return new FacetGenerationContext(tagColors, this, tag, fs, fa, cache, session, evaluation,
+				filter.applyTag(tag));
+	}
+	
+	/**
+	 * Creates a copy of this context which uses the given cache to store and look up the evaluated
+	 * models. The cache is inherited by every derived context.
+	 * @param cache the cache to be used or null to turn off caching
+	 * @return the new context
+	 */
+	public FacetGenerationContext withCache(ICSGCache cache) {
+		return new FacetGenerationContext(tagColors, parent, tag, fs, fa, cache, session, evaluation, filter);
+	}
+	
+	/**
+	 * Creates a copy of this context which keeps the evaluated models in the given session, so
+	 * the next evaluation in the same session recalculates only the modified models.
+	 * The session is inherited by every derived context. It is normally called by
+	 * {@link EvaluationSession#toCSG(eu.printingin3d.javascad.models.Abstract3dModel, FacetGenerationContext)}.
+	 * @param session the session to be used or null to turn off the incremental evaluation
+	 * @return the new context
+	 */
+	public FacetGenerationContext withSession(EvaluationSession session) {
+		return new FacetGenerationContext(tagColors, parent, tag, fs, fa, cache, session, evaluation, filter);
+	}
+	
+	/**
+	 * Returns the evaluation session used by this context.
+	 * @return the evaluation session used by this context or null if there is no session
+	 */
+	public EvaluationSession getSession() {
+		return session;
+	}
+	
+	/**
+	 * Creates a copy of this context which evaluates the models in parallel as part of the given
+	 * evaluation. The evaluation is inherited by every derived context. It is normally called by
+	 * {@link EvaluationScheduler#toCSG(eu.printingin3d.javascad.models.Abstract3dModel, FacetGenerationContext)}.
+	 * @param evaluation the evaluation to be used or null to evaluate the models sequentially
+	 * @return the new context
+	 */
+	public FacetGenerationContext withEvaluation(ParallelEvaluation evaluation) {
+		return new FacetGenerationContext(tagColors, parent, tag, fs, fa, cache, session, evaluation, filter);
+	}
+	
+	/**
+	 * Returns the parallel evaluation this context is part of.
+	 * @return the parallel evaluation or null if the models are evaluated sequentially
+	 */
+	public ParallelEvaluation getEvaluation() {
+		return evaluation;
+	}
+	
+	/**
+	 * Creates a copy of this context which filters the models by their tags with the given filter.
+	 * The models filtered out are not evaluated at all. The filter is applied to the tags under
+	 * this context.
+	 * @param filter the filter to be used - {@link TagFilter#ALL} turns off the filtering
+	 * @return the new context
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the filter is null
+	 */
+	public FacetGenerationContext withTagFilter(TagFilter filter) {
+		AssertValue.isNotNull(filter, "The tag filter should not be null!");
+		return new FacetGenerationContext(tagColors, parent, tag, fs, fa, cache, session, evaluation, filter);
+	}
+	
+	/**
+	 * Returns the tag filter valid in this context.
+	 * @return the tag filter valid in this context
+	 */
+	public TagFilter getTagFilter() {
+		return filter;
+	}
+	
+	/**
+	 * Returns true if the primitives evaluated directly in this context are part of the result.
+	 * @return true if the primitives are included in this context
+	 */
+	public boolean isTagIncluded() {
+		return filter.isTagIncluded();
+	}
+	
+	/**
+	 * Returns the cache used by this context.
+	 * @return the cache used by this context or null if there is no cache
+	 */
+	public ICSGCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Appends every setting of this context which could affect the generated CSG to the given builder:
+	 * the resolution, the current color, the colors assigned to tags and the state of the tag filter.
+	 * The color and the tag filter are resolved from the parents when the context is created, so unlike
+	 * {@link AbstractColorHandlingContext#appendStructure(StructuralHashBuilder)} the parents are not
+	 * described: the contexts reached through different parents are equal if their settings are equal.
+	 * @param builder the builder to be used
+	 */
+	@Override
+	public void appendStructure(StructuralHashBuilder builder) {
+		builder.append(fs).append(fa).append(getColor());
+		filter.appendStructure(builder);
+		if (tagColors==null) {
+			builder.append(false);
+		} else {
+			builder.append(true);
+			tagColors.appendStructure(builder);
+		}
 	}
 	
 	@Override
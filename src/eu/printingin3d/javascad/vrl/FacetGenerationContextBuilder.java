@@ -0,0 +1,60 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import eu.printingin3d.javascad.context.TagColors;
+import eu.printingin3d.javascad.context.TagFilter;
+import eu.printingin3d.javascad.context.TagSet;
+import eu.printingin3d.javascad.vrl.cache.ICSGCache;
+
+/**
+ * Collects the settings of a {@link FacetGenerationContext} and creates the immutable context from them.
+ * The settings not given are the defaults: $fs = 0.25, $fa = 6, no tag colors, no tag filtering and no cache.
+ * The included and excluded tags work the same way as in {@link eu.printingin3d.javascad.context.ScadGenerationContextFactory}.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class FacetGenerationContextBuilder {
+	private TagColors tagColors = null;
+	private double fs = FacetGenerationContext.DEFAULT_FS;
+	private int fa = FacetGenerationContext.DEFAULT_FA;
+	private ICSGCache cache = null;
+	private final Set<Integer> included = new HashSet<>();
+	private final Set<Integer> excluded = new HashSet<>();
+
+	public FacetGenerationContextBuilder setTagColors(TagColors tagColors) {
+		this.tagColors = tagColors;
+		return this;
+	}
+
+	public FacetGenerationContextBuilder setFsAndFa(double fs, int fa) {
+		this.fs = fs;
+		this.fa = fa;
+		return this;
+	}
+
+	public FacetGenerationContextBuilder setCache(ICSGCache cache) {
+		this.cache = cache;
+		return this;
+	}
+
+	public FacetGenerationContextBuilder include(int... values) {
+		for (int i : values) {
+			included.add(Integer.valueOf(i));
+		}
+		return this;
+	}
+
+	public FacetGenerationContextBuilder exclude(int... values) {
+		for (int i : values) {
+			excluded.add(Integer.valueOf(i));
+		}
+		return this;
+	}
+
+	public FacetGenerationContext buildContext() {
+		return new FacetGenerationContext(tagColors, null, 0, fs, fa, cache, null, null,
+				TagFilter.create(TagSet.of(included), TagSet.of(excluded)));
+	}
+}
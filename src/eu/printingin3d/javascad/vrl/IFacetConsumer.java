@@ -0,0 +1,27 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.awt.Color;
+import java.io.IOException;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>Receives the triangles of a mesh one by one, see {@link CSG#forEachFacet(IFacetConsumer)}. The
+ * triangles are generated on demand and passed as separate parameters, so the mesh is never stored as a
+ * list of facets.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public interface IFacetConsumer {
+	/**
+	 * Processes one triangle of the mesh. The corners are in counter-clockwise order when looking at
+	 * the triangle from the outside.
+	 * @param normal the normal vector pointing outward from the object
+	 * @param v1 the first corner
+	 * @param v2 the second corner
+	 * @param v3 the third corner
+	 * @param color the color of the triangle
+	 * @throws IOException if the consumer writes the triangle to a file and any IO error happens
+	 */
+	void accept(Coords3d normal, Coords3d v1, Coords3d v2, Coords3d v3, Color color) throws IOException;
+}
@@ -0,0 +1,137 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.awt.Color;
+import java.io.IOException;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>An immutable indexed triangle mesh: the welded vertexes are stored in one coordinate buffer and
+ * the triangles as indexes into it. The normals and the colors of the triangles are optional.</p>
+ * <p>The vertexes which are closer to each other than the epsilon of
+ * {@link eu.printingin3d.javascad.utils.DoubleUtils#equalsEps(double, double)} are welded into one,
+ * see {@link IndexedMeshBuilder}. The vertexes keep the order they were first used by the triangles.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class IndexedMesh {
+	/**
+	 * The color value of the triangles without color. It is a fully transparent color, which is never
+	 * used for a real color of a model.
+	 */
+	public static final int NO_COLOR = 0;
+
+	private final double[] vertexes;
+	private final int[] triangles;
+	private final double[] normals;
+	private final int[] colors;
+
+	/**
+	 * Creates the mesh from the given buffers. The buffers are not copied, so they must not be modified
+	 * afterwards.
+	 * @param vertexes the X, Y and Z coordinates of the vertexes
+	 * @param triangles the three vertex indexes of the triangles
+	 * @param normals the X, Y and Z coordinates of the normals of the triangles, or null
+	 * @param colors the colors of the triangles in the format of {@link Color#getRGB()} or {@link #NO_COLOR},
+	 * 		or null
+	 */
+	IndexedMesh(double[] vertexes, int[] triangles, double[] normals, int[] colors) {
+		this.vertexes = vertexes;
+		this.triangles = triangles;
+		this.normals = normals;
+		this.colors = colors;
+	}
+
+	public int getVertexCount() {
+		return vertexes.length/3;
+	}
+
+	public int getTriangleCount() {
+		return triangles.length/3;
+	}
+
+	public double getX(int vertex) {
+		return vertexes[vertex*3];
+	}
+
+	public double getY(int vertex) {
+		return vertexes[vertex*3+1];
+	}
+
+	public double getZ(int vertex) {
+		return vertexes[vertex*3+2];
+	}
+
+	public Coords3d getVertex(int vertex) {
+		return new Coords3d(getX(vertex), getY(vertex), getZ(vertex));
+	}
+
+	/**
+	 * Returns the index of a vertex of the given triangle.
+	 * @param triangle the index of the triangle
+	 * @param corner the corner of the triangle: 0, 1 or 2
+	 * @return the index of the vertex
+	 */
+	public int getVertexIndex(int triangle, int corner) {
+		return triangles[triangle*3+corner];
+	}
+
+	public boolean hasNormals() {
+		return normals!=null;
+	}
+
+	/**
+	 * Returns the normal of the given triangle. If the mesh has no normals it is calculated from the
+	 * vertexes of the triangle.
+	 * @param triangle the index of the triangle
+	 * @return the normal of the triangle
+	 */
+	public Coords3d getNormal(int triangle) {
+		if (normals==null) {
+			Coords3d a = getVertex(getVertexIndex(triangle, 0));
+			Coords3d b = getVertex(getVertexIndex(triangle, 1));
+			Coords3d c = getVertex(getVertexIndex(triangle, 2));
+			return b.move(a.inverse()).cross(c.move(a.inverse())).unit();
+		}
+		return new Coords3d(normals[triangle*3], normals[triangle*3+1], normals[triangle*3+2]);
+	}
+
+	public boolean hasColors() {
+		return colors!=null;
+	}
+
+	/**
+	 * Returns the color of the given triangle in the format of {@link Color#getRGB()}.
+	 * @param triangle the index of the triangle
+	 * @return the color of the triangle or {@link #NO_COLOR} if the triangle or the mesh has no color
+	 */
+	public int getRGB(int triangle) {
+		return colors==null ? NO_COLOR : colors[triangle];
+	}
+
+	/**
+	 * Returns the color of the given triangle.
+	 * @param triangle the index of the triangle
+	 * @return the color of the triangle or null if the triangle or the mesh has no color
+	 */
+	public Color getColor(int triangle) {
+		int rgb = getRGB(triangle);
+		return rgb==NO_COLOR ? null : new Color(rgb, true);
+	}
+
+	/**
+	 * Passes every triangle of this mesh to the given consumer in order.
+	 * @param consumer the consumer of the triangles
+	 * @throws IOException if the consumer throws it
+	 */
+	public void forEachFacet(IFacetConsumer consumer) throws IOException {
+		int count = getTriangleCount();
+		for (int t=0;t<count;t++) {
+			consumer.accept(getNormal(t),
+					getVertex(getVertexIndex(t, 0)),
+					getVertex(getVertexIndex(t, 1)),
+					getVertex(getVertexIndex(t, 2)),
+					getColor(t));
+		}
+	}
+}
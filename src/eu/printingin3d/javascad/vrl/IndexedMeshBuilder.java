@@ -0,0 +1,173 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>Builds an {@link IndexedMesh} from triangles. The vertexes are welded on the epsilon grid of
+ * {@link eu.printingin3d.javascad.utils.DoubleUtils} through a {@link QuantizedVertexIndex}.</p>
+ * <p>It is a {@link IFacetConsumer} too, so any facet source can be passed to it directly.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class IndexedMeshBuilder implements IFacetConsumer {
+	private final QuantizedVertexIndex vertexes = new QuantizedVertexIndex();
+	private final boolean withNormals;
+	private final boolean withColors;
+	private int[] triangles;
+	private double[] normals;
+	private int[] colors;
+	private int size = 0;
+
+	/**
+	 * Creates a builder which keeps the normals and the colors of the triangles.
+	 * @param expectedTriangles the expected number of triangles - it's only a hint for the initial capacity
+	 */
+	public IndexedMeshBuilder(int expectedTriangles) {
+		this(expectedTriangles, true, true);
+	}
+
+	/**
+	 * Creates the builder.
+	 * @param expectedTriangles the expected number of triangles - it's only a hint for the initial capacity
+	 * @param withNormals true if the normals of the triangles should be kept
+	 * @param withColors true if the colors of the triangles should be kept
+	 */
+	public IndexedMeshBuilder(int expectedTriangles, boolean withNormals, boolean withColors) {
+		int capacity = Math.max(expectedTriangles, 1);
+		this.withNormals = withNormals;
+		this.withColors = withColors;
+		this.triangles = new int[capacity*3];
+		this.normals = withNormals ? new double[capacity*3] : null;
+		this.colors = withColors ? new int[capacity] : null;
+	}
+
+	/**
+	 * Adds a triangle to the mesh.
+	 * @param normal the normal of the triangle
+	 * @param v1 the first vertex
+	 * @param v2 the second vertex
+	 * @param v3 the third vertex
+	 * @param color the color of the triangle
+	 * @return return this object to make it possible to chain more method call
+	 */
+	public IndexedMeshBuilder addTriangle(Coords3d normal, Coords3d v1, Coords3d v2, Coords3d v3, Color color) {
+		if (size*3==triangles.length) {
+			grow();
+		}
+		triangles[size*3] = vertexes.add(v1, null);
+		triangles[size*3+1] = vertexes.add(v2, null);
+		triangles[size*3+2] = vertexes.add(v3, null);
+		if (withNormals) {
+			normals[size*3] = normal.getX();
+			normals[size*3+1] = normal.getY();
+			normals[size*3+2] = normal.getZ();
+		}
+		if (withColors) {
+			colors[size] = color==null ? IndexedMesh.NO_COLOR : color.getRGB();
+		}
+		size++;
+		return this;
+	}
+
+	/**
+	 * Adds triangles given by their raw coordinates, as they are stored in a binary STL file. The normals
+	 * of the triangles are calculated from the vertexes and the triangles have no color.
+	 * @param vertexes the X, Y and Z coordinates of the three vertexes of the triangles one after the other
+	 * @param count the number of triangles to be added from the beginning of the array
+	 * @return return this object to make it possible to chain more method call
+	 */
+	public IndexedMeshBuilder addTriangles(float[] vertexes, int count) {
+		for (int t=0;t<count;t++) {
+			if (size*3==triangles.length) {
+				grow();
+			}
+			int o = t*9;
+			for (int corner=0;corner<3;corner++) {
+				int i = o+corner*3;
+				triangles[size*3+corner] = this.vertexes.add(vertexes[i], vertexes[i+1], vertexes[i+2], 0);
+			}
+			if (withNormals) {
+				double ax = vertexes[o+3]-vertexes[o];
+				double ay = vertexes[o+4]-vertexes[o+1];
+				double az = vertexes[o+5]-vertexes[o+2];
+				double bx = vertexes[o+6]-vertexes[o];
+				double by = vertexes[o+7]-vertexes[o+1];
+				double bz = vertexes[o+8]-vertexes[o+2];
+				double nx = ay*bz-az*by;
+				double ny = az*bx-ax*bz;
+				double nz = ax*by-ay*bx;
+				double length = Math.sqrt(nx*nx+ny*ny+nz*nz);
+				if (length>0.0) {
+					nx /= length;
+					ny /= length;
+					nz /= length;
+				}
+				normals[size*3] = nx;
+				normals[size*3+1] = ny;
+				normals[size*3+2] = nz;
+			}
+			if (withColors) {
+				colors[size] = 0;
+			}
+			size++;
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the given facets to the mesh.
+	 * @param facets the facets to be added
+	 * @return return this object to make it possible to chain more method call
+	 */
+	public IndexedMeshBuilder addFacets(List<Facet> facets) {
+		for (Facet facet : facets) {
+			facet.addTo(this);
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the triangles of the given polygons to the mesh.
+	 * @param polygons the polygons to be added
+	 * @return return this object to make it possible to chain more method call
+	 */
+	public IndexedMeshBuilder addPolygons(List<Polygon> polygons) {
+		for (Polygon polygon : polygons) {
+			polygon.addTo(this);
+		}
+		return this;
+	}
+
+	@Override
+	public void accept(Coords3d normal, Coords3d v1, Coords3d v2, Coords3d v3, Color color) {
+		addTriangle(normal, v1, v2, v3, color);
+	}
+
+	private void grow() {
+		int capacity = Math.max(size*2, 1);
+		triangles = Arrays.copyOf(triangles, capacity*3);
+		if (withNormals) {
+			normals = Arrays.copyOf(normals, capacity*3);
+		}
+		if (withColors) {
+			colors = Arrays.copyOf(colors, capacity);
+		}
+	}
+
+	public IndexedMesh buildIndexedMesh() {
+		int vertexCount = vertexes.size();
+		double[] coords = new double[vertexCount*3];
+		for (int i=0;i<vertexCount;i++) {
+			coords[i*3] = vertexes.getX(i);
+			coords[i*3+1] = vertexes.getY(i);
+			coords[i*3+2] = vertexes.getZ(i);
+		}
+		return new IndexedMesh(coords, Arrays.copyOf(triangles, size*3),
+				withNormals ? Arrays.copyOf(normals, size*3) : null,
+				withColors ? Arrays.copyOf(colors, size) : null);
+	}
+}
@@ -0,0 +1,150 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.utils.ParallelTasks;
+
+/**
+ * <p>Calculates the union of the translated copies of the same solid.</p>
+ * <p>The copies are grouped into clusters by their bounding boxes: copies which don't touch any other
+ * copy are simply concatenated, because their union is the same as the list of their polygons. Only the
+ * clusters of touching or overlapping copies go through the BSP based union and those clusters are
+ * calculated in parallel.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class InstancedUnion {
+	private static final double EPSILON = 0.0001;
+
+	private InstancedUnion() {
+		// prevents creating this class
+	}
+
+	/**
+	 * Creates the union of the copies of the given solid moved by the given coordinates.
+	 * @param base the solid to be copied
+	 * @param moves the translations of the copies
+	 * @return the union of the copies
+	 */
+	public static CSG union(final CSG base, Iterable<Coords3d> moves) {
+		List<Coords3d> deltas = new ArrayList<>();
+		for (Coords3d move : moves) {
+			deltas.add(move);
+		}
+		if (base.getPolygons().isEmpty() || deltas.isEmpty()) {
+			return base;
+		}
+
+		Boundaries3d b = base.getBoundaries();
+		final int n = deltas.size();
+		final double[][] min = new double[n][];
+		final double[][] max = new double[n][];
+		for (int i=0;i<n;i++) {
+			Coords3d d = deltas.get(i);
+			min[i] = new double[] {b.getX().getMin()+d.getX(), b.getY().getMin()+d.getY(), b.getZ().getMin()+d.getZ()};
+			max[i] = new double[] {b.getX().getMax()+d.getX(), b.getY().getMax()+d.getY(), b.getZ().getMax()+d.getZ()};
+		}
+
+		int[] parent = cluster(min, max);
+
+		Map<Integer, List<Coords3d>> clusters = new LinkedHashMap<>();
+		for (int i=0;i<n;i++) {
+			int root = find(parent, i);
+			List<Coords3d> members = clusters.get(Integer.valueOf(root));
+			if (members==null) {
+				members = new ArrayList<>();
+				clusters.put(Integer.valueOf(root), members);
+			}
+			members.add(deltas.get(i));
+		}
+
+		List<Callable<CSG>> tasks = new ArrayList<>(clusters.size());
+		for (final List<Coords3d> members : clusters.values()) {
+			tasks.add(new Callable<CSG>() {
+				@Override
+				public CSG call() {
+					CSG result = null;
+					for (Coords3d move : members) {
+						CSG copy = translate(base, move);
+						result = result==null ? copy : result.union(copy);
+					}
+					return result;
+				}
+			});
+		}
+		return CSG.concat(ParallelTasks.invokeAll(tasks));
+	}
+
+	private static CSG translate(CSG csg, Coords3d move) {
+		return move.isZero() ? csg : csg.translated(move);
+	}
+
+	private static int[] cluster(final double[][] min, double[][] max) {
+		int n = min.length;
+		int[] parent = new int[n];
+		Integer[] order = new Integer[n];
+		for (int i=0;i<n;i++) {
+			parent[i] = i;
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(min[o1.intValue()][0], min[o2.intValue()][0]);
+			}
+		});
+
+		List<Integer> active = new ArrayList<>();
+		for (Integer current : order) {
+			int i = current.intValue();
+			List<Integer> stillActive = new ArrayList<>(active.size()+1);
+			for (Integer other : active) {
+				int j = other.intValue();
+				if (max[j][0]+EPSILON<min[i][0]) {
+					continue;
+				}
+				stillActive.add(other);
+				if (overlaps(min, max, i, j, 1) && overlaps(min, max, i, j, 2)) {
+					join(parent, i, j);
+				}
+			}
+			stillActive.add(current);
+			active = stillActive;
+		}
+		return parent;
+	}
+
+	private static boolean overlaps(double[][] min, double[][] max, int i, int j, int axis) {
+		return min[i][axis]<=max[j][axis]+EPSILON && min[j][axis]<=max[i][axis]+EPSILON;
+	}
+
+	private static int find(int[] parent, int i) {
+		int root = i;
+		while (parent[root]!=root) {
+			root = parent[root];
+		}
+		int current = i;
+		while (parent[current]!=root) {
+			int next = parent[current];
+			parent[current] = root;
+			current = next;
+		}
+		return root;
+	}
+
+	private static void join(int[] parent, int i, int j) {
+		int a = find(parent, i);
+		int b = find(parent, j);
+		if (a!=b) {
+			parent[Math.max(a, b)] = Math.min(a, b);
+		}
+	}
+}
@@ -34,6 +34,8 @@
 package eu.printingin3d.javascad.vrl;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -98,6 +100,49 @@ public class Polygon {
     	return new Polygon(vertices, n, n.dot(a), color);
     }
 
+    /**
+     * Reads a polygon written by {@link #encode(ByteBuffer)}. The plane of the polygon is restored as
+     * it was written instead of being calculated from the vertices again, because the leading vertices
+     * of a split polygon can be nearly collinear, and the recalculated plane would not fit the others.
+     *
+     * @param buffer the buffer to read from
+     * @return the polygon read
+     */
+    public static Polygon decode(ByteBuffer buffer) {
+        Color color = new Color(buffer.getInt(), true);
+        Coords3d normal = new Coords3d(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+        double dist = buffer.getDouble();
+        int vertexCount = buffer.getInt();
+        List<Coords3d> vertices = new ArrayList<>(vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            vertices.add(new Coords3d(buffer.getDouble(), buffer.getDouble(), buffer.getDouble()));
+        }
+        return new Polygon(vertices, normal, dist, color);
+    }
+
+    /**
+     * Writes this polygon to the given buffer: its color, its plane and its vertices.
+     *
+     * @param buffer the buffer to write to - it must have {@link #getEncodedSize()} bytes remaining
+     */
+    public void encode(ByteBuffer buffer) {
+        buffer.putInt(color.getRGB());
+        buffer.putDouble(normal.getX()).putDouble(normal.getY()).putDouble(normal.getZ()).putDouble(dist);
+        buffer.putInt(vertices.size());
+        for (Coords3d v : vertices) {
+            buffer.putDouble(v.getX()).putDouble(v.getY()).putDouble(v.getZ());
+        }
+    }
+
+    /**
+     * Returns the number of bytes {@link #encode(ByteBuffer)} writes.
+     *
+     * @return the number of bytes
+     */
+    public int getEncodedSize() {
+        return 2*4 + 4*8 + vertices.size()*3*8;
+    }
+
     /**
      * Flips this polygon.
      *
@@ -111,6 +156,48 @@ public class Polygon {
         return new Polygon(newVertices, normal.inverse(), -dist, color);
     }
 
+    /**
+     * Passes the triangles of this polygon to the given consumer without creating facet objects.
+     * The polygon is split to triangles the same way as in {@link #toFacets()}.
+     *
+     * @param consumer the consumer of the triangles
+     * @throws IOException if the consumer throws it
+     */
+    public void forEachFacet(IFacetConsumer consumer) throws IOException {
+        int size = vertices.size();
+        if (size >= 3) {
+            Coords3d firstVertex = vertices.get(0);
+            for (int i = 0; i < size - 2; i++) {
+                consumer.accept(normal, firstVertex, vertices.get(i + 1), vertices.get(i + 2), color);
+            }
+        }
+    }
+
+    /**
+     * Adds the triangles of this polygon to the given mesh builder, the same triangles as
+     * {@link #forEachFacet(IFacetConsumer)} generates.
+     *
+     * @param builder the builder of the mesh
+     */
+    void addTo(IndexedMeshBuilder builder) {
+        int size = vertices.size();
+        if (size >= 3) {
+            Coords3d firstVertex = vertices.get(0);
+            for (int i = 0; i < size - 2; i++) {
+                builder.addTriangle(normal, firstVertex, vertices.get(i + 1), vertices.get(i + 2), color);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of triangles this polygon consists of.
+     *
+     * @return the number of triangles
+     */
+    public int getFacetCount() {
+        return Math.max(0, vertices.size() - 2);
+    }
+
     public List<Facet> toFacets() {
     	List<Facet> facets = new ArrayList<>();
         if (this.vertices.size() >= 3) {
@@ -149,6 +236,26 @@ public class Polygon {
     	return transform.isMirror() ? result.flip() : result;
     }
     
+    /**
+     * Returns a translated copy of this polygon. It is a cheaper version of
+     * {@link #transformed(ITransformation)} for translations, because the normal
+     * of the polygon does not change.
+     *
+     * <b>Note:</b> this polygon is not modified
+     *
+     * @param delta the translation to apply
+     * @return a translated copy of this polygon
+     */
+    public Polygon translated(Coords3d delta) {
+    	List<Coords3d> newVertices = new ArrayList<>(vertices.size());
+    	
+    	for (Coords3d v : vertices) {
+    		newVertices.add(v.move(delta));
+    	}
+    	
+    	return new Polygon(newVertices, normal, dist+normal.dot(delta), color);
+    }
+    
     private VertexPosition calculateVertexPosition(Coords3d v) {
         double t = this.normal.dot(v) - this.dist;
         return VertexPosition.fromSquareDistance(t);
@@ -267,4 +374,8 @@ public class Polygon {
 	public List<Coords3d> getVertices() {
 		return vertices;
 	}
+
+	public Color getColor() {
+		return color;
+	}
 }
@@ -0,0 +1,162 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.utils.DoubleUtils;
+
+/**
+ * <p>Assigns indexes to the distinct colored vertexes of a mesh. Two vertexes are the same if they have
+ * the same color and their coordinates are quantized to the same grid point, see
+ * {@link DoubleUtils#quantize(double)}.</p>
+ * <p>The vertexes are stored in primitive arrays and found by an open addressing hash table, so adding a
+ * vertex doesn't create any objects. The indexes are given in the order the vertexes were first added
+ * and the coordinates of the first occurrence are kept.</p>
+ * <p>The object is not thread safe.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class QuantizedVertexIndex {
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private long[] keys = new long[INITIAL_CAPACITY*3];
+	private int[] colors = new int[INITIAL_CAPACITY];
+	private double[] coords = new double[INITIAL_CAPACITY*3];
+	private int size = 0;
+
+	/** slot -> index+1 of the vertex, 0 means empty */
+	private int[] table = new int[INITIAL_CAPACITY*2];
+
+	/**
+	 * Returns the index of the given vertex. If the vertex is not in the index yet it is added
+	 * with the next free index.
+	 * @param c the coordinates of the vertex
+	 * @param color the color of the vertex
+	 * @return the index of the vertex
+	 */
+	public int add(Coords3d c, Color color) {
+		return add(c.getX(), c.getY(), c.getZ(), color==null ? 0 : color.getRGB());
+	}
+
+	/**
+	 * Returns the index of the given vertex. If the vertex is not in the index yet it is added
+	 * with the next free index.
+	 * @param x the X coordinate of the vertex
+	 * @param y the Y coordinate of the vertex
+	 * @param z the Z coordinate of the vertex
+	 * @param rgb the color of the vertex in the format of {@link Color#getRGB()}
+	 * @return the index of the vertex
+	 */
+	public int add(double x, double y, double z, int rgb) {
+		long qx = DoubleUtils.quantize(x);
+		long qy = DoubleUtils.quantize(y);
+		long qz = DoubleUtils.quantize(z);
+
+		int mask = table.length-1;
+		int slot = hash(qx, qy, qz, rgb) & mask;
+		while (true) {
+			int entry = table[slot];
+			if (entry==0) {
+				break;
+			}
+			int i = entry-1;
+			if (keys[i*3]==qx && keys[i*3+1]==qy && keys[i*3+2]==qz && colors[i]==rgb) {
+				return i;
+			}
+			slot = (slot+1) & mask;
+		}
+
+		int index = size;
+		ensureCapacity(index+1);
+		keys[index*3] = qx;
+		keys[index*3+1] = qy;
+		keys[index*3+2] = qz;
+		coords[index*3] = x;
+		coords[index*3+1] = y;
+		coords[index*3+2] = z;
+		colors[index] = rgb;
+		size++;
+
+		if (size*2>table.length) {
+			rehash(table.length*2);
+		} else {
+			table[slot] = index+1;
+		}
+		return index;
+	}
+
+	private static int hash(long qx, long qy, long qz, int rgb) {
+		long h = qx*0x9E3779B97F4A7C15L;
+		h = (h ^ qy)*0xC2B2AE3D27D4EB4FL;
+		h = (h ^ qz)*0x165667B19E3779F9L;
+		h ^= rgb;
+		h ^= h >>> 29;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity>colors.length) {
+			int newCapacity = Math.max(capacity, colors.length*2);
+			keys = Arrays.copyOf(keys, newCapacity*3);
+			coords = Arrays.copyOf(coords, newCapacity*3);
+			colors = Arrays.copyOf(colors, newCapacity);
+		}
+	}
+
+	private void rehash(int tableSize) {
+		table = new int[tableSize];
+		int mask = tableSize-1;
+		for (int i=0;i<size;i++) {
+			int slot = hash(keys[i*3], keys[i*3+1], keys[i*3+2], colors[i]) & mask;
+			while (table[slot]!=0) {
+				slot = (slot+1) & mask;
+			}
+			table[slot] = i+1;
+		}
+	}
+
+	/**
+	 * Returns the number of distinct vertexes.
+	 * @return the number of distinct vertexes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the X coordinate of the vertex with the given index.
+	 * @param index the index of the vertex
+	 * @return the X coordinate
+	 */
+	public double getX(int index) {
+		return coords[index*3];
+	}
+
+	/**
+	 * Returns the Y coordinate of the vertex with the given index.
+	 * @param index the index of the vertex
+	 * @return the Y coordinate
+	 */
+	public double getY(int index) {
+		return coords[index*3+1];
+	}
+
+	/**
+	 * Returns the Z coordinate of the vertex with the given index.
+	 * @param index the index of the vertex
+	 * @return the Z coordinate
+	 */
+	public double getZ(int index) {
+		return coords[index*3+2];
+	}
+
+	/**
+	 * Returns the color of the vertex with the given index in the format of {@link Color#getRGB()}.
+	 * @param index the index of the vertex
+	 * @return the color
+	 */
+	public int getRGB(int index) {
+		return colors[index];
+	}
+}
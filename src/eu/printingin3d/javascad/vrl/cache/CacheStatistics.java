@@ -0,0 +1,66 @@
+package eu.printingin3d.javascad.vrl.cache;
+
+/**
+ * Immutable snapshot of the usage statistics of a {@link ICSGCache}.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class CacheStatistics {
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final int entries;
+	private final long weight;
+
+	/**
+	 * Creates the object.
+	 * @param hits the number of successful lookups
+	 * @param misses the number of unsuccessful lookups
+	 * @param evictions the number of entries removed to keep the cache in its limit
+	 * @param entries the number of entries currently stored
+	 * @param weight the total weight of the entries currently stored - it is the number of polygons
+	 * 		for the in-memory cache and the number of bytes for the on-disk cache
+	 */
+	public CacheStatistics(long hits, long misses, long evictions, int entries, long weight) {
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.entries = entries;
+		this.weight = weight;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public int getEntries() {
+		return entries;
+	}
+
+	public long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Calculates the rate of the successful lookups.
+	 * @return the rate of the successful lookups between 0 and 1 or 0 if there was no lookup
+	 */
+	public double getHitRate() {
+		long total = hits+misses;
+		return total==0 ? 0.0 : (double) hits/total;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStatistics [hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+				+ ", entries=" + entries + ", weight=" + weight + "]";
+	}
+}
@@ -0,0 +1,248 @@
+package eu.printingin3d.javascad.vrl.cache;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.printingin3d.javascad.exceptions.IllegalValueException;
+import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.AtomicFile;
+import eu.printingin3d.javascad.utils.StructuralHash;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.Polygon;
+
+/**
+ * <p>Persistent cache of CSG objects, which stores every entry in a separate binary file named after
+ * its key in the given directory. Because the key is the hash of the model and the context, the
+ * directory can be shared between runs and even between processes running at the same time.</p>
+ * <p>The files are written to a temporary file first and moved to their final name atomically, so
+ * readers never see partially written entries. The polygons are stored with their planes, so they are
+ * restored exactly. The entries generated by an other {@link #GENERATOR_VERSION} are misses. If the
+ * total size of the files exceeds the limit the least recently used files are deleted.</p>
+ * <p>The cache is best effort: any I/O problem results a cache miss instead of an exception.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class DiskCSGCache implements ICSGCache {
+	/**
+	 * The version of the CSG generation. It is stored in every entry and the entries written by other
+	 * versions are misses, so it has to be increased whenever the same models and context generate a
+	 * different CSG than before - for example the tessellation of the primitives or the CSG operations
+	 * change - otherwise the cache would keep serving the meshes generated by the previous version.
+	 */
+	public static final int GENERATOR_VERSION = 1;
+
+	private static final String EXTENSION = ".csg";
+	private static final int MAGIC = 0x4A534347; // JSCG
+	private static final int VERSION = 3;
+	private static final int HEADER_SIZE = 4*4;
+
+	private static final FileFilter ENTRY_FILTER = new FileFilter() {
+		@Override
+		public boolean accept(File file) {
+			return file.isFile() && file.getName().endsWith(EXTENSION);
+		}
+	};
+
+	private final File directory;
+	private final long maxBytes;
+	private final AtomicLong totalBytes = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates the cache using the given directory. The directory is created if it doesn't exist yet,
+	 * the entries already in it are used.
+	 * @param directory the directory where the entries are stored
+	 * @param maxBytes the maximum total size of the files in bytes - should be positive
+	 * @throws IllegalValueException if the directory is null or can't be created or the limit is not positive
+	 */
+	public DiskCSGCache(File directory, long maxBytes) throws IllegalValueException {
+		AssertValue.isNotNull(directory, "The directory of the cache should not be null!");
+		AssertValue.isTrue(maxBytes>0, "The size limit of the cache should be positive, but was "+maxBytes);
+		AssertValue.isTrue(directory.isDirectory() || directory.mkdirs(),
+				"The directory of the cache cannot be created: "+directory);
+
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.totalBytes.set(sumSize(listEntries()));
+	}
+
+	private File getFile(StructuralHash key) {
+		return new File(directory, key.toHex()+EXTENSION);
+	}
+
+	@Override
+	public CSG get(StructuralHash key) {
+		File file = getFile(key);
+		CSG result = null;
+		if (file.isFile()) {
+			try {
+				result = read(file.toPath());
+				// marks the entry as recently used for the eviction
+				file.setLastModified(System.currentTimeMillis());
+			} catch (IOException | RuntimeException e) {
+				// corrupt, outdated or concurrently deleted entry - it is a miss
+				file.delete();
+			}
+		}
+		(result==null ? misses : hits).incrementAndGet();
+		return result;
+	}
+
+	@Override
+	public void put(StructuralHash key, CSG csg) {
+		File file = getFile(key);
+		ByteBuffer buffer = encode(csg);
+		if (buffer.remaining()>maxBytes) {
+			return;
+		}
+
+		try {
+			AtomicFile atomicFile = new AtomicFile(file);
+			try {
+				FileChannel channel = FileChannel.open(atomicFile.getTempFile().toPath(), StandardOpenOption.WRITE);
+				try {
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+				} finally {
+					channel.close();
+				}
+
+				long oldSize = file.length();
+				atomicFile.commit();
+
+				if (totalBytes.addAndGet(file.length()-oldSize)>maxBytes) {
+					evict();
+				}
+			} finally {
+				atomicFile.close();
+			}
+		} catch (IOException e) {
+			// the cache is only an optimization, failing to store an entry is not an error
+		}
+	}
+
+	private synchronized void evict() {
+		List<File> files = listEntries();
+		long size = sumSize(files);
+		final long[] lastModified = new long[files.size()];
+		Integer[] order = new Integer[files.size()];
+		for (int i=0;i<files.size();i++) {
+			lastModified[i] = files.get(i).lastModified();
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Long.compare(lastModified[o1.intValue()], lastModified[o2.intValue()]);
+			}
+		});
+		for (Integer i : order) {
+			if (size<=maxBytes) {
+				break;
+			}
+			File file = files.get(i.intValue());
+			long length = file.length();
+			if (file.delete()) {
+				size -= length;
+				evictions.incrementAndGet();
+			}
+		}
+		totalBytes.set(size);
+	}
+
+	@Override
+	public synchronized void clear() {
+		for (File file : listEntries()) {
+			file.delete();
+		}
+		totalBytes.set(sumSize(listEntries()));
+	}
+
+	@Override
+	public CacheStatistics getStatistics() {
+		List<File> files = listEntries();
+		return new CacheStatistics(hits.get(), misses.get(), evictions.get(), files.size(), sumSize(files));
+	}
+
+	private List<File> listEntries() {
+		File[] files = directory.listFiles(ENTRY_FILTER);
+		return files==null ? new ArrayList<File>() : Arrays.asList(files);
+	}
+
+	private static long sumSize(List<File> files) {
+		long result = 0;
+		for (File file : files) {
+			result += file.length();
+		}
+		return result;
+	}
+
+	private static ByteBuffer encode(CSG csg) {
+		List<Polygon> polygons = csg.getPolygons();
+		int size = HEADER_SIZE;
+		for (Polygon p : polygons) {
+			size += p.getEncodedSize();
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(GENERATOR_VERSION).putInt(polygons.size());
+		for (Polygon p : polygons) {
+			p.encode(buffer);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static CSG read(Path path) throws IOException {
+		ByteBuffer buffer;
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size>Integer.MAX_VALUE) {
+				throw new IOException("Too big cache entry: "+path);
+			}
+			// read to the heap instead of mapping, so the file can be deleted or replaced right away
+			buffer = ByteBuffer.allocate((int)size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer)<0) {
+					throw new IOException("Truncated cache entry: "+path);
+				}
+			}
+			buffer.flip();
+		} finally {
+			channel.close();
+		}
+
+		try {
+			if (buffer.getInt()!=MAGIC || buffer.getInt()!=VERSION) {
+				throw new IOException("Invalid cache entry: "+path);
+			}
+			if (buffer.getInt()!=GENERATOR_VERSION) {
+				throw new IOException("Cache entry of an other generator version: "+path);
+			}
+			int count = buffer.getInt();
+			List<Polygon> polygons = new ArrayList<>(count);
+			for (int i=0;i<count;i++) {
+				polygons.add(Polygon.decode(buffer));
+			}
+			return new CSG(polygons);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated cache entry: "+path, e);
+		}
+	}
+}
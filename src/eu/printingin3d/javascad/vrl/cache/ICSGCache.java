@@ -0,0 +1,38 @@
+package eu.printingin3d.javascad.vrl.cache;
+
+import eu.printingin3d.javascad.utils.StructuralHash;
+import eu.printingin3d.javascad.vrl.CSG;
+
+/**
+ * <p>Stores already evaluated CSG objects by a key which identifies the model and the context
+ * it was evaluated in.</p>
+ * <p>The implementations have to be thread safe.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public interface ICSGCache {
+	/**
+	 * Returns the CSG stored with the given key.
+	 * @param key the key of the CSG
+	 * @return the CSG found or null if there is no CSG stored with the key
+	 */
+	CSG get(StructuralHash key);
+
+	/**
+	 * Stores the CSG with the given key. The cache is free to drop this or any other entries.
+	 * @param key the key of the CSG
+	 * @param csg the CSG to be stored
+	 */
+	void put(StructuralHash key, CSG csg);
+
+	/**
+	 * Removes every entry from the cache.
+	 */
+	void clear();
+
+	/**
+	 * Returns with the current statistics of the cache.
+	 * @return the current statistics of the cache
+	 */
+	CacheStatistics getStatistics();
+}
@@ -0,0 +1,88 @@
+package eu.printingin3d.javascad.vrl.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.StructuralHash;
+import eu.printingin3d.javascad.vrl.CSG;
+
+/**
+ * <p>In-memory least recently used cache of CSG objects. The size of the cache is limited by the total
+ * number of polygons stored, not by the number of entries, so a few huge objects can't push out
+ * everything else unnoticed and many small objects don't waste the limit.</p>
+ * <p>The object is thread safe.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class MemoryCSGCache implements ICSGCache {
+	private final long maxPolygons;
+	private final LinkedHashMap<StructuralHash, CSG> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long weight = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates an empty cache.
+	 * @param maxPolygons the maximum number of polygons the cache can hold - should be positive
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the limit is not positive
+	 */
+	public MemoryCSGCache(long maxPolygons) {
+		AssertValue.isTrue(maxPolygons>0, "The size limit of the cache should be positive, but was "+maxPolygons);
+
+		this.maxPolygons = maxPolygons;
+	}
+
+	@Override
+	public CSG get(StructuralHash key) {
+		CSG result;
+		synchronized (this) {
+			result = entries.get(key);
+		}
+		(result==null ? misses : hits).incrementAndGet();
+		return result;
+	}
+
+	@Override
+	public void put(StructuralHash key, CSG csg) {
+		long csgWeight = weightOf(csg);
+		if (csgWeight>maxPolygons) {
+			return;
+		}
+		synchronized (this) {
+			CSG old = entries.put(key, csg);
+			if (old!=null) {
+				weight -= weightOf(old);
+			}
+			weight += csgWeight;
+
+			Iterator<Map.Entry<StructuralHash, CSG>> it = entries.entrySet().iterator();
+			while (weight>maxPolygons && it.hasNext()) {
+				Map.Entry<StructuralHash, CSG> eldest = it.next();
+				weight -= weightOf(eldest.getValue());
+				it.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	@Override
+	public synchronized CacheStatistics getStatistics() {
+		return new CacheStatistics(hits.get(), misses.get(), evictions.get(), entries.size(), weight);
+	}
+
+	private static long weightOf(CSG csg) {
+		// even an empty CSG takes some space
+		return Math.max(1, csg.getPolygons().size());
+	}
+}
@@ -0,0 +1,84 @@
+package eu.printingin3d.javascad.vrl.cache;
+
+import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.StructuralHash;
+import eu.printingin3d.javascad.vrl.CSG;
+
+/**
+ * <p>Combines a fast and a slow cache, typically a {@link MemoryCSGCache} and a {@link DiskCSGCache}.
+ * The slow cache is only asked if the fast one doesn't have the entry and the entries found there
+ * are copied to the fast cache. New entries are stored in both.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class TieredCSGCache implements ICSGCache {
+	private final ICSGCache fast;
+	private final ICSGCache slow;
+
+	/**
+	 * Creates the object.
+	 * @param fast the cache asked first
+	 * @param slow the cache asked when the first one doesn't contain the entry
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if any of the parameters is null
+	 */
+	public TieredCSGCache(ICSGCache fast, ICSGCache slow) {
+		AssertValue.isNotNull(fast, "The fast cache should not be null!");
+		AssertValue.isNotNull(slow, "The slow cache should not be null!");
+
+		this.fast = fast;
+		this.slow = slow;
+	}
+
+	@Override
+	public CSG get(StructuralHash key) {
+		CSG result = fast.get(key);
+		if (result==null) {
+			result = slow.get(key);
+			if (result!=null) {
+				fast.put(key, result);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void put(StructuralHash key, CSG csg) {
+		fast.put(key, csg);
+		slow.put(key, csg);
+	}
+
+	@Override
+	public void clear() {
+		fast.clear();
+		slow.clear();
+	}
+
+	/**
+	 * Returns with the statistics of the combined cache: a hit on either level counts as a hit, only the
+	 * misses of the slow cache are real misses. The entries and the weight are of the slow cache.
+	 * @return the statistics of the combined cache
+	 */
+	@Override
+	public CacheStatistics getStatistics() {
+		CacheStatistics f = fast.getStatistics();
+		CacheStatistics s = slow.getStatistics();
+		return new CacheStatistics(f.getHits()+s.getHits(), s.getMisses(), f.getEvictions()+s.getEvictions(),
+				s.getEntries(), s.getWeight());
+	}
+
+	/**
+	 * Returns with the cache asked first.
+	 * @return the cache asked first
+	 */
+	public ICSGCache getFast() {
+		return fast;
+	}
+
+	/**
+	 * Returns with the cache asked when the first one doesn't contain the entry.
+	 * @return the cache asked second
+	 */
+	public ICSGCache getSlow() {
+		return slow;
+	}
+}
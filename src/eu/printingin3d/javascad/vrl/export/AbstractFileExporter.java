@@ -0,0 +1,66 @@
+package eu.printingin3d.javascad.vrl.export;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.coords.Triangle3d;
+import eu.printingin3d.javascad.models.IModel;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.Facet;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.IFacetConsumer;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
+
+/**
+ * Base class of the exporters of this package. Besides the list of facets required by
+ * {@link IFileExporter} it can export a whole CSG, which the exporters override to stream the triangles
+ * without building the list of facets, and an {@link IndexedMesh}. The exporters implementing only
+ * {@link IFileExporter} can extend this class to get the export of the CSG and the models too.
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public abstract class AbstractFileExporter implements IFileExporter {
+	
+	/**
+	 * Exports the given CSG to file. This implementation passes the facets of the CSG to
+	 * {@link #writeToFile(List)}, the subclasses can override it to generate the triangles on
+	 * demand and write them as they come.
+	 * @param csg the CSG to export
+	 * @throws IOException if any IO error happens during the export.
+	 */
+	public void writeToFile(CSG csg) throws IOException {
+		writeToFile(csg.toFacets());
+	}
+	
+	/**
+	 * Exports the given indexed mesh to file. See the {@link CSG#toIndexedMesh() CSG.toIndexedMesh()} method.
+	 * This implementation passes the triangles of the mesh as facets to {@link #writeToFile(List)}, the
+	 * subclasses can override it to write the shared vertexes of the mesh directly.
+	 * @param mesh the mesh to export
+	 * @throws IOException if any IO error happens during the export.
+	 */
+	public void writeToFile(IndexedMesh mesh) throws IOException {
+		final List<Facet> facets = new ArrayList<>(mesh.getTriangleCount());
+		mesh.forEachFacet(new IFacetConsumer() {
+			@Override
+			public void accept(Coords3d normal, Coords3d v1, Coords3d v2, Coords3d v3, Color color) {
+				facets.add(new Facet(new Triangle3d(v1, v2, v3), normal, color));
+			}
+		});
+		writeToFile(facets);
+	}
+	
+	/**
+	 * Evaluates the given model and exports it to file. This implementation writes the CSG of the model
+	 * by {@link #writeToFile(CSG)}, the exporters which can reference the same mesh more times override it
+	 * to evaluate and write the repeated parts of the model only once.
+	 * @param model the model to export
+	 * @param context the context used for the evaluation of the model
+	 * @throws IOException if any IO error happens during the export.
+	 */
+	public void writeModel(IModel model, FacetGenerationContext context) throws IOException {
+		writeToFile(model.toCSG(context));
+	}
+}
@@ -0,0 +1,92 @@
+package eu.printingin3d.javascad.vrl.export;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.utils.FixedDecimalEncoder;
+
+/**
+ * <p>A buffered writer for the text exporters which writes ASCII text directly into a reusable byte
+ * buffer. The numbers are encoded by {@link FixedDecimalEncoder} without creating strings, so the
+ * coordinates are written exactly the same way as {@link eu.printingin3d.javascad.utils.DoubleUtils#formatDouble(double)}
+ * would format them.</p>
+ * <p>Only ASCII characters are supported, any other character is written as a question mark.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+class AsciiWriter implements Closeable {
+	private static final int BUFFER_SIZE = 64*1024;
+
+	private final OutputStream out;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private final char[] digits = new char[FixedDecimalEncoder.MAX_LENGTH];
+	private int size = 0;
+
+	AsciiWriter(File file) throws IOException {
+		this.out = new FileOutputStream(file);
+	}
+
+	AsciiWriter write(String text) throws IOException {
+		int length = text.length();
+		for (int i=0;i<length;i++) {
+			write(text.charAt(i));
+		}
+		return this;
+	}
+
+	AsciiWriter write(char c) throws IOException {
+		if (size==buffer.length) {
+			flushBuffer();
+		}
+		buffer[size++] = c<128 ? (byte)c : (byte)'?';
+		return this;
+	}
+
+	AsciiWriter write(double value) throws IOException {
+		return writeDigits(FixedDecimalEncoder.encode(value, digits, 0));
+	}
+
+	AsciiWriter write(int value) throws IOException {
+		// every int is exactly representable as a double and written without a decimal point
+		return writeDigits(FixedDecimalEncoder.encode(value, digits, 0));
+	}
+
+	/**
+	 * Writes the three coordinates separated by spaces.
+	 * @param c the coordinates to be written
+	 * @return this object
+	 * @throws IOException if any IO error happens
+	 */
+	AsciiWriter write(Coords3d c) throws IOException {
+		return write(c.getX()).write(' ').write(c.getY()).write(' ').write(c.getZ());
+	}
+
+	private AsciiWriter writeDigits(int length) throws IOException {
+		if (size+length>buffer.length) {
+			flushBuffer();
+		}
+		for (int i=0;i<length;i++) {
+			buffer[size++] = (byte)digits[i];
+		}
+		return this;
+	}
+
+	private void flushBuffer() throws IOException {
+		out.write(buffer, 0, size);
+		size = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flushBuffer();
+		}
+		finally {
+			out.close();
+		}
+	}
+}
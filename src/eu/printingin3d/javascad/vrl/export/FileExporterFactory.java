@@ -14,6 +14,10 @@ import eu.printingin3d.javascad.exceptions.UnknownFileExtensionException;
  *     .createExporter(new File("path/to/the/file/file.ext"))
  *     .writeToFile(object.toCSG().toFacets());
  *	</pre></blockquote>
+ * The exporters created by this class are {@link AbstractFileExporter}s, so they can export a whole model
+ * by {@link AbstractFileExporter#writeModel(eu.printingin3d.javascad.models.IModel,
+ * eu.printingin3d.javascad.vrl.FacetGenerationContext) writeModel()} too, which writes the repeated parts
+ * only once in the formats supporting it.
  * @author Ivan
  *
  */
@@ -21,9 +25,10 @@ public class FileExporterFactory {
 	
 	/**
 	 * Creates a {@link eu.printingin3d.javascad.vrl.export.IFileExporter file exporter} based on the extension of the 
-	 * supplied file. The currently known extensions are {@code stl} and {@code ply}. The result will be a 
-	 * {@link eu.printingin3d.javascad.vrl.export.StlBinaryFile binary STL exporter} for the former one and a 
-	 * {@link eu.printingin3d.javascad.vrl.export.PolygonFile Polygon exporter} for the latter.
+	 * supplied file. The currently known extensions are {@code stl}, {@code ply} and {@code 3mf}. The result will be a 
+	 * {@link eu.printingin3d.javascad.vrl.export.StlBinaryFile binary STL exporter} for the first one, a 
+	 * {@link eu.printingin3d.javascad.vrl.export.PolygonFile Polygon exporter} for the second and a
+	 * {@link eu.printingin3d.javascad.vrl.export.ThreeMfFile 3MF exporter} for the last one.
 	 * @param file the file to be used
 	 * @return an exporter to export the model to the given file
 	 * @throws UnknownFileExtensionException if the extension of the given file is unknown
@@ -37,6 +42,36 @@ public class FileExporterFactory {
 		if (path.endsWith(".ply")) {
 			return new PolygonFile(file);
 		}
+		if (path.endsWith(".3mf")) {
+			return new ThreeMfFile(file);
+		}
+		
+		throw new UnknownFileExtensionException("Unknown file extension: "+file.getPath());
+	}
+	
+	/**
+	 * Creates a {@link eu.printingin3d.javascad.vrl.export.IFileExporter file exporter} based on the extension of the 
+	 * supplied file and the requested encoding. The currently known extensions are {@code stl}, {@code ply}
+	 * and {@code 3mf}. The binary exporters are {@link StlBinaryFile} and {@link PlyBinaryFile}, the text
+	 * exporters are {@link StlTextFile} and {@link PolygonFile}. The {@link ThreeMfFile 3MF exporter} is
+	 * used for both encodings.
+	 * @param file the file to be used
+	 * @param binary true if the binary version of the format should be written
+	 * @return an exporter to export the model to the given file
+	 * @throws UnknownFileExtensionException if the extension of the given file is unknown
+	 */
+	public static IFileExporter createExporter(File file, boolean binary) {
+		String path = file.getPath().toLowerCase();
+		
+		if (path.endsWith(".stl")) {
+			return binary ? new StlBinaryFile(file) : new StlTextFile(file);
+		}
+		if (path.endsWith(".ply")) {
+			return binary ? new PlyBinaryFile(file) : new PolygonFile(file);
+		}
+		if (path.endsWith(".3mf")) {
+			return new ThreeMfFile(file);
+		}
 		
 		throw new UnknownFileExtensionException("Unknown file extension: "+file.getPath());
 	}
@@ -6,7 +6,8 @@ import java.util.List;
 import eu.printingin3d.javascad.vrl.Facet;
 
 /**
- * An interface used to export facets to file. The interface is implemented by all exporters.
+ * An interface used to export facets to file. The interface is implemented by all exporters, the
+ * exporters of this library extend {@link AbstractFileExporter}.
  * @author Ivan
  *
  */
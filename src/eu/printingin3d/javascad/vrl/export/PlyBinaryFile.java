@@ -0,0 +1,110 @@
+package eu.printingin3d.javascad.vrl.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.Facet;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
+import eu.printingin3d.javascad.vrl.QuantizedVertexIndex;
+
+/**
+ * <p>Exports the facets to binary little endian PLY format with colored vertexes.</p>
+ * <p>The vertexes are welded by their position and the colors of the faces using them in one pass
+ * over the triangles, without building an {@link IndexedMesh} first. The vertexes and the faces are
+ * written through a reusable direct buffer.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class PlyBinaryFile extends AbstractFileExporter {
+	private static final int VERTEX_SIZE = 3*4+3;
+	private static final int FACE_SIZE = 1+3*4;
+	private static final int BUFFER_SIZE = 1024*1024;
+
+	private final File file;
+
+	public PlyBinaryFile(File file) {
+		this.file = file;
+	}
+
+	@Override
+	public void writeToFile(List<Facet> facets) throws IOException {
+		write(PlyMesh.of(facets));
+	}
+
+	@Override
+	public void writeToFile(CSG csg) throws IOException {
+		write(PlyMesh.of(csg));
+	}
+
+	@Override
+	public void writeToFile(IndexedMesh mesh) throws IOException {
+		write(PlyMesh.of(mesh));
+	}
+
+	private void write(PlyMesh plyMesh) throws IOException {
+		QuantizedVertexIndex vertexes = plyMesh.getVertexes();
+		int faceCount = plyMesh.getFaceCount();
+
+		String header = "ply\n"+
+				"format binary_little_endian 1.0\n"+
+				"element vertex "+vertexes.size()+"\n"+
+				"property float x\n"+
+				"property float y\n"+
+				"property float z\n"+
+				"property uchar red\n"+
+				"property uchar green\n"+
+				"property uchar blue\n"+
+				"element face "+faceCount+"\n"+
+				"property list uchar int vertex_index\n"+
+				"end_header\n";
+
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.put(header.getBytes(StandardCharsets.US_ASCII));
+
+			for (int i=0;i<vertexes.size();i++) {
+				if (buffer.remaining()<VERTEX_SIZE) {
+					flush(channel, buffer);
+				}
+				int rgb = vertexes.getRGB(i);
+				buffer.putFloat((float)vertexes.getX(i))
+					.putFloat((float)vertexes.getY(i))
+					.putFloat((float)vertexes.getZ(i))
+					.put((byte)(rgb >> 16))
+					.put((byte)(rgb >> 8))
+					.put((byte)rgb);
+			}
+
+			for (int i=0;i<faceCount;i++) {
+				if (buffer.remaining()<FACE_SIZE) {
+					flush(channel, buffer);
+				}
+				buffer.put((byte)3)
+					.putInt(plyMesh.getVertexIndex(i, 0))
+					.putInt(plyMesh.getVertexIndex(i, 1))
+					.putInt(plyMesh.getVertexIndex(i, 2));
+			}
+			flush(channel, buffer);
+		}
+		finally {
+			channel.close();
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
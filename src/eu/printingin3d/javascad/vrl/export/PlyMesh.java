@@ -0,0 +1,79 @@
+package eu.printingin3d.javascad.vrl.export;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.Facet;
+import eu.printingin3d.javascad.vrl.IFacetConsumer;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
+import eu.printingin3d.javascad.vrl.QuantizedVertexIndex;
+
+/**
+ * The mesh as the PLY exporters write it: PLY stores the colors on the vertexes, so the vertexes are
+ * welded by their position and the color of the triangles using them. The facets and the CSGs are
+ * welded in one pass as their triangles come, without building an {@link IndexedMesh} first.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class PlyMesh implements IFacetConsumer {
+	private final QuantizedVertexIndex vertexes = new QuantizedVertexIndex();
+	private int[] faces;
+	private int size = 0;
+
+	private PlyMesh(int expectedFaces) {
+		this.faces = new int[Math.max(expectedFaces, 1)*3];
+	}
+
+	static PlyMesh of(List<Facet> facets) throws IOException {
+		PlyMesh result = new PlyMesh(facets.size());
+		for (Facet facet : facets) {
+			facet.passTo(result);
+		}
+		return result;
+	}
+
+	static PlyMesh of(CSG csg) throws IOException {
+		PlyMesh result = new PlyMesh(csg.getFacetCount());
+		csg.forEachFacet(result);
+		return result;
+	}
+
+	static PlyMesh of(IndexedMesh mesh) {
+		int triangleCount = mesh.getTriangleCount();
+		PlyMesh result = new PlyMesh(triangleCount);
+		for (int t=0;t<triangleCount;t++) {
+			int rgb = mesh.getRGB(t);
+			for (int corner=0;corner<3;corner++) {
+				int v = mesh.getVertexIndex(t, corner);
+				result.faces[result.size++] = result.vertexes.add(mesh.getX(v), mesh.getY(v), mesh.getZ(v), rgb);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void accept(Coords3d normal, Coords3d v1, Coords3d v2, Coords3d v3, Color color) {
+		if (size+3>faces.length) {
+			faces = Arrays.copyOf(faces, faces.length*2);
+		}
+		faces[size++] = vertexes.add(v1, color);
+		faces[size++] = vertexes.add(v2, color);
+		faces[size++] = vertexes.add(v3, color);
+	}
+
+	QuantizedVertexIndex getVertexes() {
+		return vertexes;
+	}
+
+	int getFaceCount() {
+		return size/3;
+	}
+
+	int getVertexIndex(int face, int corner) {
+		return faces[face*3+corner];
+	}
+}
@@ -2,81 +2,93 @@ package eu.printingin3d.javascad.vrl.export;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.util.ArrayList;
 import java.util.List;
 
-import eu.printingin3d.javascad.utils.DoubleUtils;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.utils.FixedDecimalEncoder;
+import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.Facet;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
+import eu.printingin3d.javascad.vrl.QuantizedVertexIndex;
 import eu.printingin3d.javascad.vrl.Vertex;
-import eu.printingin3d.javascad.vrl.VertexMap;
 
-public class PolygonFile implements IFileExporter {
+public class PolygonFile extends AbstractFileExporter {
 	private final File file;
 	
 	public PolygonFile(File file) {
 		this.file = file;
 	}
-
+	
 	@Override
 	public void writeToFile(List<Facet> facets) throws IOException {
-		List<Vertex> vertexes = new ArrayList<>();
-		for (Facet f : facets) {
-			vertexes.addAll(f.getVertexes());
-		}
-		
-		VertexMap map = new VertexMap(vertexes);
-		
-		List<Vertex> sortedList = map.getVertexList();
+		write(PlyMesh.of(facets));
+	}
+
+	@Override
+	public void writeToFile(CSG csg) throws IOException {
+		write(PlyMesh.of(csg));
+	}
+	
+	@Override
+	public void writeToFile(IndexedMesh mesh) throws IOException {
+		write(PlyMesh.of(mesh));
+	}
+	
+	private void write(PlyMesh plyMesh) throws IOException {
+		QuantizedVertexIndex vertexes = plyMesh.getVertexes();
 		
-		PrintStream ps = new PrintStream(file);
+		AsciiWriter writer = new AsciiWriter(file);
 		
 		try {
 			// fix header
-			ps.println("ply");
-			ps.println("format ascii 1.0");
+			writer.write("ply\n");
+			writer.write("format ascii 1.0\n");
 			// elements headers
 			// vertexes are store the coordinates and the color
-			ps.println("element vertex "+sortedList.size());
-			ps.println("property float x");
-			ps.println("property float y");
-			ps.println("property float z");
-			ps.println("property uchar red");
-			ps.println("property uchar green");
-			ps.println("property uchar blue");
+			writer.write("element vertex ").write(vertexes.size()).write('\n');
+			writer.write("property float x\n");
+			writer.write("property float y\n");
+			writer.write("property float z\n");
+			writer.write("property uchar red\n");
+			writer.write("property uchar green\n");
+			writer.write("property uchar blue\n");
 			// faces are a list of coordinate indexes
-			ps.println("element face "+facets.size());
-			ps.println("property list uchar int vertex_index");
+			writer.write("element face ").write(plyMesh.getFaceCount()).write('\n');
+			writer.write("property list uchar int vertex_index\n");
 			// end_header
-			ps.println("end_header");
+			writer.write("end_header\n");
 			
 			// list of vertexes
-			for (Vertex v : sortedList) {
-				ps.println(vertexToString(v) );
+			for (int i=0;i<vertexes.size();i++) {
+				int rgb = vertexes.getRGB(i);
+				writer.write(vertexes.getX(i)).write(' ')
+					.write(vertexes.getY(i)).write(' ')
+					.write(vertexes.getZ(i)).write(' ')
+					.write((rgb >> 16) & 0xFF).write(' ')
+					.write((rgb >> 8) & 0xFF).write(' ')
+					.write(rgb & 0xFF).write('\n');
 			}
 			
-			for (Facet f : facets) {
-				StringBuffer sb = new StringBuffer();
-				List<Vertex> fvertexes = f.getVertexes();
-				sb.append(fvertexes.size()).append(' ');
-				for (Vertex v : fvertexes) {
-					sb.append(map.findIndex(v)).append(' ');
-				}
-				ps.println(sb.toString());
+			for (int i=0;i<plyMesh.getFaceCount();i++) {
+				writer.write(3).write(' ')
+					.write(plyMesh.getVertexIndex(i, 0)).write(' ')
+					.write(plyMesh.getVertexIndex(i, 1)).write(' ')
+					.write(plyMesh.getVertexIndex(i, 2)).write(" \n");
 			}
 		}
 		finally {
-			ps.close();
+			writer.close();
 		}
 	}
 
 	public static String vertexToString(Vertex v) {
-		return 
-			DoubleUtils.formatDouble(v.getCoords().getX())+" "+
-			DoubleUtils.formatDouble(v.getCoords().getY())+" "+
-			DoubleUtils.formatDouble(v.getCoords().getZ())+" "+
-			v.getColor().getRed()+" "+
-			v.getColor().getGreen()+" "+
-			v.getColor().getBlue();
+		Coords3d c = v.getCoords();
+		StringBuilder sb = new StringBuilder();
+		FixedDecimalEncoder.append(sb, c.getX()).append(' ');
+		FixedDecimalEncoder.append(sb, c.getY()).append(' ');
+		FixedDecimalEncoder.append(sb, c.getZ()).append(' ');
+		return sb.append(v.getColor().getRed()).append(' ')
+			.append(v.getColor().getGreen()).append(' ')
+			.append(v.getColor().getBlue()).toString();
 	}
 }
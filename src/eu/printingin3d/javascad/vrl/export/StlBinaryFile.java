@@ -1,41 +1,315 @@
 package eu.printingin3d.javascad.vrl.export;
 
+import java.awt.Color;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.utils.MappedBuffers;
+import eu.printingin3d.javascad.utils.ParallelTasks;
+import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.Facet;
+import eu.printingin3d.javascad.vrl.IFacetConsumer;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
+import eu.printingin3d.javascad.vrl.Polygon;
 import eu.printingin3d.javascad.vrl.Vertex;
 
-public class StlBinaryFile implements IFileExporter {
+/**
+ * <p>Exports the facets to binary STL format.</p>
+ * <p>The records are collected in a large reusable direct buffer which is written to the file through
+ * a {@link FileChannel} when it is full. Alternatively the file can be memory mapped: the size of the
+ * file is known from the number of facets in advance, so the records are written straight into the
+ * mapped file. The mapping is released as soon as the file is written.</p>
+ * <p>In parallel mode the CSG is split into chunks of polygons. The records have a fixed size, so the
+ * position of every chunk in the file is known from the number of facets before it: the chunks are
+ * encoded at the same time into their own buffers - or directly into their region of the mapped file -
+ * and the result is exactly the same as the sequential one.</p>
+ * 
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class StlBinaryFile extends AbstractFileExporter {
+	private static final int HEADER_SIZE = 84;
+	private static final int FACET_SIZE = 50;
+	private static final int BUFFER_SIZE = FACET_SIZE*16*1024;
+	private static final int CHUNK_FACETS = 16*1024;
+	
 	private final File file;
+	private final boolean memoryMapped;
+	private final boolean parallel;
 	
+	/**
+	 * Creates the exporter which writes the file through a buffer.
+	 * @param file the file to be written
+	 */
 	public StlBinaryFile(File file) {
+		this(file, false);
+	}
+	
+	/**
+	 * Creates the exporter.
+	 * @param file the file to be written
+	 * @param memoryMapped true if the file should be memory mapped instead of written through a buffer -
+	 * 		files bigger than 2GB are always written through a buffer
+	 */
+	public StlBinaryFile(File file, boolean memoryMapped) {
+		this(file, memoryMapped, false);
+	}
+	
+	/**
+	 * Creates the exporter.
+	 * @param file the file to be written
+	 * @param memoryMapped true if the file should be memory mapped instead of written through a buffer -
+	 * 		files bigger than 2GB are always written through a buffer
+	 * @param parallel true if the facets of a CSG should be encoded on more threads at the same time
+	 */
+	public StlBinaryFile(File file, boolean memoryMapped, boolean parallel) {
 		this.file = file;
+		this.memoryMapped = memoryMapped;
+		this.parallel = parallel;
+	}
+	
+	/**
+	 * Writes the binary STL records of the triangles to the buffer. If the writer has a channel the
+	 * buffer is written to the channel whenever it is full, otherwise the buffer is the mapped file itself.
+	 */
+	private static final class FacetWriter implements IFacetConsumer {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		
+		private FacetWriter(FileChannel channel, ByteBuffer buffer) {
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public void accept(Coords3d normal, Coords3d v1, Coords3d v2, Coords3d v3, Color color)
+				throws IOException {
+			if (channel!=null && buffer.remaining()<FACET_SIZE) {
+				flush();
+			}
+			put(normal);
+			put(v1);
+			put(v2);
+			put(v3);
+			buffer.putShort((short)0);
+		}
+		
+		private void put(Coords3d c) {
+			buffer.putFloat((float)c.getX()).putFloat((float)c.getY()).putFloat((float)c.getZ());
+		}
+		
+		private void flush() throws IOException {
+			if (channel!=null) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				buffer.clear();
+			}
+		}
+		
+		/**
+		 * Releases the mapped file, the writer can't be used afterwards.
+		 */
+		private void release() {
+			if (channel==null) {
+				MappedBuffers.unmap(buffer);
+			}
+		}
+	}
+	
+	private FacetWriter open(FileChannel channel, int facetCount) throws IOException {
+		long size = HEADER_SIZE + (long)FACET_SIZE*facetCount;
+		ByteBuffer buffer;
+		if (memoryMapped && size<=Integer.MAX_VALUE) {
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			channel = null;
+		} else {
+			buffer = ByteBuffer.allocateDirect((int)Math.min(size, BUFFER_SIZE));
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(new byte[80]);
+		buffer.putInt(facetCount);
+		return new FacetWriter(channel, buffer);
+	}
+	
+	private FileChannel openChannel() throws IOException {
+		return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
 	}
 
 	@Override
 	public void writeToFile(List<Facet> facets) throws IOException {
-    	FileOutputStream out = new FileOutputStream(file);
-    	try {
-	    	out.write(new byte[80]);
-	    	
-	    	out.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(facets.size()).array());
-	    	
-	    	for (Facet facet : facets) {
-	    		out.write(facetToBinaryStl(facet));
-	    	}
-    	}
-    	finally {
-	    	out.close();
-    	}
+		FileChannel channel = openChannel();
+		try {
+			FacetWriter writer = open(channel, facets.size());
+			try {
+				for (Facet facet : facets) {
+					facet.passTo(writer);
+				}
+				writer.flush();
+			}
+			finally {
+				writer.release();
+			}
+		}
+		finally {
+			channel.close();
+		}
+	}
+
+	@Override
+	public void writeToFile(CSG csg) throws IOException {
+		FileChannel channel = openChannel();
+		try {
+			if (parallel) {
+				writeParallel(channel, csg);
+			} else {
+				FacetWriter writer = open(channel, csg.getFacetCount());
+				try {
+					csg.forEachFacet(writer);
+					writer.flush();
+				}
+				finally {
+					writer.release();
+				}
+			}
+		}
+		finally {
+			channel.close();
+		}
+	}
+	
+	@Override
+	public void writeToFile(IndexedMesh mesh) throws IOException {
+		FileChannel channel = openChannel();
+		try {
+			FacetWriter writer = open(channel, mesh.getTriangleCount());
+			try {
+				mesh.forEachFacet(writer);
+				writer.flush();
+			}
+			finally {
+				writer.release();
+			}
+		}
+		finally {
+			channel.close();
+		}
+	}
+	
+	private void writeParallel(FileChannel channel, CSG csg) throws IOException {
+		List<Polygon> polygons = csg.getPolygons();
+		int facetCount = csg.getFacetCount();
+		long size = HEADER_SIZE + (long)FACET_SIZE*facetCount;
+		
+		ByteBuffer mapped = null;
+		ByteBuffer header;
+		if (memoryMapped && size<=Integer.MAX_VALUE) {
+			mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			header = mapped.duplicate();
+		} else {
+			header = ByteBuffer.allocate(HEADER_SIZE);
+		}
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		header.put(new byte[80]);
+		header.putInt(facetCount);
+		if (mapped==null) {
+			header.flip();
+			writeFully(channel, header, 0);
+		}
+		
+		List<Callable<IOException>> tasks = new ArrayList<>();
+		int from = 0;
+		int chunkFacets = 0;
+		long position = HEADER_SIZE;
+		for (int i=0;i<polygons.size();i++) {
+			chunkFacets += polygons.get(i).getFacetCount();
+			if (chunkFacets>=CHUNK_FACETS || i==polygons.size()-1) {
+				tasks.add(new ChunkWriter(channel, mapped, polygons.subList(from, i+1), position, chunkFacets));
+				position += (long)FACET_SIZE*chunkFacets;
+				from = i+1;
+				chunkFacets = 0;
+			}
+		}
+		
+		IOException exception = null;
+		for (IOException e : ParallelTasks.invokeAll(tasks)) {
+			if (e!=null && exception==null) {
+				exception = e;
+			}
+		}
+		// invokeAll returns only when every chunk has finished, so nothing uses the mapping any more - if it
+		// throws, some chunks may still be running and the mapping is left to the garbage collector
+		MappedBuffers.unmap(mapped);
+		if (exception!=null) {
+			throw exception;
+		}
+	}
+	
+	/**
+	 * Encodes the facets of a chunk of polygons and writes them to their place in the file.
+	 */
+	private static final class ChunkWriter implements Callable<IOException> {
+		private final FileChannel channel;
+		private final ByteBuffer mapped;
+		private final List<Polygon> polygons;
+		private final long position;
+		private final int facetCount;
+		
+		private ChunkWriter(FileChannel channel, ByteBuffer mapped, List<Polygon> polygons, long position,
+				int facetCount) {
+			this.channel = channel;
+			this.mapped = mapped;
+			this.polygons = polygons;
+			this.position = position;
+			this.facetCount = facetCount;
+		}
+		
+		@Override
+		public IOException call() {
+			try {
+				ByteBuffer buffer;
+				if (mapped==null) {
+					buffer = ByteBuffer.allocate(FACET_SIZE*facetCount);
+				} else {
+					buffer = mapped.duplicate();
+					buffer.position((int)position);
+				}
+				buffer.order(ByteOrder.LITTLE_ENDIAN);
+				
+				FacetWriter writer = new FacetWriter(null, buffer);
+				for (Polygon p : polygons) {
+					p.forEachFacet(writer);
+				}
+				
+				if (mapped==null) {
+					buffer.flip();
+					writeFully(channel, buffer, position);
+				}
+				return null;
+			} catch (IOException e) {
+				return e;
+			}
+		}
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long p = position;
+		while (buffer.hasRemaining()) {
+			p += channel.write(buffer, p);
+		}
 	}
 	
 	public static byte[] facetToBinaryStl(Facet facet) throws IOException {
-		ByteBuffer byteBuffer = ByteBuffer.allocate(50).order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer byteBuffer = ByteBuffer.allocate(FACET_SIZE).order(ByteOrder.LITTLE_ENDIAN);
 		
 		byteBuffer.put(facet.getNormal().toByteArray());
 		
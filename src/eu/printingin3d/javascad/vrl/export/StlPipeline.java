@@ -0,0 +1,459 @@
+package eu.printingin3d.javascad.vrl.export;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.ShapeInstances;
+import eu.printingin3d.javascad.models.ShapeInstances.Instance;
+import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.AtomicFile;
+import eu.printingin3d.javascad.utils.ParallelTasks;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.IFacetConsumer;
+import eu.printingin3d.javascad.vrl.Polygon;
+
+/**
+ * <p>Exports to binary STL format in a pipeline, so the evaluation, the encoding and the writing of
+ * the file overlap each other:</p>
+ * <ul>
+ * <li>the parts are evaluated in parallel on a pool of threads,</li>
+ * <li>the calling thread triangulates and encodes the parts in the order they are finished into a
+ * fixed number of buffers,</li>
+ * <li>and a writer thread writes the filled buffers to the file.</li>
+ * </ul>
+ * <p>If every buffer is waiting for the writer the encoding stops until one is written, so the memory
+ * used by the encoded data is capped by the number and the size of the buffers. Only a limited number
+ * of parts are evaluated ahead of the encoder, so the memory used by the evaluated parts is capped
+ * too. The number of facets is known only at the end, so the header is written at the end too.</p>
+ * <p>The parts are not unioned with each other: they must be disjoint, which is ensured by
+ * {@link #writeModel(Abstract3dModel, FacetGenerationContext)} by unioning the instances whose
+ * boundaries overlap, see {@link ShapeInstances#joinOverlapping(List)}.</p>
+ * <p>The file is written to a temporary file next to it, which replaces the file only if everything
+ * has been written, so a failed export never leaves a half written file behind.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class StlPipeline {
+	private static final int HEADER_SIZE = 84;
+	private static final int FACET_SIZE = 50;
+	private static final int BUFFER_SIZE = FACET_SIZE*16*1024;
+	private static final int DEFAULT_BUFFER_COUNT = 4;
+	/**
+	 * The number of parts which can be evaluated ahead of the encoder.
+	 */
+	private static final int PENDING_PARTS = 2*Runtime.getRuntime().availableProcessors();
+	/**
+	 * Marks the end of the stream of the filled buffers.
+	 */
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	private static final class PoolHolder {
+		private static final ExecutorService POOL = Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors(), ParallelTasks.daemonThreadFactory("javascad-export"));
+	}
+
+	private final File file;
+	private final int bufferCount;
+	private final Executor executor;
+
+	/**
+	 * Creates the pipeline with the default number of buffers and a shared pool of daemon threads.
+	 * @param file the file to be written
+	 */
+	public StlPipeline(File file) {
+		this(file, DEFAULT_BUFFER_COUNT, PoolHolder.POOL);
+	}
+
+	/**
+	 * Creates the pipeline.
+	 * @param file the file to be written
+	 * @param bufferCount the number of buffers used for the encoded facets, at least two
+	 * @param executor the executor used for the evaluation of the parts
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the buffer count is less
+	 * 		than two or the executor is null
+	 */
+	public StlPipeline(File file, int bufferCount, Executor executor) {
+		AssertValue.isTrue(bufferCount>=2, "At least two buffers are needed, but was "+bufferCount+"!");
+		AssertValue.isNotNull(executor, "The executor should not be null!");
+
+		this.file = file;
+		this.bufferCount = bufferCount;
+		this.executor = executor;
+	}
+
+	/**
+	 * An evaluated part of the model and the positions it should be written to.
+	 */
+	private static final class Part {
+		private final CSG csg;
+		private final List<Coords3d> offsets;
+
+		private Part(CSG csg, List<Coords3d> offsets) {
+			this.csg = csg;
+			this.offsets = offsets;
+		}
+	}
+
+	/**
+	 * Writes the given model. The model is split into shapes (see {@link ShapeInstances}) and the
+	 * instances of the shapes whose boundaries overlap are joined into clusters. The shapes are evaluated
+	 * once in parallel and the instances which don't overlap anything are written as soon as their shape
+	 * is ready, while the instances of a cluster are unioned with each other first. A model which can't be
+	 * split - it isn't a union - is a single shape, in that case only the encoding and the writing overlap.
+	 * @param model the model to be written
+	 * @param context the context used for the evaluation
+	 * @throws IOException if any IO error happens during the write
+	 */
+	public void writeModel(Abstract3dModel model, FacetGenerationContext context) throws IOException {
+		List<ShapeInstances> shapes = ShapeInstances.collect(model, context);
+		Map<ShapeInstances, FutureTask<CSG>> evaluations = new HashMap<>();
+		for (final ShapeInstances shape : shapes) {
+			evaluations.put(shape, new FutureTask<>(new Callable<CSG>() {
+				@Override
+				public CSG call() {
+					return shape.toCSG();
+				}
+			}));
+		}
+
+		Map<ShapeInstances, List<Coords3d>> separated = new LinkedHashMap<>();
+		List<Callable<Part>> parts = new ArrayList<>();
+		for (List<Instance> cluster : ShapeInstances.joinOverlapping(shapes)) {
+			if (cluster.size()==1) {
+				Instance instance = cluster.get(0);
+				List<Coords3d> offsets = separated.get(instance.getShape());
+				if (offsets==null) {
+					offsets = new ArrayList<>();
+					separated.put(instance.getShape(), offsets);
+				}
+				offsets.add(instance.getOffset());
+			} else {
+				parts.add(new UnionPart(cluster, evaluations));
+			}
+		}
+		for (Map.Entry<ShapeInstances, List<Coords3d>> e : separated.entrySet()) {
+			final FutureTask<CSG> evaluation = evaluations.get(e.getKey());
+			final List<Coords3d> offsets = e.getValue();
+			parts.add(new Callable<Part>() {
+				@Override
+				public Part call() {
+					return new Part(evaluate(evaluation), offsets);
+				}
+			});
+		}
+		writeParts(parts);
+	}
+
+	/**
+	 * Unions the instances of a cluster at their positions.
+	 */
+	private static final class UnionPart implements Callable<Part> {
+		private final List<Instance> cluster;
+		private final Map<ShapeInstances, FutureTask<CSG>> evaluations;
+
+		private UnionPart(List<Instance> cluster, Map<ShapeInstances, FutureTask<CSG>> evaluations) {
+			this.cluster = cluster;
+			this.evaluations = evaluations;
+		}
+
+		@Override
+		public Part call() {
+			CSG result = null;
+			for (Instance instance : cluster) {
+				CSG csg = evaluate(evaluations.get(instance.getShape())).translated(instance.getOffset());
+				result = result==null ? csg : result.union(csg);
+			}
+			return new Part(result, Collections.singletonList(Coords3d.ZERO));
+		}
+	}
+
+	/**
+	 * Returns the CSG of a shape which can be needed by more parts. The part which needs it first
+	 * evaluates it, the others wait for it - running a task which is already started or done is a no-op.
+	 */
+	private static CSG evaluate(FutureTask<CSG> evaluation) {
+		evaluation.run();
+		return ParallelTasks.join(evaluation);
+	}
+
+	/**
+	 * Writes the given disjoint parts. The parts are evaluated in parallel and written in the order they
+	 * are finished.
+	 * @param parts the tasks calculating the parts
+	 * @throws IOException if any IO error happens during the write
+	 */
+	public void write(List<? extends Callable<CSG>> parts) throws IOException {
+		List<Callable<Part>> tasks = new ArrayList<>(parts.size());
+		for (final Callable<CSG> part : parts) {
+			tasks.add(new Callable<Part>() {
+				@Override
+				public Part call() throws Exception {
+					return new Part(part.call(), Collections.singletonList(Coords3d.ZERO));
+				}
+			});
+		}
+		writeParts(tasks);
+	}
+
+	private void writeParts(List<Callable<Part>> parts) throws IOException {
+		AtomicFile atomicFile = new AtomicFile(file);
+		try {
+			FileChannel channel = FileChannel.open(atomicFile.getTempFile().toPath(), StandardOpenOption.WRITE);
+			try {
+				writeParts(channel, parts);
+			}
+			finally {
+				channel.close();
+			}
+			atomicFile.commit();
+		}
+		finally {
+			atomicFile.close();
+		}
+	}
+
+	private void writeParts(FileChannel channel, List<Callable<Part>> parts) throws IOException {
+		CompletionService<Part> completion = new ExecutorCompletionService<>(executor);
+		Set<Future<Part>> outstanding = new HashSet<>();
+		Iterator<Callable<Part>> pending = parts.iterator();
+		while (outstanding.size()<PENDING_PARTS && pending.hasNext()) {
+			outstanding.add(completion.submit(pending.next()));
+		}
+
+		boolean finished = false;
+		try {
+			BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(bufferCount);
+			for (int i=0;i<bufferCount;i++) {
+				free.add(ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+			}
+			BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(bufferCount+1);
+			FutureTask<IOException> writer = new FutureTask<>(new Writer(channel, free, filled));
+			ParallelTasks.daemonThreadFactory("javascad-stl-writer").newThread(writer).start();
+
+			Encoder encoder = new Encoder(free, filled);
+			try {
+				for (int i=0;i<parts.size();i++) {
+					Future<Part> done = takeUninterruptibly(completion);
+					outstanding.remove(done);
+					Part part = ParallelTasks.join(done);
+					// the next part is submitted only when one is taken, so the evaluated parts waiting
+					// for the encoder never use more memory than PENDING_PARTS of them
+					if (pending.hasNext()) {
+						outstanding.add(completion.submit(pending.next()));
+					}
+					for (Coords3d offset : part.offsets) {
+						encoder.offset = offset;
+						for (Polygon polygon : part.csg.getPolygons()) {
+							polygon.forEachFacet(encoder);
+						}
+					}
+				}
+				encoder.handOver();
+			}
+			finally {
+				putUninterruptibly(filled, END);
+			}
+
+			IOException exception = ParallelTasks.join(writer);
+			if (exception!=null) {
+				throw exception;
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.put(new byte[80]).putInt(encoder.facetCount).flip();
+			writeFully(channel, header, 0);
+			finished = true;
+		}
+		finally {
+			if (!finished) {
+				// the result is thrown away, so the parts still being evaluated are not needed anymore
+				for (Future<Part> f : outstanding) {
+					f.cancel(true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Encodes the facets into the current buffer and hands it over to the writer when it is full.
+	 */
+	private static final class Encoder implements IFacetConsumer {
+		private final BlockingQueue<ByteBuffer> free;
+		private final BlockingQueue<ByteBuffer> filled;
+		private ByteBuffer buffer;
+		private Coords3d offset = Coords3d.ZERO;
+		private int facetCount = 0;
+
+		private Encoder(BlockingQueue<ByteBuffer> free, BlockingQueue<ByteBuffer> filled) throws IOException {
+			this.free = free;
+			this.filled = filled;
+			this.buffer = take(free);
+		}
+
+		@Override
+		public void accept(Coords3d normal, Coords3d v1, Coords3d v2, Coords3d v3, Color color)
+				throws IOException {
+			if (buffer.remaining()<FACET_SIZE) {
+				handOver();
+				buffer = take(free);
+			}
+			buffer.putFloat((float)normal.getX()).putFloat((float)normal.getY()).putFloat((float)normal.getZ());
+			put(v1);
+			put(v2);
+			put(v3);
+			buffer.putShort((short)0);
+			facetCount++;
+		}
+
+		private void put(Coords3d c) {
+			buffer.putFloat((float)(c.getX()+offset.getX()))
+				.putFloat((float)(c.getY()+offset.getY()))
+				.putFloat((float)(c.getZ()+offset.getZ()));
+		}
+
+		private void handOver() throws IOException {
+			buffer.flip();
+			try {
+				filled.put(buffer);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the writer");
+			}
+		}
+	}
+
+	/**
+	 * Writes the filled buffers to the file one after the other and gives them back to the encoder.
+	 * After an error the buffers are still given back, so the encoder never waits forever.
+	 */
+	private static final class Writer implements Callable<IOException> {
+		private final FileChannel channel;
+		private final BlockingQueue<ByteBuffer> free;
+		private final BlockingQueue<ByteBuffer> filled;
+
+		private Writer(FileChannel channel, BlockingQueue<ByteBuffer> free, BlockingQueue<ByteBuffer> filled) {
+			this.channel = channel;
+			this.free = free;
+			this.filled = filled;
+		}
+
+		@Override
+		public IOException call() {
+			IOException exception = null;
+			long position = HEADER_SIZE;
+			while (true) {
+				ByteBuffer buffer = takeUninterruptibly(filled);
+				if (buffer==END) {
+					return exception;
+				}
+				if (exception==null) {
+					try {
+						int length = buffer.remaining();
+						writeFully(channel, buffer, position);
+						position += length;
+					} catch (IOException e) {
+						exception = e;
+					}
+				}
+				buffer.clear();
+				free.add(buffer);
+			}
+		}
+	}
+
+	private static ByteBuffer take(BlockingQueue<ByteBuffer> queue) throws IOException {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a free buffer");
+		}
+	}
+
+	private static <T> T takeUninterruptibly(BlockingQueue<T> queue) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return queue.take();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static <T> Future<T> takeUninterruptibly(CompletionService<T> completion) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return completion.take();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static <T> void putUninterruptibly(BlockingQueue<T> queue, T value) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					queue.put(value);
+					return;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long p = position;
+		while (buffer.hasRemaining()) {
+			p += channel.write(buffer, p);
+		}
+	}
+}
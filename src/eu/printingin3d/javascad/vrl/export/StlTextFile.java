@@ -1,13 +1,16 @@
 package eu.printingin3d.javascad.vrl.export;
 
-import java.io.BufferedWriter;
+import java.awt.Color;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.List;
 
+import eu.printingin3d.javascad.coords.Coords3d;
 import eu.printingin3d.javascad.enums.OutputFormat;
+import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.Facet;
+import eu.printingin3d.javascad.vrl.IFacetConsumer;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
 import eu.printingin3d.javascad.vrl.Vertex;
 
 /**
@@ -15,26 +18,77 @@ import eu.printingin3d.javascad.vrl.Vertex;
  * @author Ivan
  *
  */
-public class StlTextFile implements IFileExporter {
+public class StlTextFile extends AbstractFileExporter {
 	private final File file;
 	
 	public StlTextFile(File file) {
 		this.file = file;
 	}
+	
+	private static final class FacetWriter implements IFacetConsumer {
+		private final AsciiWriter writer;
+		
+		private FacetWriter(AsciiWriter writer) {
+			this.writer = writer;
+		}
+		
+		@Override
+		public void accept(Coords3d normal, Coords3d v1, Coords3d v2, Coords3d v3, Color color)
+				throws IOException {
+			writer.write("  facet normal ").write(normal).write("\n    outer loop\n");
+			writeVertex(v1);
+			writeVertex(v2);
+			writeVertex(v3);
+			writer.write("    endloop\n  endfacet\n");
+		}
+		
+		private void writeVertex(Coords3d v) throws IOException {
+			writer.write("    vertex ").write(v).write('\n');
+		}
+	}
 
 	@Override
 	public void writeToFile(List<Facet> facets) throws IOException {
-		BufferedWriter bw = new BufferedWriter(new FileWriter(file));
+		AsciiWriter aw = new AsciiWriter(file);
 		
 		try { 
-	        bw.write("solid v3d.csg\n");
+	        aw.write("solid v3d.csg\n");
+	        FacetWriter writer = new FacetWriter(aw);
 	        for (Facet facet : facets) {
-	        	bw.write(facetToStlString(facet));
+	        	facet.passTo(writer);
 	        }
-	        bw.write("endsolid v3d.csg\n");
+	        aw.write("endsolid v3d.csg\n");
+		}
+		finally {
+			aw.close();
+		}
+	}
+
+	@Override
+	public void writeToFile(CSG csg) throws IOException {
+		AsciiWriter aw = new AsciiWriter(file);
+		
+		try { 
+	        aw.write("solid v3d.csg\n");
+	        csg.forEachFacet(new FacetWriter(aw));
+	        aw.write("endsolid v3d.csg\n");
+		}
+		finally {
+			aw.close();
+		}
+	}
+	
+	@Override
+	public void writeToFile(IndexedMesh mesh) throws IOException {
+		AsciiWriter aw = new AsciiWriter(file);
+		
+		try { 
+	        aw.write("solid v3d.csg\n");
+	        mesh.forEachFacet(new FacetWriter(aw));
+	        aw.write("endsolid v3d.csg\n");
 		}
 		finally {
-			bw.close();
+			aw.close();
 		}
 	}
 	
@@ -0,0 +1,287 @@
+package eu.printingin3d.javascad.vrl.export;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.IModel;
+import eu.printingin3d.javascad.models.ShapeInstances;
+import eu.printingin3d.javascad.models.ShapeInstances.Instance;
+import eu.printingin3d.javascad.utils.FixedDecimalEncoder;
+import eu.printingin3d.javascad.utils.ParallelTasks;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.Facet;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
+import eu.printingin3d.javascad.vrl.IndexedMeshBuilder;
+
+/**
+ * <p>Exports the facets to 3MF format. The colors of the facets are written as base materials, the
+ * facets without color are written without properties.</p>
+ * <p>A CSG is written as one mesh object, but a model exported by
+ * {@link #writeModel(Abstract3dModel, FacetGenerationContext)} is split into
+ * {@link ShapeInstances shapes}: every distinct shape is evaluated and written only once and its copies
+ * are build items referencing the same mesh with a translation, while the overlapping copies are unioned
+ * into one mesh. The triangles which became degenerate by welding their vertexes are not written.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class ThreeMfFile extends AbstractFileExporter {
+	private static final String MODEL_PATH = "3D/3dmodel.model";
+	private static final String CORE_NAMESPACE = "http://schemas.microsoft.com/3dmanufacturing/core/2015/02";
+	private static final String MODEL_RELATIONSHIP =
+			"http://schemas.microsoft.com/3dmanufacturing/2013/01/3dmodel";
+	private static final int MATERIALS_ID = 1;
+
+	private final File file;
+
+	public ThreeMfFile(File file) {
+		this.file = file;
+	}
+
+	@Override
+	public void writeToFile(List<Facet> facets) throws IOException {
+		writeToFile(new IndexedMeshBuilder(facets.size()).addFacets(facets).buildIndexedMesh());
+	}
+
+	@Override
+	public void writeToFile(CSG csg) throws IOException {
+		writeToFile(csg.toIndexedMesh());
+	}
+
+	@Override
+	public void writeToFile(IndexedMesh mesh) throws IOException {
+		write(Collections.singletonList(mesh), Collections.singletonList(Collections.singletonList(Coords3d.ZERO)));
+	}
+
+	/**
+	 * Writes the given model to the file with instancing: every distinct shape of the model is evaluated
+	 * in parallel once, the copies of the shapes are written as translated build items referencing the
+	 * same mesh. The instances whose boundaries overlap are unioned with each other and written as one
+	 * mesh, so the file contains the same solid as the CSG of the model.
+	 * @param model the model to be written
+	 * @param context the context used for the evaluation of the model
+	 * @throws IOException if any IO error happens during the write
+	 */
+	public void writeModel(Abstract3dModel model, FacetGenerationContext context) throws IOException {
+		List<ShapeInstances> shapes = ShapeInstances.collect(model, context);
+		List<Callable<CSG>> evaluations = new ArrayList<>(shapes.size());
+		for (final ShapeInstances shape : shapes) {
+			evaluations.add(new Callable<CSG>() {
+				@Override
+				public CSG call() {
+					return shape.toCSG();
+				}
+			});
+		}
+		final Map<ShapeInstances, CSG> csgs = new HashMap<>();
+		List<CSG> evaluated = ParallelTasks.invokeAll(evaluations);
+		for (int i=0;i<shapes.size();i++) {
+			csgs.put(shapes.get(i), evaluated.get(i));
+		}
+
+		Map<ShapeInstances, List<Coords3d>> separated = new LinkedHashMap<>();
+		List<Callable<IndexedMesh>> tasks = new ArrayList<>();
+		List<List<Coords3d>> offsets = new ArrayList<>();
+		for (final List<Instance> cluster : ShapeInstances.joinOverlapping(shapes)) {
+			if (cluster.size()==1) {
+				Instance instance = cluster.get(0);
+				List<Coords3d> shapeOffsets = separated.get(instance.getShape());
+				if (shapeOffsets==null) {
+					shapeOffsets = new ArrayList<>();
+					separated.put(instance.getShape(), shapeOffsets);
+				}
+				shapeOffsets.add(instance.getOffset());
+			} else {
+				tasks.add(new Callable<IndexedMesh>() {
+					@Override
+					public IndexedMesh call() {
+						CSG result = null;
+						for (Instance instance : cluster) {
+							CSG csg = csgs.get(instance.getShape()).translated(instance.getOffset());
+							result = result==null ? csg : result.union(csg);
+						}
+						return result.toIndexedMesh();
+					}
+				});
+				offsets.add(Collections.singletonList(Coords3d.ZERO));
+			}
+		}
+		for (Map.Entry<ShapeInstances, List<Coords3d>> e : separated.entrySet()) {
+			final CSG csg = csgs.get(e.getKey());
+			tasks.add(new Callable<IndexedMesh>() {
+				@Override
+				public IndexedMesh call() {
+					return csg.toIndexedMesh();
+				}
+			});
+			offsets.add(e.getValue());
+		}
+		write(ParallelTasks.invokeAll(tasks), offsets);
+	}
+
+	/**
+	 * Writes the given model to the file. The 3D models are written with instancing, see
+	 * {@link #writeModel(Abstract3dModel, FacetGenerationContext)}, the other models as one mesh object.
+	 * @param model the model to be written
+	 * @param context the context used for the evaluation of the model
+	 * @throws IOException if any IO error happens during the write
+	 */
+	@Override
+	public void writeModel(IModel model, FacetGenerationContext context) throws IOException {
+		if (model instanceof Abstract3dModel) {
+			writeModel((Abstract3dModel)model, context);
+		} else {
+			super.writeModel(model, context);
+		}
+	}
+
+	private void write(List<IndexedMesh> meshes, List<List<Coords3d>> offsets) throws IOException {
+		ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+
+			zip.putNextEntry(new ZipEntry("[Content_Types].xml"));
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"+
+					"<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">\n"+
+					" <Default Extension=\"rels\" "+
+						"ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>\n"+
+					" <Default Extension=\"model\" "+
+						"ContentType=\"application/vnd.ms-package.3dmanufacturing-3dmodel+xml\"/>\n"+
+					"</Types>\n");
+			writer.flush();
+			zip.closeEntry();
+
+			zip.putNextEntry(new ZipEntry("_rels/.rels"));
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"+
+					"<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">\n"+
+					" <Relationship Target=\"/"+MODEL_PATH+"\" Id=\"rel0\" Type=\""+MODEL_RELATIONSHIP+"\"/>\n"+
+					"</Relationships>\n");
+			writer.flush();
+			zip.closeEntry();
+
+			zip.putNextEntry(new ZipEntry(MODEL_PATH));
+			writeModel(writer, meshes, offsets);
+			writer.flush();
+			zip.closeEntry();
+		}
+		finally {
+			zip.close();
+		}
+	}
+
+	private static void writeModel(Writer writer, List<IndexedMesh> meshes, List<List<Coords3d>> offsets)
+			throws IOException {
+		Map<Integer, Integer> materials = new LinkedHashMap<>();
+		for (IndexedMesh mesh : meshes) {
+			for (int i=0;i<mesh.getTriangleCount();i++) {
+				if (mesh.getRGB(i)!=IndexedMesh.NO_COLOR) {
+					Integer rgb = Integer.valueOf(displayColor(mesh, i));
+					if (!materials.containsKey(rgb)) {
+						materials.put(rgb, Integer.valueOf(materials.size()));
+					}
+				}
+			}
+		}
+
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"+
+				"<model unit=\"millimeter\" xml:lang=\"en-US\" xmlns=\""+CORE_NAMESPACE+"\">\n"+
+				" <resources>\n");
+		if (!materials.isEmpty()) {
+			writer.write("  <basematerials id=\""+MATERIALS_ID+"\">\n");
+			for (Integer rgb : materials.keySet()) {
+				writer.write("   <base name=\"color"+materials.get(rgb)+"\" displaycolor=\""+
+						String.format("#%06X", rgb)+"\"/>\n");
+			}
+			writer.write("  </basematerials>\n");
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (int m=0;m<meshes.size();m++) {
+			IndexedMesh mesh = meshes.get(m);
+
+			writer.write("  <object id=\""+objectId(m)+"\" type=\"model\"");
+			if (hasColoredTriangle(mesh)) {
+				// the triangles with properties require the default property of the object
+				writer.write(" pid=\""+MATERIALS_ID+"\" pindex=\"0\"");
+			}
+			writer.write(">\n   <mesh>\n    <vertices>\n");
+			for (int i=0;i<mesh.getVertexCount();i++) {
+				sb.setLength(0);
+				FixedDecimalEncoder.append(sb.append("     <vertex x=\""), mesh.getX(i));
+				FixedDecimalEncoder.append(sb.append("\" y=\""), mesh.getY(i));
+				FixedDecimalEncoder.append(sb.append("\" z=\""), mesh.getZ(i)).append("\"/>\n");
+				writer.append(sb);
+			}
+			writer.write("    </vertices>\n    <triangles>\n");
+			for (int i=0;i<mesh.getTriangleCount();i++) {
+				int v1 = mesh.getVertexIndex(i, 0);
+				int v2 = mesh.getVertexIndex(i, 1);
+				int v3 = mesh.getVertexIndex(i, 2);
+				if (v1==v2 || v2==v3 || v3==v1) {
+					// the 3MF specification forbids the triangles with repeated vertexes
+					continue;
+				}
+				sb.setLength(0);
+				sb.append("     <triangle v1=\"").append(v1)
+					.append("\" v2=\"").append(v2)
+					.append("\" v3=\"").append(v3).append('"');
+				if (mesh.getRGB(i)!=IndexedMesh.NO_COLOR) {
+					sb.append(" pid=\"").append(MATERIALS_ID)
+						.append("\" p1=\"").append(materials.get(Integer.valueOf(displayColor(mesh, i)))).append('"');
+				}
+				sb.append("/>\n");
+				writer.append(sb);
+			}
+			writer.write("    </triangles>\n   </mesh>\n  </object>\n");
+		}
+		writer.write(" </resources>\n <build>\n");
+
+		for (int m=0;m<meshes.size();m++) {
+			for (Coords3d offset : offsets.get(m)) {
+				sb.setLength(0);
+				sb.append("  <item objectid=\"").append(objectId(m)).append('"');
+				if (!offset.isZero()) {
+					FixedDecimalEncoder.append(sb.append(" transform=\"1 0 0 0 1 0 0 0 1 "), offset.getX());
+					FixedDecimalEncoder.append(sb.append(' '), offset.getY());
+					FixedDecimalEncoder.append(sb.append(' '), offset.getZ()).append('"');
+				}
+				sb.append("/>\n");
+				writer.append(sb);
+			}
+		}
+		writer.write(" </build>\n</model>\n");
+	}
+
+	private static boolean hasColoredTriangle(IndexedMesh mesh) {
+		for (int i=0;i<mesh.getTriangleCount();i++) {
+			if (mesh.getRGB(i)!=IndexedMesh.NO_COLOR) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int displayColor(IndexedMesh mesh, int triangle) {
+		return mesh.getRGB(triangle) & 0xFFFFFF;
+	}
+
+	private static int objectId(int meshIndex) {
+		return MATERIALS_ID+1+meshIndex;
+	}
+}
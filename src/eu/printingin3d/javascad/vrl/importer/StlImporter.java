@@ -0,0 +1,263 @@
+package eu.printingin3d.javascad.vrl.importer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import eu.printingin3d.javascad.utils.MappedBuffers;
+import eu.printingin3d.javascad.utils.ParallelTasks;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
+import eu.printingin3d.javascad.vrl.IndexedMeshBuilder;
+
+/**
+ * <p>Reads binary and ASCII STL files into an {@link IndexedMesh} with welded vertexes, which can be used
+ * by {@link eu.printingin3d.javascad.models.Polyhedron} to join the imported part to the generated
+ * geometry.</p>
+ * <p>The file is memory mapped and the coordinates are read into primitive arrays, so no object is
+ * created for the triangles. The records of a binary file have a fixed size, so in parallel mode the
+ * file is split into chunks which are decoded at the same time, only the welding of the vertexes is
+ * sequential. Every mapping is released as soon as it has been decoded. A file is binary if its size
+ * matches the number of facets in its header or it doesn't start with {@code solid}, otherwise it is an
+ * ASCII file.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class StlImporter {
+	private static final int HEADER_SIZE = 84;
+	private static final int FACET_SIZE = 50;
+	private static final int CHUNK_FACETS = 64*1024;
+	private static final byte[] SOLID = "solid".getBytes(StandardCharsets.US_ASCII);
+
+	private final File file;
+	private final boolean parallel;
+
+	/**
+	 * Creates the importer which decodes the binary files in parallel.
+	 * @param file the file to be read
+	 */
+	public StlImporter(File file) {
+		this(file, true);
+	}
+
+	/**
+	 * Creates the importer.
+	 * @param file the file to be read
+	 * @param parallel true if the chunks of a binary file should be decoded on more threads at the same time
+	 */
+	public StlImporter(File file, boolean parallel) {
+		this.file = file;
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Reads the file.
+	 * @return the mesh read from the file
+	 * @throws IOException if the file can't be read or it isn't a valid STL file
+	 */
+	public IndexedMesh read() throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			boolean ascii = startsWithSolid(channel);
+			if (size>=HEADER_SIZE) {
+				ByteBuffer count = read(channel, 80, 4);
+				count.order(ByteOrder.LITTLE_ENDIAN);
+				long facetCount = count.getInt(0) & 0xFFFFFFFFL;
+				long binarySize = HEADER_SIZE+FACET_SIZE*facetCount;
+				// some binary files start with "solid" too, but their size tells they are binary
+				if (size==binarySize || (!ascii && size>binarySize)) {
+					return readBinary(channel, (int)facetCount);
+				}
+				if (!ascii) {
+					throw new IOException("The binary STL file is truncated, its header declares "+facetCount+
+							" facets: "+file.getPath());
+				}
+			}
+			if (!ascii) {
+				throw new IOException("Invalid STL file: "+file.getPath());
+			}
+			if (size>Integer.MAX_VALUE) {
+				throw new IOException("The file is too big for an ASCII STL file: "+file.getPath());
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			try {
+				return new AsciiStlParser(buffer, file.getPath()).parse();
+			}
+			finally {
+				MappedBuffers.unmap(buffer);
+			}
+		}
+		finally {
+			channel.close();
+		}
+	}
+
+	private static boolean startsWithSolid(FileChannel channel) throws IOException {
+		ByteBuffer prefix = read(channel, 0, SOLID.length);
+		return !prefix.hasRemaining() && Arrays.equals(prefix.array(), SOLID);
+	}
+
+	/**
+	 * Reads the given region of the file into a heap buffer, the small regions are not worth to be mapped.
+	 * The buffer has remaining bytes only if the file ends before the end of the region.
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		int read = 0;
+		while (buffer.hasRemaining() && read>=0) {
+			read = channel.read(buffer, position+buffer.position());
+		}
+		return buffer;
+	}
+
+	private IndexedMesh readBinary(FileChannel channel, int facetCount) throws IOException {
+		List<ChunkReader> chunks = new ArrayList<>();
+		for (int from=0;from<facetCount;from+=CHUNK_FACETS) {
+			chunks.add(new ChunkReader(channel, from, Math.min(CHUNK_FACETS, facetCount-from)));
+		}
+
+		if (parallel) {
+			for (IOException e : ParallelTasks.invokeAll(chunks)) {
+				if (e!=null) {
+					throw e;
+				}
+			}
+		}
+
+		IndexedMeshBuilder builder = new IndexedMeshBuilder(facetCount, false, false);
+		for (ChunkReader chunk : chunks) {
+			if (!parallel) {
+				IOException e = chunk.call();
+				if (e!=null) {
+					throw e;
+				}
+			}
+			builder.addTriangles(chunk.vertexes, chunk.facetCount);
+			// the decoded coordinates are not needed any more
+			chunk.vertexes = null;
+		}
+		return builder.buildIndexedMesh();
+	}
+
+	/**
+	 * Decodes the vertexes of a chunk of facets from its own region of the file.
+	 */
+	private static final class ChunkReader implements Callable<IOException> {
+		private final FileChannel channel;
+		private final int from;
+		private final int facetCount;
+		private float[] vertexes;
+
+		private ChunkReader(FileChannel channel, int from, int facetCount) {
+			this.channel = channel;
+			this.from = from;
+			this.facetCount = facetCount;
+		}
+
+		@Override
+		public IOException call() {
+			try {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_SIZE+(long)FACET_SIZE*from, (long)FACET_SIZE*facetCount);
+				try {
+					buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+					float[] result = new float[facetCount*9];
+					for (int f=0;f<facetCount;f++) {
+						// skips the normal, the vertexes start after 3 floats
+						int position = f*FACET_SIZE+12;
+						for (int i=0;i<9;i++) {
+							result[f*9+i] = buffer.getFloat(position+i*4);
+						}
+					}
+					vertexes = result;
+					return null;
+				}
+				finally {
+					MappedBuffers.unmap(buffer);
+				}
+			} catch (IOException e) {
+				return e;
+			}
+		}
+	}
+
+	/**
+	 * Parses the ASCII STL format. Only the {@code vertex} lines are interpreted, every three of them
+	 * is a triangle - the normals are calculated from the vertexes.
+	 */
+	private static final class AsciiStlParser {
+		private static final String SOLID = "solid";
+		private static final String VERTEX = "vertex";
+
+		private final MappedByteBuffer buffer;
+		private final String path;
+		private final StringBuilder token = new StringBuilder();
+		private float[] vertexes = new float[9*1024];
+		private int size = 0;
+
+		private AsciiStlParser(MappedByteBuffer buffer, String path) {
+			this.buffer = buffer;
+			this.path = path;
+		}
+
+		private IndexedMesh parse() throws IOException {
+			if (!nextToken() || !SOLID.contentEquals(token)) {
+				throw new IOException("Invalid STL file: "+path);
+			}
+			while (nextToken()) {
+				if (VERTEX.contentEquals(token)) {
+					for (int i=0;i<3;i++) {
+						if (!nextToken()) {
+							throw new IOException("Unexpected end of the STL file: "+path);
+						}
+						add(parseFloat());
+					}
+				}
+			}
+			if (size%9!=0) {
+				throw new IOException("The number of vertexes is not divisible by three in the STL file: "+path);
+			}
+			return new IndexedMeshBuilder(size/9, false, false).addTriangles(vertexes, size/9).buildIndexedMesh();
+		}
+
+		private float parseFloat() throws IOException {
+			try {
+				return Float.parseFloat(token.toString());
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid number in the STL file "+path+": "+token, e);
+			}
+		}
+
+		private void add(float value) {
+			if (size==vertexes.length) {
+				vertexes = Arrays.copyOf(vertexes, vertexes.length*2);
+			}
+			vertexes[size++] = value;
+		}
+
+		private boolean nextToken() {
+			token.setLength(0);
+			while (buffer.hasRemaining()) {
+				char c = (char)(buffer.get() & 0xFF);
+				if (Character.isWhitespace(c)) {
+					if (token.length()>0) {
+						return true;
+					}
+				} else {
+					token.append(c);
+				}
+			}
+			return token.length()>0;
+		}
+	}
+}
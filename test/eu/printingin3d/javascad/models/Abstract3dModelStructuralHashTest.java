@@ -0,0 +1,143 @@
+package eu.printingin3d.javascad.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.testutils.Test3dModel;
+import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.utils.StructuralHash;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.cache.MemoryCSGCache;
+
+public class Abstract3dModelStructuralHashTest {
+	private static Abstract3dModel createModel(double holeRadius) {
+		return new Difference(new Cube(10), 
+				new Cylinder(20, holeRadius).move(new Coords3d(1, 1, 0)));
+	}
+	
+	@Test
+	public void sameStructureShouldHaveTheSameHash() {
+		assertNotNull(createModel(2).getStructuralHash());
+		assertEquals(createModel(2).getStructuralHash(), createModel(2).getStructuralHash());
+	}
+	
+	@Test
+	public void differentParametersShouldChangeTheHash() {
+		assertFalse(createModel(2).getStructuralHash().equals(createModel(3).getStructuralHash()));
+		assertFalse(new Cube(10).getStructuralHash().equals(new Cube(10).move(Coords3d.X).getStructuralHash()));
+		assertFalse(new Cube(10).getStructuralHash().equals(new Cube(10).withTag(2).getStructuralHash()));
+		assertFalse(new Cube(10).getStructuralHash().equals(
+				new Cube(10).moves(Arrays.asList(Coords3d.ZERO, Coords3d.X)).getStructuralHash()));
+	}
+	
+	@Test
+	public void unknownModelShouldBeUnhashable() {
+		assertNull(new Test3dModel("(empty)").getStructuralHash());
+		assertNull(new Union(new Cube(10), new Test3dModel("(empty)")).getStructuralHash());
+	}
+	
+	@Test
+	public void cachedCSGShouldBeReused() {
+		MemoryCSGCache cache = new MemoryCSGCache(100000);
+		FacetGenerationContext context = FacetGenerationContext.DEFAULT.withCache(cache);
+		
+		CSG first = createModel(2).toCSG(context);
+		long missesAfterFirst = cache.getStatistics().getMisses();
+		CSG second = createModel(2).toCSG(context);
+		
+		assertSame(first, second);
+		assertEquals(missesAfterFirst, cache.getStatistics().getMisses());
+		assertEquals(1, cache.getStatistics().getHits());
+	}
+	
+	@Test
+	public void sharedSubtreeShouldBeReused() {
+		MemoryCSGCache cache = new MemoryCSGCache(100000);
+		FacetGenerationContext context = FacetGenerationContext.DEFAULT.withCache(cache);
+		
+		createModel(2).toCSG(context);
+		new Union(createModel(2), new Sphere(3)).toCSG(context);
+		
+		assertEquals(1, cache.getStatistics().getHits());
+	}
+	
+	@Test
+	public void hashShouldBeMemoizedUntilTheModelIsModified() {
+		Abstract3dModel model = createModel(2);
+		StructuralHash hash = model.getStructuralHash();
+		assertSame(hash, model.getStructuralHash());
+		
+		model.move(Coords3d.X);
+		assertFalse(hash.equals(model.getStructuralHash()));
+		assertEquals(createModel(2).move(Coords3d.X).getStructuralHash(), model.getStructuralHash());
+	}
+	
+	@Test
+	public void hashShouldChangeIfAChildIsModified() {
+		Cube child = new Cube(10);
+		Abstract3dModel model = new Union(child, new Sphere(3));
+		StructuralHash hash = model.getStructuralHash();
+		StructuralHash shapeHash = model.getShapeHash();
+		
+		child.rotate(new Angles3d(0, 0, 45));
+		assertFalse(hash.equals(model.getStructuralHash()));
+		assertFalse(shapeHash.equals(model.getShapeHash()));
+	}
+	
+	@Test
+	public void subclassGeneratingItsOwnCSGShouldBeUnhashable() {
+		assertNull(new Cube(10) {
+			@Override
+			protected CSG toInnerCSG(FacetGenerationContext context) {
+				return super.toInnerCSG(context);
+			}
+		}.getStructuralHash());
+		assertNull(new Sphere(10) {
+			@Override
+			protected CSG toInnerCSG(FacetGenerationContext context) {
+				return super.toInnerCSG(context);
+			}
+		}.getShapeHash());
+		assertNull(new Union(Arrays.<Abstract3dModel>asList(new Cube(10))) {
+			@Override
+			protected CSG toInnerCSG(FacetGenerationContext context) {
+				return super.toInnerCSG(context);
+			}
+		}.getStructuralHash());
+	}
+	
+	@Test
+	public void subclassUsingTheCSGOfItsSuperclassShouldBeHashable() {
+		Abstract3dModel cube = new Cube(10) {
+			// generates the same CSG as the cube
+		};
+		
+		assertNotNull(cube.getStructuralHash());
+		assertFalse(cube.getStructuralHash().equals(new Cube(10).getStructuralHash()));
+	}
+	
+	@Test
+	public void memoizedHashShouldNotBeRecalculatedWhileNothingIsModified() {
+		Abstract3dModel leaf = new Cube(1);
+		Abstract3dModel model = leaf;
+		for (int i=0;i<50;i++) {
+			model = new Union(Arrays.asList(model, new Cube(2)));
+		}
+		StructuralHash hash = model.getStructuralHash();
+		assertSame(hash, model.getStructuralHash());
+		
+		leaf.move(new Coords3d(1, 0, 0));
+		assertFalse(hash.equals(model.getStructuralHash()));
+	}
+}
@@ -0,0 +1,102 @@
+package eu.printingin3d.javascad.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.printingin3d.javascad.context.TagFilter;
+import eu.printingin3d.javascad.context.TagSet;
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.Intersection;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.FacetGenerationContextBuilder;
+import eu.printingin3d.javascad.vrl.cache.MemoryCSGCache;
+
+public class Abstract3dModelTagCSGTest {
+	private Abstract3dModel model11;
+	private Abstract3dModel model12;
+	private Abstract3dModel testSubject;
+
+	@Before
+	public void init() {
+		model11 = new Cube(2).withTag(11);
+		model12 = new Cube(2).move(new Coords3d(10, 0, 0)).withTag(12);
+		testSubject = new Union(model11, model12);
+	}
+
+	private static void assertSameBoundaries(Boundaries3d expected, Boundaries3d actual) {
+		assertEquals(expected.getMinCorner(), actual.getMinCorner());
+		assertEquals(expected.getMaxCorner(), actual.getMaxCorner());
+	}
+
+	@Test
+	public void excludedModelShouldBeMissing() {
+		CSG csg = testSubject.toCSG(new FacetGenerationContextBuilder().exclude(11).buildContext());
+
+		assertSameBoundaries(model12.getBoundaries(), csg.getBoundaries());
+	}
+
+	@Test
+	public void onlyIncludedModelShouldBePresent() {
+		CSG csg = testSubject.toCSG(new FacetGenerationContextBuilder().include(12).buildContext());
+
+		assertSameBoundaries(model12.getBoundaries(), csg.getBoundaries());
+	}
+
+	@Test
+	public void excludedTagShouldWinInsideIncludedTag() {
+		testSubject.withTag(5);
+		CSG csg = testSubject.toCSG(new FacetGenerationContextBuilder().include(5).exclude(12).buildContext());
+
+		assertSameBoundaries(model11.getBoundaries(), csg.getBoundaries());
+	}
+
+	@Test
+	public void differenceWithExcludedBaseShouldBeEmpty() {
+		Abstract3dModel difference = new Difference(model11, new Cube(1).withTag(12));
+
+		assertTrue(difference.toCSG(new FacetGenerationContextBuilder().include(12).buildContext())
+				.getPolygons().isEmpty());
+		assertFalse(difference.isIncluded(TagFilter.create(TagSet.EMPTY, TagSet.of(Arrays.asList(Integer.valueOf(11))))));
+	}
+
+	@Test
+	public void excludedOperandOfIntersectionShouldBeIgnored() {
+		Abstract3dModel intersection = new Intersection(new Cube(2), model12);
+
+		CSG csg = intersection.toCSG(new FacetGenerationContextBuilder().exclude(12).buildContext());
+
+		assertSameBoundaries(new Cube(2).getBoundaries(), csg.getBoundaries());
+	}
+
+	@Test
+	public void excludedModelsShouldNotBeEvaluated() {
+		EvaluationSession session = new EvaluationSession();
+		session.toCSG(testSubject, new FacetGenerationContextBuilder().exclude(11).buildContext());
+
+		// the union and model12
+		assertEquals(2, session.getEvaluatedCount());
+	}
+
+	@Test
+	public void filteredAndUnfilteredResultsShouldBeCachedSeparately() {
+		MemoryCSGCache cache = new MemoryCSGCache(1000);
+		FacetGenerationContext context = new FacetGenerationContextBuilder().setCache(cache).buildContext();
+
+		CSG full = testSubject.toCSG(context);
+		CSG filtered = testSubject.toCSG(new FacetGenerationContextBuilder().setCache(cache).exclude(11)
+				.buildContext());
+
+		assertSameBoundaries(testSubject.getBoundaries(), full.getBoundaries());
+		assertSameBoundaries(model12.getBoundaries(), filtered.getBoundaries());
+	}
+}
@@ -0,0 +1,148 @@
+package eu.printingin3d.javascad.models;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.context.IScadGenerationContext;
+import eu.printingin3d.javascad.context.TagColorsBuilder;
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.FacetGenerationContextBuilder;
+
+public class EvaluationSchedulerTest {
+	private static class CountingCube extends Cube {
+		private final AtomicInteger counter;
+		
+		public CountingCube(double size, AtomicInteger counter) {
+			super(size);
+			this.counter = counter;
+		}
+		
+		@Override
+		protected CSG toInnerCSG(FacetGenerationContext context) {
+			counter.incrementAndGet();
+			return super.toInnerCSG(context);
+		}
+	}
+	
+	/**
+	 * Evaluates its child with its own tag, not in the context it gets.
+	 */
+	private static class RetaggingModel extends Complex3dModel {
+		private final Abstract3dModel model;
+		
+		public RetaggingModel(Abstract3dModel model) {
+			this.model = model;
+		}
+		
+		@Override
+		protected CSG toInnerCSG(FacetGenerationContext context) {
+			return model.toCSG(context.applyTag(7));
+		}
+		
+		@Override
+		protected List<Abstract3dModel> getChildModels() {
+			return Collections.singletonList(model);
+		}
+		
+		@Override
+		protected Abstract3dModel innerCloneModel() {
+			return new RetaggingModel(model.cloneModel());
+		}
+		
+		@Override
+		protected SCAD innerToScad(IScadGenerationContext context) {
+			return model.toScad(context);
+		}
+		
+		@Override
+		protected Boundaries3d getModelBoundaries() {
+			return model.getBoundaries();
+		}
+		
+		@Override
+		protected Abstract3dModel innerSubModel(IScadGenerationContext context) {
+			return this;
+		}
+	}
+	
+	private static Abstract3dModel createWideModel() {
+		List<Abstract3dModel> parts = new ArrayList<>();
+		for (int i=0;i<20;i++) {
+			parts.add(new Difference(new Cube(4), new Cylinder(5, 1)).move(new Coords3d(i*10, 0, 0)));
+		}
+		return new Union(parts);
+	}
+	
+	@Test
+	public void parallelResultShouldBeTheSameAsTheSequential() {
+		EvaluationScheduler scheduler = new EvaluationScheduler();
+		try {
+			CSG expected = createWideModel().toCSG();
+			CSG actual = scheduler.toCSG(createWideModel());
+			
+			assertEquals(expected.getPolygons().size(), actual.getPolygons().size());
+			assertEquals(expected.getBoundaries().toString(), actual.getBoundaries().toString());
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+	
+	@Test
+	public void sharedModelShouldBeEvaluatedOnlyOnce() {
+		AtomicInteger counter = new AtomicInteger();
+		Abstract3dModel shared = new CountingCube(2, counter);
+		Abstract3dModel model = new Union(shared, new Difference(new Cube(10).move(new Coords3d(20, 0, 0)), shared));
+		
+		EvaluationScheduler scheduler = new EvaluationScheduler();
+		try {
+			scheduler.toCSG(model);
+		} finally {
+			scheduler.shutdown();
+		}
+		
+		assertEquals(1, counter.get());
+	}
+	
+	@Test
+	public void singleThreadShouldNotDeadlock() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			CSG csg = new EvaluationScheduler(executor).toCSG(createWideModel());
+			
+			assertEquals(createWideModel().toCSG().getPolygons().size(), csg.getPolygons().size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void childrenShouldNotBeStartedInAGuessedContext() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			FacetGenerationContext context = new EvaluationScheduler(executor).startEvaluation(
+					new FacetGenerationContextBuilder()
+						.setTagColors(new TagColorsBuilder().addTag(7, Color.RED).buildTagColors())
+						.buildContext());
+			new RetaggingModel(new Union(new Cube(2), new Cube(3))).toCSG(context);
+			
+			// the retagging model, the union and the two cubes - all of them in the context they are used in
+			assertEquals(4, context.getEvaluation().getTaskCount());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
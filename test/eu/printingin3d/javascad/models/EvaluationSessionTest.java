@@ -0,0 +1,71 @@
+package eu.printingin3d.javascad.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.vrl.CSG;
+
+public class EvaluationSessionTest {
+	private EvaluationSession session;
+	private Abstract3dModel changing;
+	private Abstract3dModel root;
+	
+	@Before
+	public void init() {
+		session = new EvaluationSession();
+		changing = new Cylinder(5, 1);
+		List<Abstract3dModel> parts = new ArrayList<>();
+		for (int i=0;i<5;i++) {
+			parts.add(new Cube(2).move(new Coords3d(i*10, 0, 0)));
+		}
+		parts.add(new Difference(new Cube(4).move(new Coords3d(0, 20, 0)), changing));
+		// 5 cubes + the cube, the cylinder and the difference + the union
+		root = new Union(parts);
+	}
+	
+	@Test
+	public void unchangedModelShouldNotBeEvaluatedAgain() {
+		CSG first = session.toCSG(root);
+		assertEquals(9, session.getEvaluatedCount());
+		
+		CSG second = session.toCSG(root);
+		
+		assertSame(first, second);
+		assertEquals(9, session.getEvaluatedCount());
+		assertEquals(1, session.getReusedCount());
+	}
+	
+	@Test
+	public void onlyThePathToTheChangedModelShouldBeEvaluated() {
+		CSG first = session.toCSG(root);
+		
+		changing.move(new Coords3d(0, 20, 0));
+		CSG second = session.toCSG(root);
+		
+		// the cylinder, the difference and the union
+		assertEquals(9+3, session.getEvaluatedCount());
+		// 5 cubes and the cube of the difference
+		assertEquals(6, session.getReusedCount());
+		assertFalse(first==second);
+		assertEquals(9, session.size());
+	}
+	
+	@Test
+	public void replacedModelsShouldBeForgotten() {
+		session.toCSG(root);
+		
+		session.toCSG(new Cube(3));
+		
+		assertEquals(1, session.size());
+	}
+}
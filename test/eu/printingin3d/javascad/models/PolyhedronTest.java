@@ -1,8 +1,11 @@
 package eu.printingin3d.javascad.models;
 
 import static eu.printingin3d.javascad.testutils.AssertEx.assertDoubleEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.awt.Color;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -15,6 +18,12 @@ import eu.printingin3d.javascad.coords.Boundaries3d;
 import eu.printingin3d.javascad.coords.Coords3d;
 import eu.printingin3d.javascad.coords.Triangle3d;
 import eu.printingin3d.javascad.exceptions.IllegalValueException;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContextBuilder;
+import eu.printingin3d.javascad.vrl.IFacetConsumer;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
+import eu.printingin3d.javascad.vrl.IndexedMeshBuilder;
 
 public class PolyhedronTest {
 	
@@ -52,6 +61,109 @@ public class PolyhedronTest {
 		assertDoubleEquals(60.0, boundaries.getZ().getMax());
 	}
 	
+	@Test(expected = IllegalValueException.class)
+	public void shouldThrowExceptioIfMeshIsNull() {
+		Polyhedron.fromMesh(null);
+	}
+	
+	@Test
+	public void meshShouldJoinTheBooleans() {
+		Polyhedron cube = Polyhedron.fromMesh(new Cube(10).toCSG().toIndexedMesh());
+		
+		Boundaries3d boundaries = new Union(cube, new Cube(10).move(Coords3d.xOnly(5))).toCSG().getBoundaries();
+		
+		assertDoubleEquals(-5.0, boundaries.getX().getMin());
+		assertDoubleEquals(10.0, boundaries.getX().getMax());
+		assertDoubleEquals(-5.0, boundaries.getZ().getMin());
+		assertDoubleEquals(5.0, boundaries.getZ().getMax());
+	}
+	
+	@Test
+	public void csgShouldContainTheTrianglesOfTheMesh() {
+		CSG csg = new Cube(10).toCSG();
+		
+		assertEquals(csg.getFacetCount(), Polyhedron.fromMesh(csg.toIndexedMesh()).toCSG().getFacetCount());
+	}
+	
+	@Test
+	public void scadShouldListTheTrianglesOfTheMeshClockwise() {
+		Coords3d c0 = new Coords3d(0, 0, 0);
+		Coords3d c1 = new Coords3d(10.5, 0, 0);
+		Coords3d c2 = new Coords3d(0, 10, 0);
+		Coords3d c3 = new Coords3d(0, 0, -2.25);
+		// counter-clockwise from outside, as in a CSG or an STL file
+		IndexedMesh mesh = new IndexedMeshBuilder(4, false, false)
+				.addTriangle(null, c0, c1, c2, null)
+				.addTriangle(null, c0, c3, c1, null)
+				.addTriangle(null, c1, c3, c2, null)
+				.addTriangle(null, c2, c3, c0, null)
+				.buildIndexedMesh();
+		Polyhedron p = Polyhedron.fromMesh(mesh);
+		
+		String expected = "polyhedron(\n  points=[[0,0,0], [10.5,0,0], [0,10,0], [0,0,-2.25]],\n"+
+				"  triangles=[[0,2,1], [0,1,3], [1,2,3], [2,0,3]]\n);";
+		assertEquals(expected, p.toScad(ScadGenerationContextFactory.DEFAULT).getScad());
+		assertEquals(expected, p.cloneModel().toScad(ScadGenerationContextFactory.DEFAULT).getScad());
+	}
+	
+	private static void assertNormalsPointOutwards(Polyhedron p, final Coords3d center) throws IOException {
+		p.toCSG().forEachFacet(new IFacetConsumer() {
+			@Override
+			public void accept(Coords3d normal, Coords3d v1, Coords3d v2, Coords3d v3, Color color) {
+				Coords3d outwards = v1.move(v2).move(v3).mul(1.0/3.0).move(center.inverse());
+				assertTrue(normal.dot(outwards)>0.0);
+			}
+		});
+	}
+	
+	@Test
+	public void csgOfTheMeshShouldKeepItsWinding() throws IOException {
+		assertNormalsPointOutwards(Polyhedron.fromMesh(new Cube(10).toCSG().toIndexedMesh()), Coords3d.ZERO);
+	}
+	
+	@Test
+	public void csgOfTheOpenScadTrianglesShouldBeReversed() throws IOException {
+		Coords3d c0 = new Coords3d(10,10,0);
+		Coords3d c1 = new Coords3d(10,-10,0);
+		Coords3d c2 = new Coords3d(-10,-10,0);
+		Coords3d c3 = new Coords3d(-10,10,0);
+		Coords3d c4 = new Coords3d(0,0,10);
+		// clockwise from outside, as OpenSCAD expects them
+		Polyhedron p = new Polyhedron(Arrays.asList(new Triangle3d(c0,c1,c4), new Triangle3d(c1,c2,c4),
+				new Triangle3d(c2,c3,c4), new Triangle3d(c3,c0,c4), new Triangle3d(c1,c0,c3), new Triangle3d(c2,c1,c3)));
+		
+		assertNormalsPointOutwards(p, new Coords3d(0, 0, 2));
+	}
+	
+	@Test
+	public void bigMeshShouldBeWrittenToScad() {
+		IndexedMesh mesh = new Sphere(50).toCSG(new FacetGenerationContextBuilder().setFsAndFa(0.5, 1)
+				.buildContext()).toIndexedMesh();
+		Polyhedron p = Polyhedron.fromMesh(mesh);
+		
+		String scad = p.toScad(ScadGenerationContextFactory.DEFAULT).getScad();
+		assertTrue(scad.startsWith("polyhedron(\n  points=[["));
+		assertTrue(scad.endsWith("]]\n);"));
+		
+		String[] parts = scad.substring("polyhedron(\n  points=[[".length(), scad.length()-"]]\n);".length())
+				.split("\\]\\],\n  triangles=\\[\\[");
+		assertEquals(2, parts.length);
+		String[] points = parts[0].split("\\], \\[");
+		String[] triangles = parts[1].split("\\], \\[");
+		assertTrue(mesh.getTriangleCount()>10000);
+		assertEquals(mesh.getVertexCount(), points.length);
+		assertEquals(mesh.getTriangleCount(), triangles.length);
+		for (String point : points) {
+			assertEquals(3, point.split(",").length);
+		}
+		for (String triangle : triangles) {
+			for (String index : triangle.split(",")) {
+				int i = Integer.parseInt(index);
+				assertTrue(i>=0 && i<points.length);
+			}
+		}
+	}
+	
 	private static class PositionAndIndex implements Comparable<PositionAndIndex> {
 		private final int position;
 		private final int index;
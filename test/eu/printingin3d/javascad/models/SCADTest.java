@@ -0,0 +1,79 @@
+package eu.printingin3d.javascad.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.context.ScadGenerationContextFactory;
+import eu.printingin3d.javascad.coords.Coords3d;
+
+public class SCADTest {
+
+	@Test
+	public void appendedScadShouldEqualTheFlatString() {
+		SCAD scad = new SCAD("b").prepend("a").append("c").append(new SCAD("d"));
+		
+		assertEquals("abcd", scad.getScad());
+		assertEquals(new SCAD("abcd"), scad);
+		assertEquals(new SCAD("abcd").hashCode(), scad.hashCode());
+	}
+
+	@Test
+	public void includedShouldBeKeptByAppend() {
+		SCAD scad = new SCAD("a").append(new SCAD("b").include());
+		
+		assertTrue(scad.isIncluded());
+		assertEquals(new SCAD("ab").include(), scad);
+		assertFalse(new SCAD("a").append(new SCAD("b")).isIncluded());
+	}
+
+	@Test
+	public void emptyIncludedShouldNotBeIncluded() {
+		SCAD scad = SCAD.EMPTY.include().append("");
+		
+		assertTrue(scad.isEmpty());
+		assertFalse(scad.isIncluded());
+	}
+
+	@Test
+	public void writeToShouldWriteTheSameAsGetScad() throws IOException {
+		SCAD scad = new SCAD("x").prepend("(").append(")").append(new SCAD("y").prepend("[").append("]"));
+		StringBuilder sb = new StringBuilder();
+		
+		scad.writeTo(sb);
+		
+		assertEquals("(x)[y]", sb.toString());
+		assertEquals(scad.getScad(), sb.toString());
+	}
+
+	@Test
+	public void longChainShouldNotOverflowTheStack() throws IOException {
+		SCAD appended = SCAD.EMPTY;
+		SCAD prepended = SCAD.EMPTY;
+		StringBuilder expected = new StringBuilder();
+		for (int i=0;i<200000;i++) {
+			appended = appended.append("a");
+			prepended = prepended.prepend("a");
+			expected.append('a');
+		}
+		StringBuilder sb = new StringBuilder();
+		prepended.writeTo(sb);
+		
+		assertEquals(expected.toString(), appended.getScad());
+		assertEquals(expected.toString(), sb.toString());
+	}
+
+	@Test
+	public void modelShouldStreamTheSameScad() throws IOException {
+		Abstract3dModel model = new Cube(10).move(new Coords3d(1, 2, 3)).addModel(new Sphere(5));
+		StringBuilder sb = new StringBuilder();
+		
+		model.toScad(sb, ScadGenerationContextFactory.DEFAULT);
+		
+		assertEquals(model.toScad(ScadGenerationContextFactory.DEFAULT).getScad(), sb.toString());
+	}
+}
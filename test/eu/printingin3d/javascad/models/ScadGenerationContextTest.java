@@ -30,4 +30,21 @@ public class ScadGenerationContextTest {
 		assertTrue(testSubject.applyTag(88).isTagIncluded());
 		assertFalse(testSubject.applyTag(111).isTagIncluded());
 	}
+	
+	@Test
+	public void excludedTagInsideIncludedTag() {
+		IScadGenerationContext testSubject = new ScadGenerationContextFactory().include(21).exclude(32).create();
+		assertTrue(testSubject.applyTag(21).applyTag(5).isTagIncluded());
+		assertFalse(testSubject.applyTag(21).applyTag(32).isTagIncluded());
+		assertFalse(testSubject.applyTag(5).applyTag(32).isTagIncluded());
+		assertTrue(testSubject.applyTag(5).applyTag(21).isTagIncluded());
+	}
+	
+	@Test
+	public void laterChangesOfTheFactoryShouldNotAffectTheContext() {
+		ScadGenerationContextFactory factory = new ScadGenerationContextFactory().exclude(11);
+		IScadGenerationContext testSubject = factory.create();
+		factory.exclude(55);
+		assertTrue(testSubject.applyTag(55).isTagIncluded());
+	}
 }
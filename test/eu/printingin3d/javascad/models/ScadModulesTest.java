@@ -0,0 +1,116 @@
+package eu.printingin3d.javascad.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.printingin3d.javascad.context.IScadGenerationContext;
+import eu.printingin3d.javascad.context.ScadGenerationContextFactory;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.utils.ModelToFile;
+
+public class ScadModulesTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Abstract3dModel createScrew() {
+		return new Union(new Cylinder(10, 2), new Cylinder(2, 4).move(new Coords3d(0, 0, 5)));
+	}
+
+	private static Abstract3dModel createAssembly() {
+		List<Abstract3dModel> screws = new ArrayList<>();
+		for (int i=0;i<10;i++) {
+			screws.add(createScrew().move(new Coords3d(i*10, 0, 0)));
+		}
+		return new Union(new Cube(100), new Union(screws));
+	}
+
+	private static String expand(String scad, ScadModules modules, String definitions) {
+		String result = scad;
+		for (int i=0;i<modules.getModuleCount();i++) {
+			String name = "shape_"+i;
+			String header = "module "+name+"() {\n";
+			int start = definitions.indexOf(header)+header.length();
+			int end = definitions.indexOf("}\nmodule ", start);
+			String body = definitions.substring(start, end<0 ? definitions.length()-2 : end);
+			result = result.replace(name+"();\n", body);
+		}
+		return result;
+	}
+
+	@Test
+	public void repeatedSubtreeShouldBeExtractedOnce() {
+		Abstract3dModel model = createAssembly();
+		ScadModules modules = new ScadModules(Collections.singletonList(model));
+		IScadGenerationContext context = modules.wrap(ScadGenerationContextFactory.DEFAULT);
+		
+		String scad = model.toScad(context).getScad();
+		String definitions = modules.getDefinitions().getScad();
+		
+		assertEquals(1, modules.getModuleCount());
+		assertEquals(10, scad.split("shape_0\\(\\);", -1).length-1);
+		assertTrue(definitions.startsWith("module shape_0() {\n"));
+		assertEquals(model.toScad(ScadGenerationContextFactory.DEFAULT).getScad(), expand(scad, modules, definitions));
+	}
+
+	@Test
+	public void modelWithoutRepetitionShouldNotChange() {
+		Abstract3dModel model = new Union(new Cube(10), createScrew());
+		ScadModules modules = new ScadModules(Collections.singletonList(model));
+		
+		SCAD scad = model.toScad(modules.wrap(ScadGenerationContextFactory.DEFAULT));
+		
+		assertEquals(0, modules.getModuleCount());
+		assertEquals(model.toScad(ScadGenerationContextFactory.DEFAULT), scad);
+	}
+
+	@Test
+	public void modelToFileShouldWriteTheModulesAfterTheModels() throws IOException {
+		File file = folder.newFile("test.scad");
+		
+		new ModelToFile(file).addModel(createAssembly()).extractModules()
+			.saveToFile(ScadGenerationContextFactory.DEFAULT);
+		
+		String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		int definition = content.indexOf("module shape_0() {\n");
+		assertTrue(definition>0);
+		assertTrue(content.indexOf("shape_0();")<definition);
+		assertTrue(content.endsWith("}\n"));
+	}
+	
+	@Test
+	public void repeatedSubtreeShouldBeGeneratedOnce() {
+		final AtomicInteger counter = new AtomicInteger();
+		List<Abstract3dModel> screws = new ArrayList<>();
+		for (int i=0;i<10;i++) {
+			screws.add(new Union(new Cylinder(10, 2) {
+				@Override
+				protected SCAD innerToScad(IScadGenerationContext context) {
+					counter.incrementAndGet();
+					return super.innerToScad(context);
+				}
+			}, new Cylinder(2, 4).move(new Coords3d(0, 0, 5))).move(new Coords3d(i*10, 0, 0)));
+		}
+		Abstract3dModel model = new Union(screws);
+		ScadModules modules = new ScadModules(Collections.singletonList(model));
+		
+		String scad = model.toScad(modules.wrap(ScadGenerationContextFactory.DEFAULT)).getScad();
+		
+		assertEquals(1, counter.get());
+		assertEquals(1, modules.getModuleCount());
+		assertEquals(10, scad.split("shape_0\\(\\);", -1).length-1);
+	}
+}
@@ -0,0 +1,58 @@
+package eu.printingin3d.javascad.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AtomicFileTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static void write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void commitShouldReplaceTheTarget() throws IOException {
+		File target = folder.newFile("target.txt");
+		write(target, "old");
+
+		AtomicFile atomicFile = new AtomicFile(target);
+		try {
+			write(atomicFile.getTempFile(), "new");
+			atomicFile.commit();
+		}
+		finally {
+			atomicFile.close();
+		}
+
+		assertEquals("new", read(target));
+		assertArrayEquals(new String[] {"target.txt"}, folder.getRoot().list());
+	}
+
+	@Test
+	public void closeWithoutCommitShouldLeaveTheTargetUntouched() throws IOException {
+		File target = folder.newFile("target.txt");
+		write(target, "old");
+
+		AtomicFile atomicFile = new AtomicFile(target);
+		write(atomicFile.getTempFile(), "half written");
+		atomicFile.close();
+
+		assertEquals("old", read(target));
+		assertFalse(atomicFile.getTempFile().exists());
+	}
+}
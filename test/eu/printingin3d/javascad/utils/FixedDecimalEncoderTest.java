@@ -0,0 +1,65 @@
+package eu.printingin3d.javascad.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FixedDecimalEncoderTest {
+
+	private static String encode(double value) {
+		char[] buffer = new char[FixedDecimalEncoder.MAX_LENGTH+3];
+		buffer[0] = 'x';
+		int end = FixedDecimalEncoder.encode(value, buffer, 1);
+		assertEquals('x', buffer[0]);
+		return new String(buffer, 1, end-1);
+	}
+
+	@Test
+	public void roundValuesShouldBeWrittenWithoutDecimalPoint() {
+		assertEquals("0", encode(0.0));
+		assertEquals("0", encode(-0.00004));
+		assertEquals("12", encode(12.00003));
+		assertEquals("-7", encode(-7.0));
+		assertEquals("1000000000", encode(1e9));
+	}
+
+	@Test
+	public void fractionsShouldBeRoundedToFourDigits() {
+		assertEquals("0.5", encode(0.5));
+		assertEquals("-0.5", encode(-0.5));
+		assertEquals("3.1416", encode(Math.PI));
+		assertEquals("-2.7183", encode(-Math.E));
+		assertEquals("10.25", encode(10.25));
+		assertEquals("1.0002", encode(1.0002));
+	}
+
+	@Test
+	public void smallAndBigValuesShouldNotUseScientificNotation() {
+		assertEquals("0.0005", encode(0.0005));
+		assertEquals("-0.0012", encode(-0.0012));
+		assertEquals("12345678.5", encode(12345678.5));
+	}
+
+	@Test
+	public void resultShouldMatchTheOldFormattingInTheCommonRange() {
+		for (int i=-20000;i<=20000;i+=7) {
+			double value = i/1234.5;
+			if (Math.abs(value)<0.001) {
+				// the old formatting used the scientific notation here
+				continue;
+			}
+			String expected = DoubleUtils.equalsEps(Math.round(value), value) ?
+					Long.toString(Math.round(value)) :
+					Double.toString(Math.round(value*10000.0)/10000.0);
+			assertEquals(expected, encode(value));
+		}
+	}
+
+	@Test
+	public void appendShouldBeTheSameAsFormatDouble() {
+		StringBuilder sb = new StringBuilder("a");
+		FixedDecimalEncoder.append(sb, 2.125).append('b');
+		assertEquals("a2.125b", sb.toString());
+		assertEquals("2.125", DoubleUtils.formatDouble(2.125));
+	}
+}
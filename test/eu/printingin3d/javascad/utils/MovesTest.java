@@ -11,7 +11,10 @@ import java.util.List;
 
 import org.junit.Test;
 
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Boundaries3d;
 import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.exceptions.IllegalValueException;
 
 public class MovesTest {
 	private static List<Coords3d> retrieveCoordsList(Moves moves) {
@@ -83,4 +86,79 @@ public class MovesTest {
 		assertEquals(1, movesList.size());
 		assertTrue(movesList.get(0).isZero());
 	}
+	
+	@Test
+	public void patternShouldKeepTheOrderOfTheCartesianProduct() {
+		List<Coords3d> xs = Arrays.asList(Coords3d.ZERO, new Coords3d(10, 0, 0));
+		List<Coords3d> ys = Arrays.asList(Coords3d.ZERO, new Coords3d(0, 5, 0), new Coords3d(0, 7, 0));
+		
+		Moves expected = new Moves().moves(xs).moves(ys);
+		Moves actual = new Moves().moves(new CompositeMovePattern(
+				new LinearMovePattern(new Coords3d(10, 0, 0), 2), new ListMovePattern(ys)));
+		
+		assertEquals(retrieveCoordsList(expected), retrieveCoordsList(actual));
+	}
+	
+	@Test
+	public void gridShouldContainEveryPoint() {
+		Moves moves = new Moves()
+			.moves(CompositeMovePattern.grid(new Coords3d(2, 3, 4), 100, 100, 10))
+			.move(new Coords3d(1, 1, 1));
+		
+		assertEquals(100000, moves.size());
+		List<Coords3d> coords = retrieveCoordsList(moves);
+		assertEquals(100000, coords.size());
+		assertEquals(new Coords3d(1, 1, 1), coords.get(0));
+		assertEquals(new Coords3d(3, 1, 1), coords.get(1));
+		assertEquals(new Coords3d(1, 4, 1), coords.get(100));
+		assertEquals(new Coords3d(199, 298, 37), coords.get(99999));
+	}
+	
+	@Test
+	public void rotateShouldRotateEveryPatternElement() {
+		List<Coords3d> list = Arrays.asList(new Coords3d(1, 2, 3), new Coords3d(-4, 5, 0));
+		Angles3d angle = new Angles3d(10, 20, 30);
+		
+		Moves moves = new Moves()
+			.moves(new LinearMovePattern(new Coords3d(1, 1, 0), 3))
+			.moves(list)
+			.move(new Coords3d(0, 0, 5))
+			.rotate(angle);
+		
+		Moves reference = new Moves()
+			.moves(Arrays.asList(Coords3d.ZERO, new Coords3d(1, 1, 0), new Coords3d(2, 2, 0)))
+			.moves(list)
+			.move(new Coords3d(0, 0, 5));
+		
+		List<Coords3d> actual = retrieveCoordsList(moves);
+		List<Coords3d> expected = retrieveCoordsList(reference);
+		assertEquals(expected.size(), actual.size());
+		for (int i=0;i<expected.size();i++) {
+			assertEquals(expected.get(i).rotate(angle), actual.get(i));
+		}
+	}
+	
+	@Test
+	public void boundariesShouldCoverEveryMove() {
+		Moves moves = new Moves()
+			.moves(new LinearMovePattern(new Coords3d(-2, 1, 0), 4))
+			.moves(Arrays.asList(new Coords3d(0, 0, 3), new Coords3d(1, -1, -3)))
+			.move(new Coords3d(10, 10, 10));
+		
+		Boundaries3d b = moves.getBoundaries();
+		assertEquals(new Coords3d(4, 9, 7), b.getMinCorner());
+		assertEquals(new Coords3d(11, 13, 13), b.getMaxCorner());
+	}
+	
+	@Test(expected = IllegalValueException.class)
+	public void linearPatternShouldRejectNonPositiveCount() {
+		new LinearMovePattern(Coords3d.X, 0);
+	}
+	
+	@Test(expected = IllegalValueException.class)
+	public void compositePatternShouldRejectTooManyElements() {
+		new CompositeMovePattern(
+				new LinearMovePattern(Coords3d.X, 100000),
+				new LinearMovePattern(Coords3d.Y, 100000));
+	}
 }
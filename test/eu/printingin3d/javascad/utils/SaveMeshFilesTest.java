@@ -0,0 +1,87 @@
+package eu.printingin3d.javascad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.exceptions.UnknownFileExtensionException;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+
+public class SaveMeshFilesTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static long stlSize(int facets) {
+		return 84L + 50L*facets;
+	}
+
+	@Test
+	public void everyFileShouldBeWritten() throws IOException {
+		Abstract3dModel part1 = new Cube(2).withTag(1);
+		Abstract3dModel part2 = new Cube(2).move(new Coords3d(10, 0, 0)).withTag(2);
+		Abstract3dModel assembly = new Union(part1, part2);
+
+		new SaveMeshFiles(folder.getRoot())
+				.addModel("assembly.stl", assembly)
+				.addTaggedParts("parts/part1.stl", assembly, 1)
+				.addTaggedParts("parts/part2.stl", assembly, 2)
+				.saveMeshFiles();
+
+		long part1Size = new File(folder.getRoot(), "parts/part1.stl").length();
+		long part2Size = new File(folder.getRoot(), "parts/part2.stl").length();
+		assertEquals(stlSize(part1.toCSG().toFacets().size()), part1Size);
+		assertEquals(stlSize(part2.toCSG().toFacets().size()), part2Size);
+		assertEquals(stlSize(assembly.toCSG().toFacets().size()),
+				new File(folder.getRoot(), "assembly.stl").length());
+	}
+
+	@Test
+	public void modelProviderPathsShouldGetTheNewExtension() throws IOException {
+		final Abstract3dModel part = new Cube(2);
+		new SaveMeshFiles(folder.getRoot(), FacetGenerationContext.DEFAULT)
+				.addModelProvider(new IModelProvider() {
+					@Override
+					public List<ModelWithPath> getModelsAndPaths() {
+						return Arrays.asList(new ModelWithPath(part, "parts/cube.scad"),
+								new ModelWithPath(part, "noext"));
+					}
+
+					@Override
+					public Abstract3dModel getAssembledModel() {
+						return part;
+					}
+				}, "stl")
+				.saveMeshFiles();
+
+		assertTrue(new File(folder.getRoot(), "parts/cube.stl").isFile());
+		assertTrue(new File(folder.getRoot(), "noext.stl").isFile());
+	}
+
+	@Test(expected = UnknownFileExtensionException.class)
+	public void unknownExtensionShouldFail() throws IOException {
+		new SaveMeshFiles(folder.getRoot())
+				.addModel("cube.xyz", new Cube(2))
+				.saveMeshFiles();
+	}
+
+	@Test(expected = IOException.class)
+	public void missingDirectoryShouldFail() throws IOException {
+		// a file blocks the creation of the directory
+		folder.newFile("parts");
+		new SaveMeshFiles(folder.getRoot())
+				.addModel("parts/cube.stl", new Cube(2))
+				.saveMeshFiles();
+	}
+}
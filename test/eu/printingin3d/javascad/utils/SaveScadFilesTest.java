@@ -4,22 +4,33 @@ import static eu.printingin3d.javascad.testutils.AssertEx.assertEqualsWithoutWhi
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.AfterClass;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import eu.printingin3d.javascad.context.IScadGenerationContext;
 import eu.printingin3d.javascad.context.ScadGenerationContextFactory;
 import eu.printingin3d.javascad.exceptions.IllegalValueException;
 import eu.printingin3d.javascad.models.ConstsTest;
 import eu.printingin3d.javascad.models.IModel;
+import eu.printingin3d.javascad.models.SCAD;
 import eu.printingin3d.javascad.testutils.FileMockBuilder;
 import eu.printingin3d.javascad.testutils.Test3dModel;
 
@@ -30,6 +41,9 @@ import eu.printingin3d.javascad.testutils.Test3dModel;
  */
 public class SaveScadFilesTest {
 	private static final File ROOT = new File("C:/temp/scadTest");
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
 
 	@AfterClass
 	public static void cleanUp() {
@@ -161,4 +175,173 @@ public class SaveScadFilesTest {
 		Assert.assertTrue(fileName.exists());
 		assertEqualsWithoutWhiteSpaces("", readTheWholeFile(fileName));
 	}
+	
+	@Test
+	public void parallelSaveShouldWriteEveryFile() throws IOException {
+		File root = folder.getRoot();
+		ExecutorService executor = Executors.newFixedThreadPool(4, ParallelTasks.daemonThreadFactory("test"));
+		try {
+			SaveScadFiles saveScadFiles = new SaveScadFiles(root).parallel(executor);
+			for (int i=0;i<20;i++) {
+				saveScadFiles.addModels("dir"+(i%3)+"/file"+i+".scad", Arrays.<IModel>asList(new Test3dModel("(model"+i+")")));
+			}
+			saveScadFiles.saveScadFiles();
+		}
+		finally {
+			executor.shutdown();
+		}
+		for (int i=0;i<20;i++) {
+			assertEqualsWithoutWhiteSpaces("(model"+i+")", readTheWholeFile(new File(root, "dir"+(i%3)+"/file"+i+".scad")));
+		}
+		// no temporary file is left behind
+		Assert.assertEquals(7, new File(root, "dir0").list().length);
+		Assert.assertEquals(7, new File(root, "dir1").list().length);
+		Assert.assertEquals(6, new File(root, "dir2").list().length);
+	}
+	
+	@Test
+	public void failuresShouldBeReportedTogether() throws IOException {
+		File root = folder.getRoot();
+		Assert.assertTrue(new File(root, "notADirectory").createNewFile());
+		SaveScadFiles saveScadFiles = new SaveScadFiles(root).parallel()
+				.addModels("notADirectory/file1.scad", Arrays.<IModel>asList(new Test3dModel("(model)")))
+				.addModels("good.scad", Arrays.<IModel>asList(new Test3dModel("(model)")))
+				.addModels("notADirectory/file2.scad", Arrays.<IModel>asList(new Test3dModel("(model)")));
+		try {
+			saveScadFiles.saveScadFiles();
+			Assert.fail("The failures should be reported");
+		} catch (IOException e) {
+			Assert.assertEquals(2, e.getSuppressed().length);
+			for (Throwable t : e.getSuppressed()) {
+				Assert.assertTrue(t.getCause().getMessage().startsWith("Could not create the directory"));
+			}
+		}
+		assertEqualsWithoutWhiteSpaces("(model)", readTheWholeFile(new File(root, "good.scad")));
+	}
+	
+	private static final long OLD_TIMESTAMP = 1000000000L;
+	
+	private static IModel createCountingModel(final String model, final AtomicInteger counter) {
+		return new Test3dModel(model) {
+			@Override
+			protected SCAD innerToScad(IScadGenerationContext context) {
+				counter.incrementAndGet();
+				return super.innerToScad(context);
+			}
+			
+			@Override
+			protected void appendInnerStructure(StructuralHashBuilder builder) {
+				builder.append(model);
+			}
+		};
+	}
+	
+	@Test
+	public void incrementalSaveShouldSkipTheUnchangedModels() throws IOException {
+		File root = folder.getRoot();
+		File file = new File(root, "file.scad");
+		AtomicInteger counter = new AtomicInteger();
+		
+		new SaveScadFiles(root).incremental().addModel("file.scad", createCountingModel("(model)", counter)).saveScadFiles();
+		Assert.assertTrue(new File(root, SaveScadFiles.MANIFEST_NAME).isFile());
+		Assert.assertTrue(file.setLastModified(OLD_TIMESTAMP));
+		new SaveScadFiles(root).incremental().addModel("file.scad", createCountingModel("(model)", counter)).saveScadFiles();
+		
+		Assert.assertEquals(1, counter.get());
+		Assert.assertEquals(OLD_TIMESTAMP, file.lastModified());
+	}
+	
+	@Test
+	public void incrementalSaveShouldNotWriteTheSameCode() throws IOException {
+		File root = folder.getRoot();
+		File file = new File(root, "file.scad");
+		
+		new SaveScadFiles(root).incremental().addModel("file.scad", new Test3dModel("(model)")).saveScadFiles();
+		Assert.assertTrue(file.setLastModified(OLD_TIMESTAMP));
+		new SaveScadFiles(root).incremental().addModel("file.scad", new Test3dModel("(model)")).saveScadFiles();
+		
+		Assert.assertEquals(OLD_TIMESTAMP, file.lastModified());
+	}
+	
+	@Test
+	public void incrementalSaveShouldWriteTheChangedModels() throws IOException {
+		File root = folder.getRoot();
+		File file = new File(root, "file.scad");
+		AtomicInteger counter = new AtomicInteger();
+		
+		new SaveScadFiles(root).incremental().addModel("file.scad", createCountingModel("(model1)", counter)).saveScadFiles();
+		new SaveScadFiles(root).incremental().addModel("file.scad", createCountingModel("(model2)", counter)).saveScadFiles();
+		
+		Assert.assertEquals(2, counter.get());
+		assertEqualsWithoutWhiteSpaces(ConstsTest.DEFAULT_CONSTS+" (model2)", readTheWholeFile(file));
+	}
+	
+	@Test
+	public void incrementalSaveShouldWriteTheDeletedFiles() throws IOException {
+		File root = folder.getRoot();
+		File file = new File(root, "file.scad");
+		AtomicInteger counter = new AtomicInteger();
+		
+		new SaveScadFiles(root).incremental().addModel("file.scad", createCountingModel("(model)", counter)).saveScadFiles();
+		Assert.assertTrue(file.delete());
+		new SaveScadFiles(root).incremental().addModel("file.scad", createCountingModel("(model)", counter)).saveScadFiles();
+		
+		assertEqualsWithoutWhiteSpaces(ConstsTest.DEFAULT_CONSTS+" (model)", readTheWholeFile(file));
+	}
+	
+	@Test
+	public void incrementalSaveShouldRegenerateTheFilesOfOtherGeneratorVersions() throws IOException {
+		File root = folder.getRoot();
+		File manifest = new File(root, SaveScadFiles.MANIFEST_NAME);
+		AtomicInteger counter = new AtomicInteger();
+		
+		new SaveScadFiles(root).incremental().addModel("file.scad", createCountingModel("(model)", counter)).saveScadFiles();
+		Properties properties = readProperties(manifest);
+		String value = properties.getProperty("file.scad");
+		properties.setProperty("file.scad", (ModelToFile.GENERATOR_VERSION-1)+value.substring(value.indexOf(' ')));
+		writeProperties(manifest, properties);
+		new SaveScadFiles(root).incremental().addModel("file.scad", createCountingModel("(model)", counter)).saveScadFiles();
+		
+		Assert.assertEquals(2, counter.get());
+		Assert.assertEquals(value, readProperties(manifest).getProperty("file.scad"));
+	}
+	
+	@Test
+	public void incrementalSaveShouldForgetTheDeletedFiles() throws IOException {
+		File root = folder.getRoot();
+		File manifest = new File(root, SaveScadFiles.MANIFEST_NAME);
+		
+		new SaveScadFiles(root).incremental()
+				.addModel("file1.scad", new Test3dModel("(model1)"))
+				.addModel("file2.scad", new Test3dModel("(model2)"))
+				.saveScadFiles();
+		Assert.assertTrue(new File(root, "file2.scad").delete());
+		new SaveScadFiles(root).incremental().addModel("file1.scad", new Test3dModel("(model1)")).saveScadFiles();
+		
+		Properties properties = readProperties(manifest);
+		Assert.assertNotNull(properties.getProperty("file1.scad"));
+		Assert.assertNull(properties.getProperty("file2.scad"));
+	}
+	
+	private static Properties readProperties(File file) throws IOException {
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in);
+		}
+		finally {
+			in.close();
+		}
+		return properties;
+	}
+	
+	private static void writeProperties(File file, Properties properties) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			properties.store(out, null);
+		}
+		finally {
+			out.close();
+		}
+	}
 }
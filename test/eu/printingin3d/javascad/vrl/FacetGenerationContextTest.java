@@ -0,0 +1,81 @@
+package eu.printingin3d.javascad.vrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.context.TagColors;
+import eu.printingin3d.javascad.context.TagColorsBuilder;
+import eu.printingin3d.javascad.openscad.Consts;
+import eu.printingin3d.javascad.vrl.cache.MemoryCSGCache;
+
+public class FacetGenerationContextTest {
+	@Test
+	public void builderShouldUseTheDefaults() {
+		FacetGenerationContext context = new FacetGenerationContextBuilder().buildContext();
+		
+		assertEquals(FacetGenerationContext.DEFAULT_FS, context.getFs(), 0.0);
+		assertEquals(FacetGenerationContext.DEFAULT_FA, context.getFa());
+		assertEquals(Color.GRAY, context.getColor());
+	}
+	
+	@Test
+	public void applyTagShouldKeepEverySetting() {
+		MemoryCSGCache cache = new MemoryCSGCache(10);
+		FacetGenerationContext context = new FacetGenerationContextBuilder()
+				.setTagColors(new TagColorsBuilder().addTag(5, Color.RED).buildTagColors())
+				.setFsAndFa(1.0, 12)
+				.setCache(cache)
+				.buildContext()
+				.applyTag(5);
+		
+		assertEquals(1.0, context.getFs(), 0.0);
+		assertEquals(12, context.getFa());
+		assertSame(cache, context.getCache());
+		assertEquals(Color.RED, context.getColor());
+	}
+	
+	@Test
+	public void untaggedChildShouldInheritTheColorOfTheParent() {
+		FacetGenerationContext context = new FacetGenerationContextBuilder()
+				.setTagColors(new TagColorsBuilder().addTag(5, Color.RED).addTag(2, Color.BLUE).buildTagColors())
+				.buildContext();
+		
+		assertEquals(Color.RED, context.applyTag(5).applyTag(0).getColor());
+		assertEquals(Color.BLUE, context.applyTag(5).applyTag(2).getColor());
+		assertEquals(Color.RED, context.applyTag(5).applyTag(7).getColor());
+		assertEquals(Color.GRAY, context.applyTag(7).getColor());
+	}
+	
+	@Test
+	public void tagColorsShouldNotChangeWithTheBuilder() {
+		TagColorsBuilder builder = new TagColorsBuilder().addTag(5, Color.RED);
+		TagColors tagColors = builder.buildTagColors();
+		builder.addTag(5, Color.GREEN).addTag(6, Color.BLUE);
+		
+		assertEquals(Color.RED, tagColors.getColor(5));
+		assertNull(tagColors.getColor(6));
+	}
+	
+	@Test
+	public void constsShouldNotModifyTheContext() {
+		FacetGenerationContext derived = new Consts(2.0, 30).applyTo(FacetGenerationContext.DEFAULT);
+		new Consts(3.0, 45).toCSG(FacetGenerationContext.DEFAULT);
+		
+		assertEquals(2.0, derived.getFs(), 0.0);
+		assertEquals(30, derived.getFa());
+		assertEquals(FacetGenerationContext.DEFAULT_FS, FacetGenerationContext.DEFAULT.getFs(), 0.0);
+		assertEquals(FacetGenerationContext.DEFAULT_FA, FacetGenerationContext.DEFAULT.getFa());
+	}
+	
+	@Test
+	public void numberOfSlicesShouldDependOnTheResolution() {
+		assertEquals(60, FacetGenerationContext.DEFAULT.calculateNumberOfSlices(10));
+		assertEquals(12, FacetGenerationContext.DEFAULT.withFsAndFa(0.25, 30).calculateNumberOfSlices(10));
+		assertEquals(7, FacetGenerationContext.DEFAULT.withFsAndFa(10, 6).calculateNumberOfSlices(10));
+	}
+}
@@ -0,0 +1,79 @@
+package eu.printingin3d.javascad.vrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Cube;
+
+public class IndexedMeshTest {
+
+	private static final class Collector implements IFacetConsumer {
+		private final List<Coords3d> coords = new ArrayList<>();
+		private final List<Color> colors = new ArrayList<>();
+
+		@Override
+		public void accept(Coords3d normal, Coords3d v1, Coords3d v2, Coords3d v3, Color color) {
+			coords.add(normal);
+			coords.add(v1);
+			coords.add(v2);
+			coords.add(v3);
+			colors.add(color);
+		}
+	}
+
+	@Test
+	public void cubeShouldHaveEightWeldedVertexes() {
+		IndexedMesh mesh = new Cube(10).toCSG().toIndexedMesh();
+
+		assertEquals(8, mesh.getVertexCount());
+		assertEquals(12, mesh.getTriangleCount());
+		assertTrue(mesh.hasNormals());
+		assertTrue(mesh.hasColors());
+	}
+
+	@Test
+	public void meshShouldContainTheSameFacetsAsTheCsg() throws IOException {
+		CSG csg = new Cube(10).toCSG();
+		Collector expected = new Collector();
+		csg.forEachFacet(expected);
+		Collector actual = new Collector();
+		csg.toIndexedMesh().forEachFacet(actual);
+
+		assertEquals(expected.coords, actual.coords);
+		assertEquals(expected.colors, actual.colors);
+	}
+
+	@Test
+	public void closeVertexesShouldBeWelded() {
+		IndexedMesh mesh = new IndexedMeshBuilder(2, false, false)
+				.addTriangle(Coords3d.Z, Coords3d.ZERO, Coords3d.X, Coords3d.Y, Color.RED)
+				.addTriangle(Coords3d.Z, new Coords3d(0.00001, 0, 0), Coords3d.Y, new Coords3d(-1, 0, 0), Color.RED)
+				.buildIndexedMesh();
+
+		assertEquals(4, mesh.getVertexCount());
+		assertEquals(mesh.getVertexIndex(0, 0), mesh.getVertexIndex(1, 0));
+		assertEquals(mesh.getVertexIndex(0, 2), mesh.getVertexIndex(1, 1));
+	}
+
+	@Test
+	public void missingNormalsShouldBeCalculated() {
+		IndexedMesh mesh = new IndexedMeshBuilder(1, false, false)
+				.addTriangle(null, Coords3d.ZERO, Coords3d.X, Coords3d.Y, null)
+				.buildIndexedMesh();
+
+		assertFalse(mesh.hasNormals());
+		assertFalse(mesh.hasColors());
+		assertNull(mesh.getColor(0));
+		assertEquals(Coords3d.Z, mesh.getNormal(0));
+	}
+}
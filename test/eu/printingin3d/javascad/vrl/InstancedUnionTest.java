@@ -0,0 +1,69 @@
+package eu.printingin3d.javascad.vrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.utils.CompositeMovePattern;
+import eu.printingin3d.javascad.utils.Moves;
+
+public class InstancedUnionTest {
+	private static final CSG CUBE = new Cube(10).toCSG();
+
+	@Test
+	public void disjointCopiesShouldBeConcatenated() {
+		Moves moves = new Moves().moves(CompositeMovePattern.grid(20, 20, 20, 20));
+
+		CSG result = InstancedUnion.union(CUBE, moves);
+
+		assertEquals(400*CUBE.getPolygons().size(), result.getPolygons().size());
+		Boundaries3d b = result.getBoundaries();
+		assertEquals(new Coords3d(-5, -5, -5), b.getMinCorner());
+		assertEquals(new Coords3d(385, 385, 5), b.getMaxCorner());
+	}
+
+	@Test
+	public void overlappingCopiesShouldBeUnited() {
+		List<Coords3d> moves = Arrays.asList(Coords3d.ZERO, new Coords3d(5, 0, 0), new Coords3d(100, 0, 0));
+
+		CSG result = InstancedUnion.union(CUBE, moves);
+		CSG expected = CSG.concat(Arrays.asList(
+				CUBE.union(CUBE.translated(new Coords3d(5, 0, 0))),
+				CUBE.translated(new Coords3d(100, 0, 0))));
+
+		assertEquals(expected.getPolygons().size(), result.getPolygons().size());
+		assertEquals(new Coords3d(-5, -5, -5), result.getBoundaries().getMinCorner());
+		assertEquals(new Coords3d(105, 5, 5), result.getBoundaries().getMaxCorner());
+	}
+
+	@Test
+	public void touchingCopiesShouldBeUnited() {
+		List<Coords3d> moves = Arrays.asList(Coords3d.ZERO, new Coords3d(10, 0, 0));
+
+		CSG result = InstancedUnion.union(CUBE, moves);
+
+		assertEquals(CUBE.union(CUBE.translated(new Coords3d(10, 0, 0))).getPolygons().size(),
+				result.getPolygons().size());
+	}
+
+	@Test
+	public void emptyBaseShouldBeReturned() {
+		CSG empty = new CSG(new ArrayList<Polygon>());
+
+		assertSame(empty, InstancedUnion.union(empty, Arrays.asList(Coords3d.ZERO, Coords3d.X)));
+	}
+
+	@Test
+	public void noMovesShouldReturnTheBase() {
+		assertSame(CUBE, InstancedUnion.union(CUBE, Collections.<Coords3d>emptyList()));
+	}
+}
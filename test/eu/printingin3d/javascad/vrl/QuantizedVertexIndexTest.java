@@ -0,0 +1,47 @@
+package eu.printingin3d.javascad.vrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+
+public class QuantizedVertexIndexTest {
+	
+	@Test
+	public void sameVertexShouldGetTheSameIndex() {
+		QuantizedVertexIndex index = new QuantizedVertexIndex();
+		
+		int i = index.add(new Coords3d(1, 2, 3), Color.RED);
+		
+		assertEquals(i, index.add(new Coords3d(1.00001, 2, 3), Color.RED));
+		assertEquals(1, index.size());
+	}
+	
+	@Test
+	public void differentColorShouldGetDifferentIndex() {
+		QuantizedVertexIndex index = new QuantizedVertexIndex();
+		
+		assertNotEquals(index.add(new Coords3d(1, 2, 3), Color.RED), index.add(new Coords3d(1, 2, 3), Color.BLUE));
+	}
+	
+	@Test
+	public void indexesShouldFollowTheOrderOfAdding() {
+		QuantizedVertexIndex index = new QuantizedVertexIndex();
+		
+		for (int i=0;i<5000;i++) {
+			assertEquals(i, index.add(i, -i, i*0.5, Color.GRAY.getRGB()));
+		}
+		for (int i=0;i<5000;i++) {
+			assertEquals(i, index.add(i, -i, i*0.5, Color.GRAY.getRGB()));
+		}
+		assertEquals(5000, index.size());
+		assertEquals(1234.0, index.getX(1234), 0.0);
+		assertEquals(-1234.0, index.getY(1234), 0.0);
+		assertEquals(617.0, index.getZ(1234), 0.0);
+		assertEquals(Color.GRAY.getRGB(), index.getRGB(1234));
+	}
+}
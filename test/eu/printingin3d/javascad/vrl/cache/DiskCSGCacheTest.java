@@ -0,0 +1,155 @@
+package eu.printingin3d.javascad.vrl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.models.Sphere;
+import eu.printingin3d.javascad.utils.StructuralHash;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.IFacetConsumer;
+import eu.printingin3d.javascad.vrl.Polygon;
+
+public class DiskCSGCacheTest {
+	private static final CSG CUBE = new Cube(10).toCSG();
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static StructuralHash key(String value) {
+		return new StructuralHashBuilder().append(value).build();
+	}
+	
+	@Test
+	public void storedValueShouldBeReadBackBySeparateInstance() throws IOException {
+		File dir = folder.newFolder();
+		new DiskCSGCache(dir, 1000000).put(key("a"), CUBE);
+		
+		CSG result = new DiskCSGCache(dir, 1000000).get(key("a"));
+		
+		assertNotNull(result);
+		assertEquals(CUBE.getPolygons().size(), result.getPolygons().size());
+		for (int i=0;i<CUBE.getPolygons().size();i++) {
+			Polygon expected = CUBE.getPolygons().get(i);
+			Polygon actual = result.getPolygons().get(i);
+			assertEquals(expected.getVertices(), actual.getVertices());
+			assertEquals(expected.getColor(), actual.getColor());
+		}
+	}
+	
+	private static List<Coords3d> collectNormals(CSG csg) throws IOException {
+		final List<Coords3d> normals = new ArrayList<>();
+		csg.forEachFacet(new IFacetConsumer() {
+			@Override
+			public void accept(Coords3d normal, Coords3d v1, Coords3d v2, Coords3d v3, Color color) {
+				normals.add(normal);
+			}
+		});
+		return normals;
+	}
+	
+	@Test
+	public void splitPolygonsShouldBeReadBackWithTheirPlanes() throws IOException {
+		CSG csg = new Sphere(10).subtractModel(new Cylinder(30, 3).rotate(new Angles3d(30, 20, 0))).toCSG();
+		File dir = folder.newFolder();
+		new DiskCSGCache(dir, 100000000).put(key("a"), csg);
+		
+		CSG result = new DiskCSGCache(dir, 100000000).get(key("a"));
+		
+		assertNotNull(result);
+		assertEquals(collectNormals(csg), collectNormals(result));
+		// nothing keeps the file open after the read
+		assertTrue(dir.listFiles()[0].delete());
+	}
+	
+	@Test
+	public void missingValueShouldBeNull() throws IOException {
+		DiskCSGCache cache = new DiskCSGCache(folder.newFolder(), 1000000);
+		
+		assertNull(cache.get(key("a")));
+		assertEquals(1, cache.getStatistics().getMisses());
+	}
+	
+	@Test
+	public void corruptEntryShouldBeAMiss() throws IOException {
+		File dir = folder.newFolder();
+		DiskCSGCache cache = new DiskCSGCache(dir, 1000000);
+		FileOutputStream out = new FileOutputStream(new File(dir, key("a").toHex()+".csg"));
+		try {
+			out.write(new byte[] {1, 2, 3});
+		} finally {
+			out.close();
+		}
+		
+		assertNull(cache.get(key("a")));
+		assertEquals(0, cache.getStatistics().getEntries());
+	}
+	
+	@Test
+	public void entryOfAnOtherGeneratorVersionShouldBeAMiss() throws IOException {
+		File dir = folder.newFolder();
+		DiskCSGCache cache = new DiskCSGCache(dir, 1000000);
+		cache.put(key("a"), CUBE);
+		// the generator version follows the magic number and the version of the layout
+		RandomAccessFile file = new RandomAccessFile(new File(dir, key("a").toHex()+".csg"), "rw");
+		try {
+			file.seek(8);
+			file.writeInt(DiskCSGCache.GENERATOR_VERSION+1);
+		} finally {
+			file.close();
+		}
+		
+		assertNull(cache.get(key("a")));
+		assertEquals(1, cache.getStatistics().getMisses());
+	}
+	
+	@Test
+	public void oldestEntriesShouldBeEvicted() throws IOException {
+		File dir = folder.newFolder();
+		DiskCSGCache cache = new DiskCSGCache(dir, 1000000);
+		cache.put(key("a"), CUBE);
+		long entrySize = cache.getStatistics().getWeight();
+		
+		cache = new DiskCSGCache(dir, entrySize*2);
+		new File(dir, key("a").toHex()+".csg").setLastModified(1000L);
+		cache.put(key("b"), CUBE);
+		cache.put(key("c"), CUBE);
+		
+		assertEquals(2, cache.getStatistics().getEntries());
+		assertEquals(1, cache.getStatistics().getEvictions());
+		assertNull(cache.get(key("a")));
+	}
+	
+	@Test
+	public void tieredCacheShouldPromoteEntries() throws IOException {
+		File dir = folder.newFolder();
+		new DiskCSGCache(dir, 1000000).put(key("a"), CUBE);
+		
+		MemoryCSGCache memory = new MemoryCSGCache(1000);
+		TieredCSGCache cache = new TieredCSGCache(memory, new DiskCSGCache(dir, 1000000));
+		CSG first = cache.get(key("a"));
+		
+		assertNotNull(first);
+		assertSame(first, memory.get(key("a")));
+		assertEquals(2, cache.getStatistics().getHits());
+	}
+}
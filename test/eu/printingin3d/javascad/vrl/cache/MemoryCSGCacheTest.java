@@ -0,0 +1,76 @@
+package eu.printingin3d.javascad.vrl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.exceptions.IllegalValueException;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.utils.StructuralHash;
+import eu.printingin3d.javascad.utils.StructuralHashBuilder;
+import eu.printingin3d.javascad.vrl.CSG;
+
+public class MemoryCSGCacheTest {
+	private static final CSG CUBE = new Cube(10).toCSG();
+	
+	private static StructuralHash key(String value) {
+		return new StructuralHashBuilder().append(value).build();
+	}
+	
+	@Test
+	public void storedValueShouldBeReturned() {
+		MemoryCSGCache cache = new MemoryCSGCache(100);
+		cache.put(key("a"), CUBE);
+		
+		assertSame(CUBE, cache.get(key("a")));
+		assertNull(cache.get(key("b")));
+		
+		CacheStatistics stat = cache.getStatistics();
+		assertEquals(1, stat.getHits());
+		assertEquals(1, stat.getMisses());
+		assertEquals(1, stat.getEntries());
+		assertEquals(CUBE.getPolygons().size(), stat.getWeight());
+	}
+	
+	@Test
+	public void leastRecentlyUsedShouldBeEvicted() {
+		int size = CUBE.getPolygons().size();
+		MemoryCSGCache cache = new MemoryCSGCache(size*2);
+		cache.put(key("a"), CUBE);
+		cache.put(key("b"), CUBE);
+		cache.get(key("a"));
+		cache.put(key("c"), CUBE);
+		
+		assertSame(CUBE, cache.get(key("a")));
+		assertNull(cache.get(key("b")));
+		assertSame(CUBE, cache.get(key("c")));
+		assertEquals(1, cache.getStatistics().getEvictions());
+		assertEquals(size*2, cache.getStatistics().getWeight());
+	}
+	
+	@Test
+	public void tooBigValueShouldNotBeStored() {
+		MemoryCSGCache cache = new MemoryCSGCache(1);
+		cache.put(key("a"), CUBE);
+		
+		assertNull(cache.get(key("a")));
+		assertEquals(0, cache.getStatistics().getEntries());
+	}
+	
+	@Test
+	public void clearShouldRemoveEverything() {
+		MemoryCSGCache cache = new MemoryCSGCache(100);
+		cache.put(key("a"), CUBE);
+		cache.clear();
+		
+		assertNull(cache.get(key("a")));
+		assertEquals(0, cache.getStatistics().getWeight());
+	}
+	
+	@Test(expected = IllegalValueException.class)
+	public void limitShouldBePositive() {
+		new MemoryCSGCache(0);
+	}
+}
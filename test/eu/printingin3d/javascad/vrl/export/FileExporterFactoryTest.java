@@ -25,6 +25,21 @@ public class FileExporterFactoryTest {
 		Assert.assertThat(exporter, instanceOf(PolygonFile.class));
 	}
 	
+	@Test
+	public void test3mf() {
+		IFileExporter exporter = FileExporterFactory.createExporter(new File("/file/to/file.3mf"));
+		
+		Assert.assertThat(exporter, instanceOf(ThreeMfFile.class));
+	}
+	
+	@Test
+	public void testBinaryAndTextSelection() {
+		Assert.assertThat(FileExporterFactory.createExporter(new File("/file/to/file.stl"), true), instanceOf(StlBinaryFile.class));
+		Assert.assertThat(FileExporterFactory.createExporter(new File("/file/to/file.stl"), false), instanceOf(StlTextFile.class));
+		Assert.assertThat(FileExporterFactory.createExporter(new File("/file/to/file.ply"), true), instanceOf(PlyBinaryFile.class));
+		Assert.assertThat(FileExporterFactory.createExporter(new File("/file/to/file.ply"), false), instanceOf(PolygonFile.class));
+	}
+	
 	@Test(expected=UnknownFileExtensionException.class)
 	public void testUnknown() {
 		FileExporterFactory.createExporter(new File("/file/to/file.unknown"));
@@ -0,0 +1,117 @@
+package eu.printingin3d.javascad.vrl.export;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.utils.CompositeMovePattern;
+import eu.printingin3d.javascad.utils.ParallelTasks;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+
+public class StlPipelineTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static int facetCountInHeader(File file) throws IOException {
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(80);
+	}
+
+	@Test
+	public void singlePartShouldBeTheSameAsTheBinaryStl() throws IOException {
+		final CSG csg = new Cylinder(10, 5).moves(CompositeMovePattern.grid(30, 10, 30, 10)).toCSG();
+		File expected = folder.newFile("expected.stl");
+		File actual = folder.newFile("actual.stl");
+		new StlBinaryFile(expected).writeToFile(csg);
+		// two small pools make sure the encoder has to wait for the writer
+		new StlPipeline(actual, 2, Executors.newSingleThreadExecutor(ParallelTasks.daemonThreadFactory("test"))).write(Arrays.asList(new Callable<CSG>() {
+			@Override
+			public CSG call() {
+				return csg;
+			}
+		}));
+
+		assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(actual.toPath()));
+	}
+
+	@Test
+	public void disjointPartsShouldBeWrittenSeparately() throws IOException {
+		Abstract3dModel model = new Cylinder(10, 5).moves(CompositeMovePattern.grid(30, 10, 30, 10));
+		File file = folder.newFile("grid.stl");
+		new StlPipeline(file).writeModel(model, FacetGenerationContext.DEFAULT);
+
+		int facets = 100*new Cylinder(10, 5).toCSG().getFacetCount();
+		assertEquals(facets, facetCountInHeader(file));
+		assertEquals(84L+50L*facets, file.length());
+	}
+
+	@Test
+	public void overlappingPartsShouldBeUnioned() throws IOException {
+		Abstract3dModel model = new Union(new Cube(10), new Cube(10).move(Coords3d.xOnly(5)));
+		File file = folder.newFile("union.stl");
+		new StlPipeline(file).writeModel(model, FacetGenerationContext.DEFAULT);
+
+		int facets = model.toCSG().getFacetCount();
+		assertEquals(facets, facetCountInHeader(file));
+		assertEquals(84L+50L*facets, file.length());
+	}
+
+	@Test
+	public void overlappingPartsShouldBeUnionedOnlyWithEachOther() throws IOException {
+		Abstract3dModel cubes = new Union(new Cube(10), new Cube(10).move(Coords3d.xOnly(5)));
+		Abstract3dModel model = new Union(cubes,
+				new Cylinder(10, 5).moves(CompositeMovePattern.grid(30, 3, 30, 3)).move(Coords3d.yOnly(100)));
+		File file = folder.newFile("mixed.stl");
+		new StlPipeline(file).writeModel(model, FacetGenerationContext.DEFAULT);
+
+		// the cylinders are written one by one, only the cubes are unioned
+		int facets = cubes.toCSG().getFacetCount()+9*new Cylinder(10, 5).toCSG().getFacetCount();
+		assertEquals(facets, facetCountInHeader(file));
+		assertEquals(84L+50L*facets, file.length());
+	}
+
+	@Test
+	public void failedExportShouldLeaveTheFileUntouched() throws IOException {
+		File file = folder.newFile("failed.stl");
+		Files.write(file.toPath(), "previous".getBytes(StandardCharsets.US_ASCII));
+		try {
+			new StlPipeline(file).write(Arrays.asList(new Callable<CSG>() {
+				@Override
+				public CSG call() {
+					return new Cube(10).toCSG();
+				}
+			}, new Callable<CSG>() {
+				@Override
+				public CSG call() {
+					throw new IllegalStateException("failed");
+				}
+			}));
+			fail("The exception should have been thrown");
+		} catch (IllegalStateException e) {
+			assertEquals("failed", e.getMessage());
+		}
+
+		assertArrayEquals("previous".getBytes(StandardCharsets.US_ASCII), Files.readAllBytes(file.toPath()));
+		assertEquals(1, folder.getRoot().list().length);
+	}
+}
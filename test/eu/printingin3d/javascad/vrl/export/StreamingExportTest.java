@@ -0,0 +1,139 @@
+package eu.printingin3d.javascad.vrl.export;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.utils.CompositeMovePattern;
+import eu.printingin3d.javascad.vrl.CSG;
+
+public class StreamingExportTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final CSG csg = new Cylinder(10, 5).toCSG();
+
+	private void assertSameFiles(IFileExporter fromList, File listFile, AbstractFileExporter fromCsg, File csgFile)
+			throws IOException {
+		fromList.writeToFile(csg.toFacets());
+		fromCsg.writeToFile(csg);
+
+		assertArrayEquals(Files.readAllBytes(listFile.toPath()), Files.readAllBytes(csgFile.toPath()));
+	}
+
+	@Test
+	public void facetCountShouldMatchTheFacetList() {
+		assertEquals(csg.toFacets().size(), csg.getFacetCount());
+	}
+
+	@Test
+	public void binaryStlShouldBeTheSame() throws IOException {
+		File f1 = folder.newFile("list.stl");
+		File f2 = folder.newFile("csg.stl");
+		assertSameFiles(new StlBinaryFile(f1), f1, new StlBinaryFile(f2), f2);
+		assertEquals(84L + 50L*csg.getFacetCount(), f2.length());
+	}
+
+	@Test
+	public void memoryMappedBinaryStlShouldBeTheSame() throws IOException {
+		File f1 = folder.newFile("list.stl");
+		File f2 = folder.newFile("csg.stl");
+		assertSameFiles(new StlBinaryFile(f1), f1, new StlBinaryFile(f2, true), f2);
+		assertEquals(84L + 50L*csg.getFacetCount(), f2.length());
+	}
+
+	@Test
+	public void bigBinaryStlShouldBeWrittenInMoreChunks() throws IOException {
+		CSG big = new Cylinder(10, 5).moves(CompositeMovePattern.grid(30, 10, 30, 10)).toCSG();
+		File f1 = folder.newFile("buffered.stl");
+		File f2 = folder.newFile("mapped.stl");
+		new StlBinaryFile(f1).writeToFile(big);
+		new StlBinaryFile(f2, true).writeToFile(big);
+
+		assertEquals(84L + 50L*big.getFacetCount(), f1.length());
+		assertArrayEquals(Files.readAllBytes(f1.toPath()), Files.readAllBytes(f2.toPath()));
+	}
+
+	@Test
+	public void parallelBinaryStlShouldBeTheSame() throws IOException {
+		CSG big = new Cylinder(10, 5).moves(CompositeMovePattern.grid(30, 10, 30, 10)).toCSG();
+		File f1 = folder.newFile("sequential.stl");
+		File f2 = folder.newFile("parallel.stl");
+		File f3 = folder.newFile("parallelMapped.stl");
+		new StlBinaryFile(f1).writeToFile(big);
+		new StlBinaryFile(f2, false, true).writeToFile(big);
+		new StlBinaryFile(f3, true, true).writeToFile(big);
+
+		byte[] expected = Files.readAllBytes(f1.toPath());
+		assertArrayEquals(expected, Files.readAllBytes(f2.toPath()));
+		assertArrayEquals(expected, Files.readAllBytes(f3.toPath()));
+	}
+
+	@Test
+	public void parallelExportOfEmptyCsgShouldContainTheHeaderOnly() throws IOException {
+		File f = folder.newFile("empty.stl");
+		new StlBinaryFile(f, false, true).writeToFile(CSG.fromPolygons());
+
+		assertEquals(84L, f.length());
+	}
+
+	@Test
+	public void binaryStlFromIndexedMeshShouldBeTheSame() throws IOException {
+		File f1 = folder.newFile("csg.stl");
+		File f2 = folder.newFile("mesh.stl");
+		File f3 = folder.newFile("welded.stl");
+		CSG cube = new Cube(10).toCSG();
+		new StlBinaryFile(f1).writeToFile(cube);
+		new StlBinaryFile(f2).writeToFile(cube.toIndexedMesh());
+		// the welded vertexes may move within the epsilon, so only the size is the same in general
+		new StlBinaryFile(f3).writeToFile(csg.toIndexedMesh());
+
+		assertArrayEquals(Files.readAllBytes(f1.toPath()), Files.readAllBytes(f2.toPath()));
+		assertEquals(84L + 50L*csg.getFacetCount(), f3.length());
+	}
+
+	@Test
+	public void textStlShouldBeTheSame() throws IOException {
+		File f1 = folder.newFile("list.stl");
+		File f2 = folder.newFile("csg.stl");
+		assertSameFiles(new StlTextFile(f1), f1, new StlTextFile(f2), f2);
+	}
+
+	@Test
+	public void binaryPlyShouldContainTheSameMeshAsTheTextOne() throws IOException {
+		File text = folder.newFile("text.ply");
+		File binary = folder.newFile("binary.ply");
+		new PolygonFile(text).writeToFile(csg);
+		new PlyBinaryFile(binary).writeToFile(csg);
+
+		List<String> lines = Files.readAllLines(text.toPath(), StandardCharsets.US_ASCII);
+		int vertexCount = Integer.parseInt(lines.get(2).substring("element vertex ".length()));
+		int faceCount = Integer.parseInt(lines.get(9).substring("element face ".length()));
+
+		byte[] bytes = Files.readAllBytes(binary.toPath());
+		String header = new String(bytes, 0, Math.min(bytes.length, 400), StandardCharsets.US_ASCII);
+		int headerLength = header.indexOf("end_header\n")+"end_header\n".length();
+		assertTrue(header.startsWith("ply\nformat binary_little_endian 1.0\n"+lines.get(2)+"\n"));
+		assertTrue(header.contains("\n"+lines.get(9)+"\n"));
+		assertEquals(headerLength + vertexCount*15L + faceCount*13L, bytes.length);
+	}
+
+	@Test
+	public void plyShouldBeTheSame() throws IOException {
+		File f1 = folder.newFile("list.ply");
+		File f2 = folder.newFile("csg.ply");
+		assertSameFiles(new PolygonFile(f1), f1, new PolygonFile(f2), f2);
+	}
+}
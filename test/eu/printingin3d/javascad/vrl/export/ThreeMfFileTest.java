@@ -0,0 +1,199 @@
+package eu.printingin3d.javascad.vrl.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.printingin3d.javascad.context.TagColorsBuilder;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.utils.CompositeMovePattern;
+import eu.printingin3d.javascad.utils.SaveMeshFiles;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.FacetGenerationContextBuilder;
+import eu.printingin3d.javascad.vrl.IndexedMeshBuilder;
+
+public class ThreeMfFileTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Map<String, String> readEntries(File file) throws IOException {
+		Map<String, String> result = new HashMap<>();
+		ZipFile zip = new ZipFile(file);
+		try {
+			for (ZipEntry entry : Collections.list(zip.entries())) {
+				InputStream is = zip.getInputStream(entry);
+				try {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					byte[] buffer = new byte[8192];
+					int len;
+					while ((len = is.read(buffer))>0) {
+						bytes.write(buffer, 0, len);
+					}
+					result.put(entry.getName(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+				} finally {
+					is.close();
+				}
+			}
+		} finally {
+			zip.close();
+		}
+		return result;
+	}
+
+	private static int count(String text, String pattern) {
+		Matcher matcher = Pattern.compile(pattern).matcher(text);
+		int count = 0;
+		while (matcher.find()) {
+			count++;
+		}
+		return count;
+	}
+
+	@Test
+	public void csgShouldBeWrittenAsOneObject() throws IOException {
+		File file = folder.newFile("cube.3mf");
+		new ThreeMfFile(file).writeToFile(new Cube(10).toCSG());
+
+		Map<String, String> entries = readEntries(file);
+		assertTrue(entries.containsKey("[Content_Types].xml"));
+		assertTrue(entries.get("_rels/.rels").contains("Target=\"/3D/3dmodel.model\""));
+
+		String model = entries.get("3D/3dmodel.model");
+		assertEquals(1, count(model, "<object "));
+		assertEquals(1, count(model, "<item "));
+		assertEquals(8, count(model, "<vertex "));
+		assertEquals(12, count(model, "<triangle "));
+	}
+
+	@Test
+	public void repeatedPartsShouldBeWrittenOnce() throws IOException {
+		File file = folder.newFile("grid.3mf");
+		Abstract3dModel grid = new Cylinder(10, 5).moves(CompositeMovePattern.grid(20, 10, 20, 10));
+		new ThreeMfFile(file).writeModel(grid, FacetGenerationContext.DEFAULT);
+
+		String model = readEntries(file).get("3D/3dmodel.model");
+		assertEquals(1, count(model, "<object "));
+		assertEquals(100, count(model, "<item "));
+		assertEquals(new Cylinder(10, 5).toCSG().getFacetCount(), count(model, "<triangle "));
+	}
+
+	@Test
+	public void identicalSubtreesShouldShareTheMesh() throws IOException {
+		File file = folder.newFile("union.3mf");
+		Abstract3dModel model = new Union(
+				new Cube(5).move(new Coords3d(10, 0, 0)),
+				new Cube(5).move(new Coords3d(-10, 0, 0)),
+				new Cylinder(10, 5).move(new Coords3d(0, 20, 0)));
+		new ThreeMfFile(file).writeModel(model, FacetGenerationContext.DEFAULT);
+
+		String content = readEntries(file).get("3D/3dmodel.model");
+		assertEquals(2, count(content, "<object "));
+		assertEquals(3, count(content, "<item "));
+		assertTrue(content.contains("transform=\"1 0 0 0 1 0 0 0 1 -10 0 0\""));
+	}
+
+	@Test
+	public void overlappingPartsShouldBeUnionedIntoOneMesh() throws IOException {
+		File file = folder.newFile("overlapping.3mf");
+		Abstract3dModel model = new Union(
+				new Cube(10),
+				new Cylinder(10, 4),
+				new Cube(5).move(new Coords3d(30, 0, 0)));
+		new ThreeMfFile(file).writeModel(model, FacetGenerationContext.DEFAULT);
+
+		File expectedFile = folder.newFile("expected.3mf");
+		new ThreeMfFile(expectedFile).writeToFile(new Union(new Cube(10), new Cylinder(10, 4)).toCSG());
+
+		String content = readEntries(file).get("3D/3dmodel.model");
+		String expected = readEntries(expectedFile).get("3D/3dmodel.model");
+		assertEquals(2, count(content, "<object "));
+		assertEquals(2, count(content, "<item "));
+		assertEquals(count(expected, "<triangle ")+new Cube(5).toCSG().getFacetCount(),
+				count(content, "<triangle "));
+	}
+
+	@Test
+	public void colorsShouldBeWrittenAsMaterials() throws IOException {
+		File file = folder.newFile("colored.3mf");
+		FacetGenerationContext context = new FacetGenerationContextBuilder()
+				.setTagColors(new TagColorsBuilder().addTag(1, Color.RED).buildTagColors())
+				.buildContext();
+		new ThreeMfFile(file).writeModel(new Union(new Cube(5).withTag(1), new Cube(5).move(Coords3d.X.mul(10))),
+				context);
+
+		String content = readEntries(file).get("3D/3dmodel.model");
+		assertTrue(content.contains("displaycolor=\"#FF0000\""));
+		assertTrue(content.contains("pid=\"1\" p1=\"0\""));
+		assertEquals(count(content, "<object "), count(content, "<object [^>]*pid=\"1\" pindex=\"0\""));
+	}
+
+	@Test
+	public void uncoloredTrianglesShouldBeWrittenWithoutProperties() throws IOException {
+		File file = folder.newFile("uncolored.3mf");
+		new ThreeMfFile(file).writeToFile(new IndexedMeshBuilder(2, false, true)
+				.addTriangle(null, Coords3d.ZERO, Coords3d.X, Coords3d.Y, null)
+				.addTriangle(null, Coords3d.ZERO, Coords3d.Y, Coords3d.Z, Color.RED)
+				.buildIndexedMesh());
+
+		String content = readEntries(file).get("3D/3dmodel.model");
+		assertEquals(1, count(content, "<base "));
+		assertEquals(1, count(content, "<triangle [^>]*pid="));
+		assertEquals(2, count(content, "<triangle "));
+	}
+
+	@Test
+	public void meshWithoutColoredTrianglesShouldHaveNoMaterials() throws IOException {
+		File file = folder.newFile("nocolor.3mf");
+		new ThreeMfFile(file).writeToFile(new IndexedMeshBuilder(1, false, true)
+				.addTriangle(null, Coords3d.ZERO, Coords3d.X, Coords3d.Y, null)
+				.buildIndexedMesh());
+
+		String content = readEntries(file).get("3D/3dmodel.model");
+		assertEquals(0, count(content, "<basematerials "));
+		assertEquals(0, count(content, "pid="));
+	}
+
+	@Test
+	public void degenerateTrianglesShouldBeDropped() throws IOException {
+		File file = folder.newFile("degenerate.3mf");
+		new ThreeMfFile(file).writeToFile(new IndexedMeshBuilder(2, false, false)
+				.addTriangle(null, Coords3d.ZERO, Coords3d.X, Coords3d.Y, null)
+				// the last two vertexes are welded together
+				.addTriangle(null, Coords3d.ZERO, Coords3d.X, new Coords3d(1.0+1e-9, 0, 0), null)
+				.buildIndexedMesh());
+
+		String content = readEntries(file).get("3D/3dmodel.model");
+		assertEquals(1, count(content, "<triangle "));
+	}
+
+	@Test
+	public void savedModelsShouldBeWrittenWithInstancing() throws IOException {
+		Abstract3dModel grid = new Cylinder(10, 5).moves(CompositeMovePattern.grid(20, 3, 20, 3));
+		new SaveMeshFiles(folder.getRoot()).addModel("grid.3mf", grid).saveMeshFiles();
+
+		String model = readEntries(new File(folder.getRoot(), "grid.3mf")).get("3D/3dmodel.model");
+		assertEquals(1, count(model, "<object "));
+		assertEquals(9, count(model, "<item "));
+	}
+}
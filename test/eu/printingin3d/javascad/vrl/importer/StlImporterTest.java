@@ -0,0 +1,104 @@
+package eu.printingin3d.javascad.vrl.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.utils.CompositeMovePattern;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
+import eu.printingin3d.javascad.vrl.export.StlBinaryFile;
+import eu.printingin3d.javascad.vrl.export.StlTextFile;
+
+public class StlImporterTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static void assertSameMesh(IndexedMesh expected, IndexedMesh actual) {
+		assertEquals(expected.getVertexCount(), actual.getVertexCount());
+		assertEquals(expected.getTriangleCount(), actual.getTriangleCount());
+		for (int t=0;t<expected.getTriangleCount();t++) {
+			for (int corner=0;corner<3;corner++) {
+				assertEquals(expected.getVertexIndex(t, corner), actual.getVertexIndex(t, corner));
+			}
+		}
+	}
+
+	@Test
+	public void binaryStlShouldBeReadBack() throws IOException {
+		CSG csg = new Cube(10).toCSG();
+		File file = folder.newFile("cube.stl");
+		new StlBinaryFile(file).writeToFile(csg);
+
+		IndexedMesh mesh = new StlImporter(file).read();
+
+		assertEquals(8, mesh.getVertexCount());
+		assertEquals(12, mesh.getTriangleCount());
+		assertSameMesh(csg.toIndexedMesh(), mesh);
+	}
+
+	@Test
+	public void asciiStlShouldBeReadBack() throws IOException {
+		CSG csg = new Cylinder(10, 5).toCSG();
+		File file = folder.newFile("cylinder.stl");
+		new StlTextFile(file).writeToFile(csg);
+
+		assertSameMesh(csg.toIndexedMesh(), new StlImporter(file).read());
+	}
+
+	@Test
+	public void parallelReadShouldBeTheSameAsTheSequential() throws IOException {
+		CSG csg = new Cylinder(10, 5).moves(CompositeMovePattern.grid(30, 20, 30, 20)).toCSG();
+		File file = folder.newFile("big.stl");
+		new StlBinaryFile(file).writeToFile(csg);
+
+		IndexedMesh sequential = new StlImporter(file, false).read();
+		assertEquals(csg.getFacetCount(), sequential.getTriangleCount());
+		assertSameMesh(sequential, new StlImporter(file, true).read());
+	}
+
+	@Test(expected = IOException.class)
+	public void invalidFileShouldBeRejected() throws IOException {
+		File file = folder.newFile("invalid.stl");
+		Files.write(file.toPath(), "this is not an STL file".getBytes(StandardCharsets.US_ASCII));
+
+		new StlImporter(file).read();
+	}
+
+	@Test
+	public void truncatedBinaryFileShouldBeReportedAsBinary() throws IOException {
+		File file = folder.newFile("truncated.stl");
+		new StlBinaryFile(file).writeToFile(new Cube(10).toCSG());
+		byte[] content = Files.readAllBytes(file.toPath());
+		Files.write(file.toPath(), Arrays.copyOf(content, content.length-10));
+
+		try {
+			new StlImporter(file).read();
+			fail("The truncated file should be rejected");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("truncated"));
+		}
+	}
+
+	@Test
+	public void binaryFileWithTrailingBytesShouldBeRead() throws IOException {
+		File file = folder.newFile("trailing.stl");
+		new StlBinaryFile(file).writeToFile(new Cube(10).toCSG());
+		byte[] content = Files.readAllBytes(file.toPath());
+		Files.write(file.toPath(), Arrays.copyOf(content, content.length+7));
+
+		assertEquals(12, new StlImporter(file).read().getTriangleCount());
+	}
+}